@@ -46,6 +46,8 @@ dependencies {
     ksp(libs.room.compiler)
     implementation(libs.lifecycle.viewmodel)
     implementation(libs.lifecycle.livedata)
+    implementation(libs.paging.runtime)
+    implementation(libs.paging.guava)
     implementation(libs.retrofit)
     implementation(libs.converter.gson)
     implementation(libs.gson)
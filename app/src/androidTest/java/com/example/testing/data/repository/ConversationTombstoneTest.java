@@ -0,0 +1,138 @@
+package com.example.testing.data.repository;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.dao.ConversationDao;
+import com.example.testing.data.local.dao.MessageDao;
+import com.example.testing.data.local.dao.MessageSearchDao;
+import com.example.testing.data.local.entity.Character;
+import com.example.testing.data.local.entity.Conversation;
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.relations.ConversationWithCharacter;
+import com.example.testing.data.local.entity.relations.MessageMatch;
+import com.example.testing.data.local.entity.relations.MessageSearchHit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+// Tombstoned conversations against an in-memory database with the real triggers: hidden from
+// every list, count and search, restorable within the undo window, purged only after it.
+@RunWith(AndroidJUnit4.class)
+public class ConversationTombstoneTest {
+
+    private AppDatabase db;
+    private ConversationDao conversationDao;
+    private MessageDao messageDao;
+    private MessageSearchDao searchDao;
+
+    private int characterId;
+    private int kept;
+    private int deleted;
+    private int keptMessage;
+    private int deletedMessage;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = AppDatabase.createInMemory(context);
+        conversationDao = db.conversationDao();
+        messageDao = db.messageDao();
+        searchDao = db.messageSearchDao();
+
+        characterId = (int) db.characterDao().insert(new Character("Mira", "", "", null, null, null, null));
+        kept = (int) conversationDao.insert(new Conversation(characterId, "Kept"));
+        deleted = (int) conversationDao.insert(new Conversation(characterId, "Deleted"));
+        keptMessage = (int) messageDao.insert(new Message("user", "The dragon sleeps", kept));
+        deletedMessage = (int) messageDao.insert(new Message("user", "The dragon wakes", deleted));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private int conversationCount() {
+        for (Character character : db.characterDao().getAllCharactersSync()) {
+            if (character.getId() == characterId) return character.getConversationCount();
+        }
+        throw new AssertionError("character missing");
+    }
+
+    private List<Integer> historyIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (ConversationWithCharacter row : conversationDao.getNewestConversationsWithCharacter(10)) {
+            ids.add(row.getId());
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    private List<Integer> searchIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (MessageMatch match : searchDao.getMatchesSync("dragon*", 10)) ids.add(match.messageId);
+        Collections.sort(ids);
+        return ids;
+    }
+
+    @Test
+    public void tombstoneHidesFromHistoryCountsAndSearch() {
+        assertEquals(2, conversationCount());
+        assertEquals(Arrays.asList(keptMessage, deletedMessage), searchIds());
+
+        conversationDao.markDeleted(Collections.singletonList(deleted), System.currentTimeMillis());
+
+        assertEquals(Collections.singletonList(kept), historyIds());
+        assertEquals(Collections.singletonList(kept), conversationDao.getAllConversationIdsSync());
+        assertEquals(1, conversationCount());
+        assertEquals(Collections.singletonList(keptMessage), searchIds());
+
+        List<MessageSearchHit> hits = searchDao.getHitsSync("dragon*", Arrays.asList(keptMessage, deletedMessage), "[", "]");
+        assertEquals(1, hits.size());
+        assertEquals(keptMessage, hits.get(0).messageId);
+    }
+
+    @Test
+    public void undoRestoresTheRowAndTheCount() {
+        conversationDao.markDeleted(Collections.singletonList(deleted), System.currentTimeMillis());
+        conversationDao.restore(Collections.singletonList(deleted));
+
+        Conversation restored = conversationDao.getConversationByIdSync(deleted);
+        assertNotNull(restored);
+        assertNull(restored.getDeletedAt());
+        assertEquals(1, restored.getMessageCount());
+        assertEquals(Arrays.asList(kept, deleted), historyIds());
+        assertEquals(2, conversationCount());
+        assertEquals(Arrays.asList(keptMessage, deletedMessage), searchIds());
+    }
+
+    @Test
+    public void purgeRemovesOnlyTombstonesOlderThanTheUndoWindow() {
+        long now = System.currentTimeMillis();
+        conversationDao.markDeleted(Collections.singletonList(kept), now - ConversationRepository.UNDO_WINDOW_MS - 1000);
+        conversationDao.markDeleted(Collections.singletonList(deleted), now);
+
+        List<Integer> purged = ConversationRepository.purgeDeletedBefore(conversationDao, messageDao,
+                now - ConversationRepository.UNDO_WINDOW_MS, () -> false);
+
+        assertEquals(Collections.singletonList(kept), purged);
+        assertNull(conversationDao.getConversationByIdSync(kept));
+        assertEquals(0, messageDao.getMessagesForConversationSync(kept).size());
+        assertNotNull(conversationDao.getConversationByIdSync(deleted));
+        assertEquals(1, messageDao.getMessagesForConversationSync(deleted).size());
+    }
+}
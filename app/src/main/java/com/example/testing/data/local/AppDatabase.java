@@ -2,26 +2,45 @@ package com.example.testing.data.local;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.os.SystemClock;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteOpenHelper;
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory;
 
 import com.example.testing.data.local.entity.Character;
 import com.example.testing.data.local.dao.CharacterDao;
+import com.example.testing.data.local.entity.CharacterTag;
 import com.example.testing.data.local.entity.Conversation;
 import com.example.testing.data.local.dao.ConversationDao;
 import com.example.testing.data.local.dao.MessageDao;
+import com.example.testing.data.local.dao.MessageEmbeddingDao;
+import com.example.testing.data.local.dao.MessageSearchDao;
+import com.example.testing.data.local.dao.LorebookDao;
+import com.example.testing.data.local.dao.ModelDao;
+import com.example.testing.data.local.entity.LorebookEntry;
+import com.example.testing.data.local.entity.ModelInfo;
 import com.example.testing.data.local.entity.Persona;
 import com.example.testing.data.local.dao.PersonaDao;
 import com.example.testing.data.local.entity.Scenario;
 import com.example.testing.data.local.dao.ScenarioDao;
+import com.example.testing.data.local.entity.Tag;
+import com.example.testing.data.local.dao.TagDao;
 import com.example.testing.data.local.entity.User;
 import com.example.testing.data.local.dao.UserDao;
 import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.MessageEmbedding;
+import com.example.testing.data.local.entity.MessageFts;
+import com.example.testing.utils.TagParser;
 
-@Database(entities = {User.class, Character.class, Conversation.class, Message.class, Persona.class, Scenario.class}, version = 22, exportSchema = false)
+import java.io.File;
+
+@Database(entities = {User.class, Character.class, Conversation.class, Message.class, Persona.class, Scenario.class, ModelInfo.class, LorebookEntry.class, MessageEmbedding.class, MessageFts.class, Tag.class, CharacterTag.class}, version = 34, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     public abstract UserDao userDao();
@@ -30,10 +49,41 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract MessageDao messageDao();
     public abstract PersonaDao personaDao();
     public abstract ScenarioDao scenarioDao();
+    public abstract ModelDao modelDao();
+    public abstract LorebookDao lorebookDao();
+    public abstract MessageEmbeddingDao messageEmbeddingDao();
+    public abstract MessageSearchDao messageSearchDao();
+    public abstract TagDao tagDao();
 
     private static volatile AppDatabase INSTANCE;
     private static final String DATABASE_NAME = "chatterbox-db";
 
+    // Storage profile of the primary connection, which does all the writing and runs the
+    // migrations and FTS rebuilds. WAL lets list queries read while a reply is being streamed
+    // in; NORMAL sync is durable across app crashes in WAL mode and only fsyncs on checkpoint.
+    // The larger page cache, in-memory temp tables and mapped reads are for those big statements.
+    // Read connections are opened by the framework with no hook per connection and keep its defaults.
+    private static final String WRITER_SYNC_PRAGMA = "PRAGMA synchronous = NORMAL";
+    private static final String[] WRITER_PRAGMAS = {
+            "PRAGMA cache_size = -8192",
+            "PRAGMA temp_store = MEMORY",
+            "PRAGMA mmap_size = 67108864",
+            "PRAGMA wal_autocheckpoint = 1000"
+    };
+    // Read back on the writer right after they are set, for the debug screen
+    private static final String[] PROFILE_PRAGMAS = {
+            "synchronous", "cache_size", "mmap_size", "temp_store", "wal_autocheckpoint"
+    };
+    // Database-wide values, the same from any connection
+    private static final String[] REPORTED_PRAGMAS = {
+            "journal_mode", "page_size", "page_count", "freelist_count"
+    };
+
+    private static volatile String writerProfile = "";
+    private static final long CHECKPOINT_INTERVAL_MS = 30_000;
+
+    private volatile long lastCheckpointAt;
+
     static final Migration MIGRATION_6_7 = new Migration(6, 7) {
         @Override
         public void migrate(SupportSQLiteDatabase database) {
@@ -229,14 +279,587 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
 
+    static final Migration MIGRATION_22_23 = new Migration(22, 23) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE chat_message ADD COLUMN first_byte_ms INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE chat_message ADD COLUMN ttft_ms INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE chat_message ADD COLUMN generation_ms INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE chat_message ADD COLUMN tokens_per_second REAL NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE chat_message ADD COLUMN inter_token_histogram TEXT");
+        }
+    };
+
+    static final Migration MIGRATION_23_24 = new Migration(23, 24) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `model_catalog` (" +
+                    "`model_id` TEXT NOT NULL, " +
+                    "`name` TEXT, " +
+                    "`description` TEXT, " +
+                    "`context_length` INTEGER NOT NULL DEFAULT 0, " +
+                    "`prompt_price` REAL NOT NULL DEFAULT -1, " +
+                    "`completion_price` REAL NOT NULL DEFAULT -1, " +
+                    "PRIMARY KEY(`model_id`))");
+        }
+    };
+
+    static final Migration MIGRATION_24_25 = new Migration(24, 25) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // The composite index covers every lookup the single-column one did and lets
+            // tail queries walk a conversation newest-first without a sort.
+            database.execSQL("DROP INDEX IF EXISTS `index_chat_message_conversation_fk`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_chat_message_conversation_fk_timestamp` ON `chat_message` (`conversation_fk`, `timestamp`)");
+        }
+    };
+
+    static final Migration MIGRATION_25_26 = new Migration(25, 26) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE conversation ADD COLUMN summary TEXT");
+            database.execSQL("ALTER TABLE conversation ADD COLUMN summary_through_timestamp INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE conversation ADD COLUMN summary_through_index INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE user_config ADD COLUMN summary_model TEXT");
+        }
+    };
+
+    static final Migration MIGRATION_26_27 = new Migration(26, 27) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `lorebook_entry` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`character_id` INTEGER, " +
+                    "`scenario_id` INTEGER, " +
+                    "`keywords` TEXT, " +
+                    "`content` TEXT, " +
+                    "`is_enabled` INTEGER NOT NULL DEFAULT 1, " +
+                    "FOREIGN KEY(`character_id`) REFERENCES `character`(`character_id`) ON UPDATE NO ACTION ON DELETE CASCADE , " +
+                    "FOREIGN KEY(`scenario_id`) REFERENCES `scenario`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_lorebook_entry_character_id` ON `lorebook_entry` (`character_id`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_lorebook_entry_scenario_id` ON `lorebook_entry` (`scenario_id`)");
+        }
+    };
+
+    static final Migration MIGRATION_27_28 = new Migration(27, 28) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `message_embedding` (" +
+                    "`message_id` INTEGER NOT NULL, " +
+                    "`conversation_fk` INTEGER NOT NULL, " +
+                    "`message_timestamp` INTEGER NOT NULL, " +
+                    "`vector` BLOB NOT NULL, " +
+                    "PRIMARY KEY(`message_id`), " +
+                    "FOREIGN KEY(`message_id`) REFERENCES `chat_message`(`index`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_message_embedding_conversation_fk` ON `message_embedding` (`conversation_fk`)");
+        }
+    };
+
+    // Same table and trigger definitions Room generates for MessageFts, then a one-off rebuild
+    // to index the messages that already exist.
+    static final Migration MIGRATION_28_29 = new Migration(28, 29) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `message_fts` USING FTS4(`content` TEXT, tokenize=unicode61, content=`chat_message`)");
+            for (String trigger : MESSAGE_FTS_TRIGGERS) {
+                database.execSQL(trigger);
+            }
+            database.execSQL("INSERT INTO `message_fts`(`message_fts`) VALUES('rebuild')");
+        }
+    };
+
+    static final Migration MIGRATION_29_30 = new Migration(29, 30) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE conversation ADD COLUMN message_count INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE conversation ADD COLUMN last_message_preview TEXT");
+            database.execSQL("ALTER TABLE conversation ADD COLUMN last_role TEXT");
+            database.execSQL("ALTER TABLE conversation ADD COLUMN prompt_tokens_total INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE conversation ADD COLUMN completion_tokens_total INTEGER NOT NULL DEFAULT 0");
+            database.execSQL(ConversationDao.REBUILD_ROLLUPS);
+            for (String trigger : CONVERSATION_ROLLUP_TRIGGERS) {
+                database.execSQL(trigger);
+            }
+        }
+    };
+
+    static final Migration MIGRATION_30_31 = new Migration(30, 31) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE character ADD COLUMN default_scenario_image_path TEXT");
+            database.execSQL("ALTER TABLE character ADD COLUMN default_scenario_first_message TEXT");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_character_is_hidden_is_favorite_name` ON `character` (`is_hidden` ASC, `is_favorite` DESC, `name` ASC)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_conversation_character_fk` ON `conversation` (`character_fk`)");
+            database.execSQL("UPDATE character SET " +
+                    "conversation_count = " + conversationCountOf("character.character_id", true) + ", " +
+                    "default_scenario_image_path = " + defaultScenarioColumn("image_path", "character.character_id") + ", " +
+                    "default_scenario_first_message = " + defaultScenarioColumn("first_message", "character.character_id"));
+            for (String trigger : CHARACTER_CACHE_TRIGGERS_V31) {
+                database.execSQL(trigger);
+            }
+        }
+    };
+
+    // Splits the legacy tags strings into tag/character_tag. The usage triggers go in first so the
+    // counts come out of the same inserts.
+    static final Migration MIGRATION_31_32 = new Migration(31, 32) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `tag` (" +
+                    "`tag_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`name` TEXT NOT NULL COLLATE NOCASE, " +
+                    "`usage_count` INTEGER NOT NULL DEFAULT 0)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_tag_name` ON `tag` (`name`)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `character_tag` (" +
+                    "`character_id` INTEGER NOT NULL, " +
+                    "`tag_id` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`character_id`, `tag_id`), " +
+                    "FOREIGN KEY(`character_id`) REFERENCES `character`(`character_id`) ON UPDATE NO ACTION ON DELETE CASCADE , " +
+                    "FOREIGN KEY(`tag_id`) REFERENCES `tag`(`tag_id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_character_tag_tag_id_character_id` ON `character_tag` (`tag_id`, `character_id`)");
+            for (String trigger : TAG_USAGE_TRIGGERS) {
+                database.execSQL(trigger);
+            }
+
+            try (Cursor cursor = database.query("SELECT character_id, tags FROM character WHERE tags IS NOT NULL AND tags != ''")) {
+                while (cursor.moveToNext()) {
+                    int characterId = cursor.getInt(0);
+                    for (String name : TagParser.parse(cursor.getString(1))) {
+                        database.execSQL("INSERT OR IGNORE INTO tag (name) VALUES (?)", new Object[]{name});
+                        database.execSQL("INSERT OR IGNORE INTO character_tag (character_id, tag_id) " +
+                                "SELECT ?, tag_id FROM tag WHERE name = ?", new Object[]{characterId, name});
+                    }
+                }
+            }
+        }
+    };
+
+    // SQLite can't add a foreign key to an existing table, so conversation and chat_message are
+    // rebuilt with theirs. Rows the keys would reject, left behind by the old two-step deletes, go
+    // first. Room drops its message_fts sync triggers before any migration runs, so the orphans'
+    // index entries are cleared by hand while their content is still there to read. Triggers that
+    // read either table are dropped up front, since the rename refuses a schema with a trigger
+    // naming a missing table, and are put back at the end with the ones the drops took along.
+    static final Migration MIGRATION_32_33 = new Migration(32, 33) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("DELETE FROM conversation WHERE character_fk NOT IN (SELECT character_id FROM character)");
+            database.execSQL("DELETE FROM message_fts WHERE docid IN (SELECT `index` FROM chat_message " +
+                    "WHERE conversation_fk NOT IN (SELECT conversation_id FROM conversation))");
+            database.execSQL("DELETE FROM chat_message WHERE conversation_fk NOT IN (SELECT conversation_id FROM conversation)");
+            database.execSQL("DELETE FROM message_embedding WHERE message_id NOT IN (SELECT `index` FROM chat_message)");
+            dropTriggers(database, CONVERSATION_ROLLUP_TRIGGERS);
+            dropTriggers(database, CHARACTER_CACHE_TRIGGERS_V31);
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `conversation_new` (" +
+                    "`conversation_id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`character_fk` INTEGER NOT NULL, " +
+                    "`title` TEXT, " +
+                    "`created_at` INTEGER NOT NULL, " +
+                    "`last_updated` INTEGER NOT NULL, " +
+                    "`is_active` INTEGER, " +
+                    "`scenario_id` INTEGER, " +
+                    "`persona_id` INTEGER, " +
+                    "`summary` TEXT, " +
+                    "`summary_through_timestamp` INTEGER NOT NULL DEFAULT 0, " +
+                    "`summary_through_index` INTEGER NOT NULL DEFAULT 0, " +
+                    "`message_count` INTEGER NOT NULL DEFAULT 0, " +
+                    "`last_message_preview` TEXT, " +
+                    "`last_role` TEXT, " +
+                    "`prompt_tokens_total` INTEGER NOT NULL DEFAULT 0, " +
+                    "`completion_tokens_total` INTEGER NOT NULL DEFAULT 0, " +
+                    "FOREIGN KEY(`character_fk`) REFERENCES `character`(`character_id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO conversation_new (conversation_id, character_fk, title, created_at, last_updated, is_active, scenario_id, persona_id, summary, summary_through_timestamp, summary_through_index, message_count, last_message_preview, last_role, prompt_tokens_total, completion_tokens_total) " +
+                    "SELECT conversation_id, character_fk, title, created_at, last_updated, is_active, scenario_id, persona_id, summary, summary_through_timestamp, summary_through_index, message_count, last_message_preview, last_role, prompt_tokens_total, completion_tokens_total FROM conversation");
+            database.execSQL("DROP TABLE conversation");
+            database.execSQL("ALTER TABLE conversation_new RENAME TO conversation");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_conversation_last_updated` ON `conversation` (`last_updated`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_conversation_character_fk` ON `conversation` (`character_fk`)");
+
+            database.execSQL("CREATE TABLE IF NOT EXISTS `chat_message_new` (" +
+                    "`index` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`role` TEXT, " +
+                    "`content` TEXT, " +
+                    "`timestamp` INTEGER NOT NULL, " +
+                    "`conversation_fk` INTEGER NOT NULL, " +
+                    "`token_count` INTEGER NOT NULL DEFAULT 0, " +
+                    "`prompt_tokens` INTEGER NOT NULL DEFAULT 0, " +
+                    "`completion_tokens` INTEGER NOT NULL DEFAULT 0, " +
+                    "`finish_reason` TEXT, " +
+                    "`first_byte_ms` INTEGER NOT NULL DEFAULT 0, " +
+                    "`ttft_ms` INTEGER NOT NULL DEFAULT 0, " +
+                    "`generation_ms` INTEGER NOT NULL DEFAULT 0, " +
+                    "`tokens_per_second` REAL NOT NULL DEFAULT 0, " +
+                    "`inter_token_histogram` TEXT, " +
+                    "FOREIGN KEY(`conversation_fk`) REFERENCES `conversation`(`conversation_id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("INSERT INTO chat_message_new (`index`, role, content, timestamp, conversation_fk, token_count, prompt_tokens, completion_tokens, finish_reason, first_byte_ms, ttft_ms, generation_ms, tokens_per_second, inter_token_histogram) " +
+                    "SELECT `index`, role, content, timestamp, conversation_fk, token_count, prompt_tokens, completion_tokens, finish_reason, first_byte_ms, ttft_ms, generation_ms, tokens_per_second, inter_token_histogram FROM chat_message");
+            database.execSQL("DROP TABLE chat_message");
+            database.execSQL("ALTER TABLE chat_message_new RENAME TO chat_message");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_chat_message_conversation_fk_timestamp` ON `chat_message` (`conversation_fk`, `timestamp`)");
+
+            // Same rowids as before, so message_fts needs no rebuild
+            for (String trigger : MESSAGE_FTS_TRIGGERS) {
+                database.execSQL(trigger);
+            }
+            for (String trigger : CONVERSATION_ROLLUP_TRIGGERS) {
+                database.execSQL(trigger);
+            }
+            for (String trigger : CHARACTER_CACHE_TRIGGERS_V31) {
+                database.execSQL(trigger);
+            }
+        }
+    };
+
+    // Deleting a conversation only stamps deleted_at; ConversationPurgeService removes the rows
+    // later. Every conversation is live at this point, so the counts stand and only the triggers
+    // that keep them change.
+    static final Migration MIGRATION_33_34 = new Migration(33, 34) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE conversation ADD COLUMN deleted_at INTEGER");
+            createPartialIndexes(database);
+            dropTriggers(database, CHARACTER_CACHE_TRIGGERS_V31);
+            for (String trigger : CHARACTER_CACHE_TRIGGERS) {
+                database.execSQL(trigger);
+            }
+        }
+    };
+
+    // Room's @Index has no WHERE, and its schema check compares only names and columns, so the
+    // entity declares these plainly and they are rebuilt here as partial indexes. The history
+    // queries only ever read live rows and the purge only tombstoned ones, so each index holds
+    // just the rows its reader wants.
+    private static final String[] PARTIAL_INDEXES = {
+            "CREATE INDEX `index_conversation_last_updated` ON `conversation` (`last_updated`) WHERE deleted_at IS NULL",
+            "CREATE INDEX `index_conversation_deleted_at` ON `conversation` (`deleted_at`) WHERE deleted_at IS NOT NULL"
+    };
+
+    private static void createPartialIndexes(SupportSQLiteDatabase database) {
+        for (String index : PARTIAL_INDEXES) {
+            String name = index.substring("CREATE INDEX ".length()).split(" ", 2)[0];
+            database.execSQL("DROP INDEX IF EXISTS " + name);
+            database.execSQL(index);
+        }
+    }
+
+    private static void dropTriggers(SupportSQLiteDatabase database, String[] triggers) {
+        for (String trigger : triggers) {
+            String name = trigger.substring("CREATE TRIGGER IF NOT EXISTS ".length()).split(" ", 2)[0];
+            database.execSQL("DROP TRIGGER IF EXISTS " + name);
+        }
+    }
+
+    // Sets conversation.last_message_preview/last_role from the newest message of conversation `fk`
+    private static String refreshLastMessage(String fk) {
+        return refreshLastMessage(fk, "");
+    }
+
+    private static String refreshLastMessage(String fk, String extraCondition) {
+        return "UPDATE conversation SET " +
+                "last_message_preview = (SELECT substr(content, 1, 160) FROM chat_message WHERE conversation_fk = " + fk +
+                " ORDER BY timestamp DESC, `index` DESC LIMIT 1), " +
+                "last_role = (SELECT role FROM chat_message WHERE conversation_fk = " + fk +
+                " ORDER BY timestamp DESC, `index` DESC LIMIT 1) " +
+                "WHERE conversation_id = " + fk + extraCondition + "; ";
+    }
+
+    // Tombstoned conversations count only in the triggers installed before version 34
+    private static String conversationCountOf(String characterId, boolean countDeleted) {
+        return "(SELECT COUNT(*) FROM conversation WHERE character_fk = " + characterId +
+                (countDeleted ? "" : " AND deleted_at IS NULL") + ")";
+    }
+
+    // Several defaults for one character was never prevented; the oldest wins
+    private static String defaultScenarioColumn(String column, String characterId) {
+        return "(SELECT " + column + " FROM scenario WHERE character_id = " + characterId +
+                " AND is_default = 1 ORDER BY id LIMIT 1)";
+    }
+
+    private static String refreshDefaultScenario(String characterId, String extraCondition) {
+        return "UPDATE character SET " +
+                "default_scenario_image_path = " + defaultScenarioColumn("image_path", characterId) + ", " +
+                "default_scenario_first_message = " + defaultScenarioColumn("first_message", characterId) + " " +
+                "WHERE character_id = " + characterId + extraCondition + "; ";
+    }
+
+    // Any write to character's cached columns that disagrees with the source tables (an @Update
+    // from a stale copy, an imported row) is put right straight away. The correcting update sets
+    // all three at once, so when it re-fires this the values match and it stops.
+    private static String characterCacheGuard(String name, String event, boolean countDeleted) {
+        String conversationCount = conversationCountOf("NEW.character_id", countDeleted);
+        return "CREATE TRIGGER IF NOT EXISTS " + name + " AFTER " + event + " ON character " +
+                "WHEN NEW.conversation_count IS NOT " + conversationCount +
+                " OR NEW.default_scenario_image_path IS NOT " + defaultScenarioColumn("image_path", "NEW.character_id") +
+                " OR NEW.default_scenario_first_message IS NOT " + defaultScenarioColumn("first_message", "NEW.character_id") +
+                " BEGIN " +
+                "UPDATE character SET conversation_count = " + conversationCount + ", " +
+                "default_scenario_image_path = " + defaultScenarioColumn("image_path", "NEW.character_id") + ", " +
+                "default_scenario_first_message = " + defaultScenarioColumn("first_message", "NEW.character_id") + " " +
+                "WHERE character_id = NEW.character_id; " +
+                "END";
+    }
+
+    // The content-sync triggers Room generates for MessageFts, for migrations that create or
+    // rebuild chat_message. New databases get them from Room.
+    private static final String[] MESSAGE_FTS_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_message_fts_BEFORE_UPDATE BEFORE UPDATE ON `chat_message` BEGIN DELETE FROM `message_fts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_message_fts_BEFORE_DELETE BEFORE DELETE ON `chat_message` BEGIN DELETE FROM `message_fts` WHERE `docid`=OLD.`rowid`; END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_message_fts_AFTER_UPDATE AFTER UPDATE ON `chat_message` BEGIN INSERT INTO `message_fts`(`docid`, `content`) VALUES (NEW.`rowid`, NEW.`content`); END",
+            "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_message_fts_AFTER_INSERT AFTER INSERT ON `chat_message` BEGIN INSERT INTO `message_fts`(`docid`, `content`) VALUES (NEW.`rowid`, NEW.`content`); END"
+    };
+
+    // Triggers Room doesn't know about. Each set is added to existing databases by the migration
+    // that introduced it and to newly created ones by SCHEMA_TRIGGER_SETUP.
+    private static final String[] CONVERSATION_ROLLUP_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS conversation_rollup_after_insert AFTER INSERT ON chat_message BEGIN " +
+                    "UPDATE conversation SET message_count = message_count + 1, " +
+                    "prompt_tokens_total = prompt_tokens_total + NEW.prompt_tokens, " +
+                    "completion_tokens_total = completion_tokens_total + NEW.completion_tokens " +
+                    "WHERE conversation_id = NEW.conversation_fk; " +
+                    refreshLastMessage("NEW.conversation_fk") +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS conversation_rollup_after_delete AFTER DELETE ON chat_message BEGIN " +
+                    "UPDATE conversation SET message_count = message_count - 1, " +
+                    "prompt_tokens_total = prompt_tokens_total - OLD.prompt_tokens, " +
+                    "completion_tokens_total = completion_tokens_total - OLD.completion_tokens " +
+                    "WHERE conversation_id = OLD.conversation_fk; " +
+                    refreshLastMessage("OLD.conversation_fk") +
+                    "END",
+            // Written as a move from OLD to NEW so a message changing conversation stays exact too
+            "CREATE TRIGGER IF NOT EXISTS conversation_rollup_after_update " +
+                    "AFTER UPDATE OF content, role, timestamp, conversation_fk, prompt_tokens, completion_tokens ON chat_message BEGIN " +
+                    "UPDATE conversation SET message_count = message_count - 1, " +
+                    "prompt_tokens_total = prompt_tokens_total - OLD.prompt_tokens, " +
+                    "completion_tokens_total = completion_tokens_total - OLD.completion_tokens " +
+                    "WHERE conversation_id = OLD.conversation_fk; " +
+                    "UPDATE conversation SET message_count = message_count + 1, " +
+                    "prompt_tokens_total = prompt_tokens_total + NEW.prompt_tokens, " +
+                    "completion_tokens_total = completion_tokens_total + NEW.completion_tokens " +
+                    "WHERE conversation_id = NEW.conversation_fk; " +
+                    refreshLastMessage("NEW.conversation_fk") +
+                    refreshLastMessage("OLD.conversation_fk", " AND OLD.conversation_fk != NEW.conversation_fk") +
+                    "END"
+    };
+
+    // character.conversation_count as installed by MIGRATION_30_31, counting every conversation;
+    // MIGRATION_33_34 replaces these with CHARACTER_CACHE_TRIGGERS
+    private static final String[] CHARACTER_CACHE_TRIGGERS_V31 = characterCacheTriggers(
+            "CREATE TRIGGER IF NOT EXISTS character_count_after_insert AFTER INSERT ON conversation BEGIN " +
+                    "UPDATE character SET conversation_count = conversation_count + 1 WHERE character_id = NEW.character_fk; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS character_count_after_delete AFTER DELETE ON conversation BEGIN " +
+                    "UPDATE character SET conversation_count = conversation_count - 1 WHERE character_id = OLD.character_fk; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS character_count_after_move AFTER UPDATE OF character_fk ON conversation " +
+                    "WHEN OLD.character_fk != NEW.character_fk BEGIN " +
+                    "UPDATE character SET conversation_count = conversation_count - 1 WHERE character_id = OLD.character_fk; " +
+                    "UPDATE character SET conversation_count = conversation_count + 1 WHERE character_id = NEW.character_fk; " +
+                    "END",
+            true);
+
+    // character.conversation_count leaves out tombstoned conversations, so a delete shows in the
+    // character list straight away and the purge later changes nothing
+    private static final String[] CHARACTER_CACHE_TRIGGERS = characterCacheTriggers(
+            "CREATE TRIGGER IF NOT EXISTS character_count_after_insert AFTER INSERT ON conversation " +
+                    "WHEN NEW.deleted_at IS NULL BEGIN " +
+                    "UPDATE character SET conversation_count = conversation_count + 1 WHERE character_id = NEW.character_fk; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS character_count_after_delete AFTER DELETE ON conversation " +
+                    "WHEN OLD.deleted_at IS NULL BEGIN " +
+                    "UPDATE character SET conversation_count = conversation_count - 1 WHERE character_id = OLD.character_fk; " +
+                    "END",
+            // Moving to another character, tombstoning and undoing are all a move from OLD to NEW
+            "CREATE TRIGGER IF NOT EXISTS character_count_after_move AFTER UPDATE OF character_fk, deleted_at ON conversation " +
+                    "WHEN OLD.character_fk != NEW.character_fk OR (OLD.deleted_at IS NULL) != (NEW.deleted_at IS NULL) BEGIN " +
+                    "UPDATE character SET conversation_count = conversation_count - 1 " +
+                    "WHERE character_id = OLD.character_fk AND OLD.deleted_at IS NULL; " +
+                    "UPDATE character SET conversation_count = conversation_count + 1 " +
+                    "WHERE character_id = NEW.character_fk AND NEW.deleted_at IS NULL; " +
+                    "END",
+            false);
+
+    // The three conversation count triggers followed by the default scenario ones and the guard
+    private static String[] characterCacheTriggers(String afterInsert, String afterDelete, String afterMove,
+                                                   boolean countDeleted) {
+        return new String[]{
+                afterInsert,
+                afterDelete,
+                afterMove,
+                // character.default_scenario_*: the default scenario's image and greeting
+                "CREATE TRIGGER IF NOT EXISTS character_default_scenario_after_insert AFTER INSERT ON scenario " +
+                        "WHEN NEW.is_default = 1 BEGIN " +
+                        refreshDefaultScenario("NEW.character_id", "") +
+                        "END",
+                "CREATE TRIGGER IF NOT EXISTS character_default_scenario_after_delete AFTER DELETE ON scenario " +
+                        "WHEN OLD.is_default = 1 BEGIN " +
+                        refreshDefaultScenario("OLD.character_id", "") +
+                        "END",
+                "CREATE TRIGGER IF NOT EXISTS character_default_scenario_after_update " +
+                        "AFTER UPDATE OF character_id, is_default, image_path, first_message ON scenario " +
+                        "WHEN OLD.is_default = 1 OR NEW.is_default = 1 BEGIN " +
+                        refreshDefaultScenario("NEW.character_id", "") +
+                        refreshDefaultScenario("OLD.character_id", " AND OLD.character_id != NEW.character_id") +
+                        "END",
+                characterCacheGuard("character_cache_guard_after_insert", "INSERT", countDeleted),
+                characterCacheGuard("character_cache_guard_after_update",
+                        "UPDATE OF conversation_count, default_scenario_image_path, default_scenario_first_message",
+                        countDeleted)
+        };
+    }
+
+    // tag.usage_count; the last link going also removes the tag, so the chips never show an unused one
+    private static final String[] TAG_USAGE_TRIGGERS = {
+            "CREATE TRIGGER IF NOT EXISTS tag_usage_after_insert AFTER INSERT ON character_tag BEGIN " +
+                    "UPDATE tag SET usage_count = usage_count + 1 WHERE tag_id = NEW.tag_id; " +
+                    "END",
+            "CREATE TRIGGER IF NOT EXISTS tag_usage_after_delete AFTER DELETE ON character_tag BEGIN " +
+                    "UPDATE tag SET usage_count = usage_count - 1 WHERE tag_id = OLD.tag_id; " +
+                    "DELETE FROM tag WHERE tag_id = OLD.tag_id AND usage_count <= 0; " +
+                    "END"
+    };
+
+    private static final Callback SCHEMA_TRIGGER_SETUP = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            for (String trigger : CONVERSATION_ROLLUP_TRIGGERS) {
+                db.execSQL(trigger);
+            }
+            for (String trigger : CHARACTER_CACHE_TRIGGERS) {
+                db.execSQL(trigger);
+            }
+            for (String trigger : TAG_USAGE_TRIGGERS) {
+                db.execSQL(trigger);
+            }
+            createPartialIndexes(db);
+        }
+    };
+
+    // Runs from onConfigure, before Room's onOpen creates its temp tables: once temp storage is in
+    // use, temp_store can't change inside a transaction and outside one it would drop those tables.
+    private static void applyStorageProfile(SupportSQLiteDatabase db) {
+        // execSQL runs on the primary connection; synchronous can't change inside a transaction
+        db.execSQL(WRITER_SYNC_PRAGMA);
+        // The rest echo the new value back as a row, which execSQL refuses, and a plain query may
+        // go to a read connection. Inside a transaction every statement uses the primary one.
+        StringBuilder applied = new StringBuilder();
+        db.beginTransaction();
+        try {
+            for (String pragma : WRITER_PRAGMAS) {
+                try (Cursor cursor = db.query(pragma)) {
+                    cursor.moveToFirst();
+                }
+            }
+            for (String pragma : PROFILE_PRAGMAS) {
+                try (Cursor cursor = db.query("PRAGMA " + pragma)) {
+                    applied.append(pragma).append(" = ").append(cursor.moveToFirst() ? cursor.getString(0) : "?").append('\n');
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        writerProfile = applied.toString();
+    }
+
+    // Framework open helper whose onConfigure also applies the storage profile; everything else
+    // goes to Room's callback unchanged.
+    private static final class StorageProfileFactory implements SupportSQLiteOpenHelper.Factory {
+        private final SupportSQLiteOpenHelper.Factory delegate = new FrameworkSQLiteOpenHelperFactory();
+
+        @NonNull
+        @Override
+        public SupportSQLiteOpenHelper create(@NonNull SupportSQLiteOpenHelper.Configuration configuration) {
+            SupportSQLiteOpenHelper.Callback room = configuration.callback;
+            SupportSQLiteOpenHelper.Callback callback = new SupportSQLiteOpenHelper.Callback(room.version) {
+                @Override
+                public void onConfigure(@NonNull SupportSQLiteDatabase db) {
+                    room.onConfigure(db);
+                    applyStorageProfile(db);
+                }
+
+                @Override
+                public void onCreate(@NonNull SupportSQLiteDatabase db) {
+                    room.onCreate(db);
+                }
+
+                @Override
+                public void onUpgrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                    room.onUpgrade(db, oldVersion, newVersion);
+                }
+
+                @Override
+                public void onDowngrade(@NonNull SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                    room.onDowngrade(db, oldVersion, newVersion);
+                }
+
+                @Override
+                public void onOpen(@NonNull SupportSQLiteDatabase db) {
+                    room.onOpen(db);
+                }
+
+                @Override
+                public void onCorruption(@NonNull SupportSQLiteDatabase db) {
+                    room.onCorruption(db);
+                }
+            };
+            return delegate.create(SupportSQLiteOpenHelper.Configuration.builder(configuration.context)
+                    .name(configuration.name)
+                    .callback(callback)
+                    .noBackupDirectory(configuration.useNoBackupDirectory)
+                    .allowDataLossOnRecovery(configuration.allowDataLossOnRecovery)
+                    .build());
+        }
+    }
+
+    // Passive checkpoint after a burst of writes (e.g. a finished reply), at most every
+    // CHECKPOINT_INTERVAL_MS. Passive never blocks readers or waits on them.
+    public void checkpointIfDue() {
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastCheckpointAt < CHECKPOINT_INTERVAL_MS) return;
+        lastCheckpointAt = now;
+        try (Cursor cursor = getOpenHelper().getWritableDatabase().query("PRAGMA wal_checkpoint(PASSIVE)")) {
+            cursor.moveToFirst();
+        }
+    }
+
+    // Current storage settings and file stats, one "name = value" per line, for the debug screen.
+    public String describeStorage() {
+        SupportSQLiteDatabase db = getOpenHelper().getWritableDatabase();
+        StringBuilder info = new StringBuilder();
+        for (String pragma : REPORTED_PRAGMAS) {
+            try (Cursor cursor = db.query("PRAGMA " + pragma)) {
+                info.append(pragma).append(" = ").append(cursor.moveToFirst() ? cursor.getString(0) : "?").append('\n');
+            }
+        }
+        info.append(writerProfile);
+        // Read off the file rather than with wal_checkpoint, which would checkpoint as a side effect
+        String path = db.getPath();
+        if (path != null) {
+            info.append("wal_size = ").append(new File(path + "-wal").length() / 1024).append(" KB\n");
+        }
+        return info.toString().trim();
+    }
+
+    // A throwaway database with the same triggers and partial indexes, for tests.
+    @VisibleForTesting
+    public static AppDatabase createInMemory(Context context) {
+        return Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .addCallback(SCHEMA_TRIGGER_SETUP)
+                .build();
+    }
+
     public static AppDatabase getInstance(final Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
                     INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, DATABASE_NAME)
-                            .addMigrations(MIGRATION_6_7, MIGRATION_10_11, MIGRATION_11_12, MIGRATION_12_13, MIGRATION_13_14, MIGRATION_14_15, MIGRATION_15_16, MIGRATION_16_17, MIGRATION_17_18, MIGRATION_18_19, MIGRATION_19_20, MIGRATION_20_21, MIGRATION_21_22)
+                            .addMigrations(MIGRATION_6_7, MIGRATION_10_11, MIGRATION_11_12, MIGRATION_12_13, MIGRATION_13_14, MIGRATION_14_15, MIGRATION_15_16, MIGRATION_16_17, MIGRATION_17_18, MIGRATION_18_19, MIGRATION_19_20, MIGRATION_20_21, MIGRATION_21_22, MIGRATION_22_23, MIGRATION_23_24, MIGRATION_24_25, MIGRATION_25_26, MIGRATION_26_27, MIGRATION_27_28, MIGRATION_28_29, MIGRATION_29_30, MIGRATION_30_31, MIGRATION_31_32, MIGRATION_32_33, MIGRATION_33_34)
                             .fallbackToDestructiveMigration()
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
+                            .addCallback(SCHEMA_TRIGGER_SETUP)
+                            .openHelperFactory(new StorageProfileFactory())
                             .build();
                 }
             }
@@ -6,9 +6,10 @@ import androidx.room.Insert;
 import androidx.room.Query;
 import androidx.room.Update;
 import androidx.room.Delete;
-import androidx.room.OnConflictStrategy;
+import androidx.room.Upsert;
 
 import com.example.testing.data.local.entity.Character;
+import com.example.testing.data.local.entity.relations.CharacterSearchText;
 
 import java.util.List;
 
@@ -18,7 +19,8 @@ public interface CharacterDao {
     @Insert
     long insert(Character character);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // Not REPLACE, which would delete the character first and cascade to its conversations
+    @Upsert
     void insertAll(List<Character> characters);
 
     @Query("SELECT * FROM character")
@@ -36,15 +38,19 @@ public interface CharacterDao {
     @Query("SELECT * FROM character WHERE character_id = :id")
     LiveData<Character> getCharacterById(int id);
 
+    // Reads character over index_character_is_hidden_is_favorite_name, and the tag tables only for
+    // the tag filter. The conversation count and default scenario overrides are trigger-maintained
+    // columns, so this re-runs when a character or its tags change, not on every conversation
+    // update during generation. Text search is applied on top, in memory (CharacterSearchIndex).
     @Query("SELECT " +
             "c.character_id, " +
             "c.created_at, " +
             "c.name, " +
             "c.model, " +
             "c.personality, " +
-            "COALESCE(NULLIF(s.first_message, ''), c.first_message) as first_message, " +
+            "COALESCE(NULLIF(c.default_scenario_first_message, ''), c.first_message) as first_message, " +
             "c.is_active, " +
-            "COALESCE(NULLIF(s.image_path, ''), c.character_profile_image_path) as character_profile_image_path, " +
+            "COALESCE(NULLIF(c.default_scenario_image_path, ''), c.character_profile_image_path) as character_profile_image_path, " +
             "c.voice_reference_id, " +
             "c.voice_reference_name, " +
             "c.temperature, " +
@@ -55,17 +61,22 @@ public interface CharacterDao {
             "c.context_limit, " +
             "c.tags, " +
             "c.default_scenario, " +
-            "COUNT(DISTINCT conv.conversation_id) as conversation_count " +
+            "c.conversation_count, " +
+            "c.default_scenario_image_path, " +
+            "c.default_scenario_first_message " +
             "FROM character c " +
-            "LEFT JOIN conversation conv ON c.character_id = conv.character_fk " +
-            "LEFT JOIN scenario s ON c.character_id = s.character_id AND s.is_default = 1 " +
             "WHERE c.is_hidden = :isHidden " +
-            "AND c.name LIKE '%' || :searchQuery || '%' " +
-            "AND (:tagFilter IS NULL OR :tagFilter = '' OR c.tags LIKE '%' || :tagFilter || '%') " +
-            "GROUP BY c.character_id " +
+            // Exact tag names through index_tag_name and the character_tag index: any of the
+            // tags, or with matchAll every one of them
+            "AND (:tagCount = 0 OR c.character_id IN (" +
+            "SELECT ct.character_id FROM tag t INNER JOIN character_tag ct ON ct.tag_id = t.tag_id " +
+            "WHERE t.name IN (:tags) " +
+            "GROUP BY ct.character_id " +
+            "HAVING COUNT(*) >= CASE WHEN :matchAll THEN :tagCount ELSE 1 END)) " +
             "ORDER BY c.is_favorite DESC, c.name ASC")
-    LiveData<List<Character>> getFilteredCharacters(boolean isHidden, String searchQuery, String tagFilter);
+    LiveData<List<Character>> getFilteredCharacters(boolean isHidden, List<String> tags, int tagCount, boolean matchAll);
 
-    @Query("SELECT tags FROM character WHERE tags IS NOT NULL AND tags != ''")
-    LiveData<List<String>> getAllTags();
+    // Text search runs in memory over this; the personality is cut short since only its start is indexed
+    @Query("SELECT character_id, name, tags, substr(personality, 1, 600) AS personality_excerpt FROM character")
+    List<CharacterSearchText> getSearchTextsSync();
 }
\ No newline at end of file
@@ -7,7 +7,7 @@ import androidx.room.Query;
 import androidx.room.Transaction;
 import androidx.room.Update;
 import androidx.room.Delete;
-import androidx.room.OnConflictStrategy;
+import androidx.room.Upsert;
 
 import com.example.testing.data.local.entity.Conversation;
 import com.example.testing.data.local.entity.relations.ConversationWithCharacter;
@@ -20,10 +20,12 @@ public interface ConversationDao {
     @Insert
     long insert(Conversation conversation);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // Not REPLACE: replacing a conversation deletes it first, and the cascade takes its messages
+    @Upsert
     void insertAll(List<Conversation> conversations);
 
-    @Query("SELECT * FROM conversation")
+    // Lists leave out tombstoned conversations (deleted_at set); only the purge and undo see them
+    @Query("SELECT * FROM conversation WHERE deleted_at IS NULL")
     List<Conversation> getAllConversationsSync();
 
     @Query("DELETE FROM conversation")
@@ -35,11 +37,30 @@ public interface ConversationDao {
     @Query("UPDATE conversation SET last_updated = :timestamp WHERE conversation_id = :id")
     void updateLastUpdated(int id, long timestamp);
 
+    @Query("UPDATE conversation SET summary = :summary, summary_through_timestamp = :throughTimestamp, " +
+            "summary_through_index = :throughIndex WHERE conversation_id = :id")
+    void updateSummary(int id, String summary, long throughTimestamp, int throughIndex);
+
     @Delete
     void delete(Conversation conversation);
 
-    @Query("DELETE FROM conversation WHERE conversation_id IN (:conversationIds)")
-    void deleteConversationsByIds(List<Integer> conversationIds);
+    @Query("UPDATE conversation SET deleted_at = :deletedAt WHERE conversation_id IN (:conversationIds) AND deleted_at IS NULL")
+    void markDeleted(List<Integer> conversationIds, long deletedAt);
+
+    @Query("UPDATE conversation SET deleted_at = NULL WHERE conversation_id IN (:conversationIds)")
+    void restore(List<Integer> conversationIds);
+
+    // Oldest tombstones first, through index_conversation_deleted_at
+    @Query("SELECT conversation_id FROM conversation WHERE deleted_at IS NOT NULL AND deleted_at <= :deletedBefore " +
+            "ORDER BY deleted_at LIMIT :limit")
+    List<Integer> getDeletedConversationIdsSync(long deletedBefore, int limit);
+
+    @Query("SELECT EXISTS (SELECT 1 FROM conversation WHERE deleted_at IS NOT NULL)")
+    boolean hasDeletedConversationsSync();
+
+    // Only ever tombstoned rows, so an undo that lands mid-purge keeps its conversation
+    @Query("DELETE FROM conversation WHERE conversation_id IN (:conversationIds) AND deleted_at IS NOT NULL")
+    void deleteDeletedConversations(List<Integer> conversationIds);
 
     @Query("SELECT * FROM conversation WHERE conversation_id = :id")
     LiveData<Conversation> getConversationById(int id);
@@ -49,23 +70,74 @@ public interface ConversationDao {
     Conversation getConversationByIdSync(int id);
     // --------------------------------
 
-    @Query("SELECT * FROM conversation WHERE character_fk = :characterId ORDER BY last_updated DESC")
+    @Query("SELECT * FROM conversation WHERE character_fk = :characterId AND deleted_at IS NULL ORDER BY last_updated DESC")
     List<Conversation> getConversationsForCharacter(int characterId);
 
-    @Transaction
-    @Query("SELECT conversation.*, character.name, " +
-            "(SELECT COUNT(*) FROM chat_message WHERE conversation_fk = conversation.conversation_id) AS message_count " +
+    // Same rows as HISTORY_ROW, so ids line up with what the history list shows
+    @Query("SELECT conversation.conversation_id FROM conversation " +
+            "INNER JOIN character ON conversation.character_fk = character.character_id " +
+            "WHERE conversation.deleted_at IS NULL")
+    List<Integer> getAllConversationIdsSync();
+
+    // Recomputes the trigger-maintained rollups from scratch, for after a bulk load.
+    String REBUILD_ROLLUPS = "UPDATE conversation SET " +
+            "message_count = (SELECT COUNT(*) FROM chat_message WHERE conversation_fk = conversation_id), " +
+            "prompt_tokens_total = (SELECT COALESCE(SUM(prompt_tokens), 0) FROM chat_message WHERE conversation_fk = conversation_id), " +
+            "completion_tokens_total = (SELECT COALESCE(SUM(completion_tokens), 0) FROM chat_message WHERE conversation_fk = conversation_id), " +
+            "last_message_preview = (SELECT substr(content, 1, 160) FROM chat_message WHERE conversation_fk = conversation_id " +
+            "ORDER BY timestamp DESC, `index` DESC LIMIT 1), " +
+            "last_role = (SELECT role FROM chat_message WHERE conversation_fk = conversation_id " +
+            "ORDER BY timestamp DESC, `index` DESC LIMIT 1)";
+
+    @Query(REBUILD_ROLLUPS)
+    void rebuildRollups();
+
+    // History list rows, paged by keyset on (last_updated, conversation_id) newest first.
+    // index_conversation_last_updated carries the rowid, so every page is an index range scan,
+    // and the message rollups are columns of the row rather than a subquery per conversation.
+    // The index only holds live rows, and SQLite uses it only when the query says so too.
+    String HISTORY_ROW = "SELECT conversation.*, character.name " +
             "FROM conversation " +
             "INNER JOIN character ON conversation.character_fk = character.character_id " +
-            "ORDER BY conversation.last_updated DESC")
-    LiveData<List<ConversationWithCharacter>> getAllConversationsWithCharacter();
+            "WHERE conversation.deleted_at IS NULL ";
 
     @Transaction
-    @Query("SELECT conversation.*, character.name, " +
-            "(SELECT COUNT(*) FROM chat_message WHERE conversation_fk = conversation.conversation_id) AS message_count " +
-            "FROM conversation " +
+    @Query(HISTORY_ROW +
+            "ORDER BY conversation.last_updated DESC, conversation.conversation_id DESC " +
+            "LIMIT :limit")
+    List<ConversationWithCharacter> getNewestConversationsWithCharacter(int limit);
+
+    @Transaction
+    @Query(HISTORY_ROW +
+            "AND (conversation.last_updated, conversation.conversation_id) <= (:lastUpdated, :id) " +
+            "ORDER BY conversation.last_updated DESC, conversation.conversation_id DESC " +
+            "LIMIT :limit")
+    List<ConversationWithCharacter> getConversationsWithCharacterFrom(long lastUpdated, int id, int limit);
+
+    @Transaction
+    @Query(HISTORY_ROW +
+            "AND (conversation.last_updated, conversation.conversation_id) < (:lastUpdated, :id) " +
+            "ORDER BY conversation.last_updated DESC, conversation.conversation_id DESC " +
+            "LIMIT :limit")
+    List<ConversationWithCharacter> getConversationsWithCharacterOlderThan(long lastUpdated, int id, int limit);
+
+    // Ascending, so the rows nearest the key come first; callers reverse them
+    @Transaction
+    @Query(HISTORY_ROW +
+            "AND (conversation.last_updated, conversation.conversation_id) > (:lastUpdated, :id) " +
+            "ORDER BY conversation.last_updated ASC, conversation.conversation_id ASC " +
+            "LIMIT :limit")
+    List<ConversationWithCharacter> getConversationsWithCharacterNewerThan(long lastUpdated, int id, int limit);
+
+    @Query("SELECT COUNT(*) FROM conversation " +
+            "INNER JOIN character ON conversation.character_fk = character.character_id " +
+            "WHERE conversation.deleted_at IS NULL " +
+            "AND (conversation.last_updated, conversation.conversation_id) > (:lastUpdated, :id)")
+    int countConversationsNewerThan(long lastUpdated, int id);
+
+    @Query("SELECT COUNT(*) FROM conversation " +
             "INNER JOIN character ON conversation.character_fk = character.character_id " +
-            "ORDER BY conversation.last_updated DESC " +
-            "LIMIT :limit OFFSET :offset")
-    List<ConversationWithCharacter> getConversationsWithCharacterPaged(int limit, int offset);
+            "WHERE conversation.deleted_at IS NULL " +
+            "AND (conversation.last_updated, conversation.conversation_id) < (:lastUpdated, :id)")
+    int countConversationsOlderThan(long lastUpdated, int id);
 }
\ No newline at end of file
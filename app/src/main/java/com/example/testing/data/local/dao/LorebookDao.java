@@ -0,0 +1,45 @@
+package com.example.testing.data.local.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Delete;
+import androidx.room.Insert;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import com.example.testing.data.local.entity.LorebookEntry;
+
+import java.util.List;
+
+@Dao
+public interface LorebookDao {
+    @Insert
+    long insert(LorebookEntry entry);
+
+    @Insert
+    void insertAll(List<LorebookEntry> entries);
+
+    @Update
+    void update(LorebookEntry entry);
+
+    @Delete
+    void delete(LorebookEntry entry);
+
+    @Query("DELETE FROM lorebook_entry")
+    void deleteAll();
+
+    @Query("SELECT * FROM lorebook_entry")
+    List<LorebookEntry> getAllEntriesSync();
+
+    @Query("SELECT * FROM lorebook_entry WHERE character_id = :characterId AND scenario_id IS NULL ORDER BY id ASC")
+    LiveData<List<LorebookEntry>> getEntriesForCharacter(int characterId);
+
+    @Query("SELECT * FROM lorebook_entry WHERE scenario_id = :scenarioId ORDER BY id ASC")
+    LiveData<List<LorebookEntry>> getEntriesForScenario(int scenarioId);
+
+    @Query("SELECT * FROM lorebook_entry WHERE character_id = :characterId AND scenario_id IS NULL AND is_enabled = 1 ORDER BY id ASC")
+    List<LorebookEntry> getEnabledEntriesForCharacterSync(int characterId);
+
+    @Query("SELECT * FROM lorebook_entry WHERE scenario_id = :scenarioId AND is_enabled = 1 ORDER BY id ASC")
+    List<LorebookEntry> getEnabledEntriesForScenarioSync(int scenarioId);
+}
@@ -1,12 +1,11 @@
 package com.example.testing.data.local.dao;
 
-import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.Query;
 import androidx.room.Update;
+import androidx.room.Upsert;
 import androidx.room.Delete;
-import androidx.room.OnConflictStrategy;
 
 import com.example.testing.data.local.entity.Message;
 
@@ -16,9 +15,10 @@ import java.util.List;
 public interface MessageDao {
 
     @Insert
-    void insert(Message message);
+    long insert(Message message);
 
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    // Not REPLACE: its implicit delete skips the delete triggers, so the rollups would double count
+    @Upsert
     void insertAll(List<Message> messages);
 
     @Query("SELECT * FROM chat_message")
@@ -30,18 +30,50 @@ public interface MessageDao {
     @Update
     void update(Message message);
 
+    @Query("UPDATE chat_message SET content = :content WHERE `index` = :messageId")
+    void updateContent(int messageId, String content);
+
     @Delete
     void delete(Message message);
 
-    @Query("DELETE FROM chat_message WHERE conversation_fk = :conversationId")
-    void deleteMessagesByConversationId(int conversationId);
-
-    @Query("DELETE FROM chat_message WHERE conversation_fk IN (:conversationIds)")
-    void deleteMessagesByConversationIds(List<Integer> conversationIds);
-
-    @Query("SELECT * FROM chat_message WHERE conversation_fk = :conversationId ORDER BY timestamp ASC")
-    LiveData<List<Message>> getMessagesForConversation(int conversationId);
+    // One bounded slice of a purge; the caller repeats it until nothing is left
+    @Query("DELETE FROM chat_message WHERE `index` IN " +
+            "(SELECT `index` FROM chat_message WHERE conversation_fk IN (:conversationIds) LIMIT :limit)")
+    int deleteMessageBatch(List<Integer> conversationIds, int limit);
 
     @Query("SELECT * FROM chat_message WHERE conversation_fk = :conversationId ORDER BY timestamp ASC")
     List<Message> getMessagesForConversationSync(int conversationId);
+
+    @Query("SELECT * FROM chat_message WHERE `index` IN (:messageIds) ORDER BY timestamp ASC, `index` ASC")
+    List<Message> getMessagesByIdsSync(List<Integer> messageIds);
+
+    // Newest first. `index` breaks ties between messages saved in the same millisecond.
+    @Query("SELECT * FROM chat_message WHERE conversation_fk = :conversationId ORDER BY timestamp DESC, `index` DESC LIMIT :limit")
+    List<Message> getRecentMessagesSync(int conversationId, int limit);
+
+    // Keyset continuation of getRecentMessagesSync: the next page older than (beforeTimestamp, beforeIndex).
+    @Query("SELECT * FROM chat_message WHERE conversation_fk = :conversationId " +
+            "AND (timestamp < :beforeTimestamp OR (timestamp = :beforeTimestamp AND `index` < :beforeIndex)) " +
+            "ORDER BY timestamp DESC, `index` DESC LIMIT :limit")
+    List<Message> getMessagesBeforeSync(int conversationId, long beforeTimestamp, int beforeIndex, int limit);
+
+    // Oldest first, strictly between two (timestamp, index) positions.
+    @Query("SELECT * FROM chat_message WHERE conversation_fk = :conversationId " +
+            "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND `index` > :afterIndex)) " +
+            "AND (timestamp < :beforeTimestamp OR (timestamp = :beforeTimestamp AND `index` < :beforeIndex)) " +
+            "ORDER BY timestamp ASC, `index` ASC LIMIT :limit")
+    List<Message> getMessagesBetweenSync(int conversationId, long afterTimestamp, int afterIndex,
+                                         long beforeTimestamp, int beforeIndex, int limit);
+
+    // Oldest first, from (afterTimestamp, afterIndex) exclusive onwards.
+    @Query("SELECT * FROM chat_message WHERE conversation_fk = :conversationId " +
+            "AND (timestamp > :afterTimestamp OR (timestamp = :afterTimestamp AND `index` > :afterIndex)) " +
+            "ORDER BY timestamp ASC, `index` ASC LIMIT :limit")
+    List<Message> getMessagesAfterSync(int conversationId, long afterTimestamp, int afterIndex, int limit);
+
+    // Oldest first, from (fromTimestamp, fromIndex) inclusive onwards.
+    @Query("SELECT * FROM chat_message WHERE conversation_fk = :conversationId " +
+            "AND (timestamp > :fromTimestamp OR (timestamp = :fromTimestamp AND `index` >= :fromIndex)) " +
+            "ORDER BY timestamp ASC, `index` ASC LIMIT :limit")
+    List<Message> getMessagesFromSync(int conversationId, long fromTimestamp, int fromIndex, int limit);
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.example.testing.data.local.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.MessageEmbedding;
+
+import java.util.List;
+
+@Dao
+public interface MessageEmbeddingDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(MessageEmbedding embedding);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<MessageEmbedding> embeddings);
+
+    @Query("SELECT * FROM message_embedding WHERE conversation_fk = :conversationId")
+    List<MessageEmbedding> getEmbeddingsForConversationSync(int conversationId);
+
+    // Messages of the conversation that have no vector yet, e.g. ones saved before this table existed.
+    @Query("SELECT m.* FROM chat_message m LEFT JOIN message_embedding e ON e.message_id = m.`index` " +
+            "WHERE m.conversation_fk = :conversationId AND e.message_id IS NULL LIMIT :limit")
+    List<Message> getUnembeddedMessagesSync(int conversationId, int limit);
+}
@@ -0,0 +1,42 @@
+package com.example.testing.data.local.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.example.testing.data.local.entity.relations.MessageMatch;
+import com.example.testing.data.local.entity.relations.MessageSearchHit;
+
+import java.util.List;
+
+@Dao
+public interface MessageSearchDao {
+
+    // Newest matches first, with the statistics needed to rank them. Tombstoned conversations
+    // are left out here, so their messages don't use up the limit.
+    @Query("SELECT message_fts.docid AS message_id, matchinfo(message_fts, 'pcnalx') AS match_info FROM message_fts " +
+            "JOIN chat_message ON chat_message.`index` = message_fts.docid " +
+            "JOIN conversation ON conversation.conversation_id = chat_message.conversation_fk " +
+            "WHERE message_fts MATCH :query AND conversation.deleted_at IS NULL " +
+            "ORDER BY message_fts.docid DESC LIMIT :limit")
+    List<MessageMatch> getMatchesSync(String query, int limit);
+
+    // Matches inside one conversation, newest first; find-in-conversation doesn't need ranking.
+    @Query("SELECT chat_message.`index` FROM message_fts " +
+            "JOIN chat_message ON chat_message.`index` = message_fts.docid " +
+            "WHERE message_fts MATCH :query AND chat_message.conversation_fk = :conversationId " +
+            "ORDER BY chat_message.timestamp DESC, chat_message.`index` DESC LIMIT :limit")
+    List<Integer> getMatchIdsInConversationSync(String query, int conversationId, int limit);
+
+    // Display rows for a page of matched ids. The MATCH is repeated so snippet() knows the terms.
+    // Messages of a deleted conversation stay indexed until the purge; their rows are dropped here.
+    @Query("SELECT chat_message.`index` AS message_id, chat_message.conversation_fk AS conversation_id, " +
+            "conversation.character_fk AS character_id, character.name AS character_name, " +
+            "conversation.title AS conversation_title, chat_message.role AS role, chat_message.timestamp AS timestamp, " +
+            "snippet(message_fts, :highlightStart, :highlightEnd, '…', -1, 16) AS snippet " +
+            "FROM message_fts " +
+            "JOIN chat_message ON chat_message.`index` = message_fts.docid " +
+            "JOIN conversation ON conversation.conversation_id = chat_message.conversation_fk " +
+            "LEFT JOIN character ON character.character_id = conversation.character_fk " +
+            "WHERE message_fts MATCH :query AND message_fts.docid IN (:messageIds) AND conversation.deleted_at IS NULL")
+    List<MessageSearchHit> getHitsSync(String query, List<Integer> messageIds, String highlightStart, String highlightEnd);
+}
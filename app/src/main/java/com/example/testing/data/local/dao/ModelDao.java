@@ -0,0 +1,29 @@
+package com.example.testing.data.local.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.testing.data.local.entity.ModelInfo;
+
+import java.util.List;
+
+@Dao
+public interface ModelDao {
+    @Query("SELECT * FROM model_catalog ORDER BY model_id")
+    List<ModelInfo> getAllModelsSync();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<ModelInfo> models);
+
+    @Query("DELETE FROM model_catalog")
+    void deleteAll();
+
+    @Transaction
+    default void replaceAll(List<ModelInfo> models) {
+        deleteAll();
+        insertAll(models);
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.testing.data.local.dao;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.example.testing.data.local.entity.Tag;
+import com.example.testing.utils.TagParser;
+
+import java.util.List;
+
+@Dao
+public interface TagDao {
+
+    // Counts are trigger-maintained, so the filter chips are one read of a small table
+    @Query("SELECT * FROM tag WHERE usage_count > 0 ORDER BY name")
+    LiveData<List<Tag>> getAllTags();
+
+    @Query("INSERT OR IGNORE INTO tag (name) VALUES (:name)")
+    void insertName(String name);
+
+    @Query("INSERT OR IGNORE INTO character_tag (character_id, tag_id) " +
+            "SELECT :characterId, tag_id FROM tag WHERE name IN (:names)")
+    void link(int characterId, List<String> names);
+
+    @Query("DELETE FROM character_tag WHERE character_id = :characterId " +
+            "AND tag_id NOT IN (SELECT tag_id FROM tag WHERE name IN (:names))")
+    void unlinkAllExcept(int characterId, List<String> names);
+
+    // Brings character_tag in line with a character's tags string. Only the difference is
+    // written, so saving a character whose tags didn't change leaves both tables untouched.
+    @Transaction
+    default void setTagsForCharacter(int characterId, String tags) {
+        List<String> names = TagParser.parse(tags);
+        unlinkAllExcept(characterId, names);
+        for (String name : names) {
+            insertName(name);
+        }
+        link(characterId, names);
+    }
+}
@@ -2,11 +2,19 @@ package com.example.testing.data.local.entity;
 
 import androidx.room.Entity;
 import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import androidx.room.ColumnInfo;
+
+import com.example.testing.utils.TagParser;
+
 import java.io.Serializable;
+import java.util.List;
 
-@Entity(tableName = "character")
+// The index matches the main list: one visibility, favourites first, then by name
+@Entity(tableName = "character",
+        indices = {@Index(value = {"is_hidden", "is_favorite", "name"},
+                orders = {Index.Order.ASC, Index.Order.DESC, Index.Order.ASC})})
 public class Character implements Serializable {
 
     @PrimaryKey(autoGenerate = true)
@@ -61,12 +69,24 @@ public class Character implements Serializable {
     @ColumnInfo(name = "tags", defaultValue = "")
     private String tags = "";
 
+    // conversation_count and the default_scenario_* copies are kept exact by triggers on
+    // conversation and scenario (AppDatabase.CHARACTER_CACHE_TRIGGERS); values written from here are corrected.
     @ColumnInfo(name = "conversation_count")
     private int conversationCount;
 
+    @ColumnInfo(name = "default_scenario_image_path")
+    private String defaultScenarioImagePath;
+
+    @ColumnInfo(name = "default_scenario_first_message")
+    private String defaultScenarioFirstMessage;
+
     @ColumnInfo(name = "default_scenario", defaultValue = "")
     private String defaultScenario = "";
 
+    // tags split once per loaded row instead of on every bind; not stored or serialized
+    @Ignore
+    private transient List<String> tagList;
+
     public Character() { }
 
     @Ignore
@@ -146,7 +166,13 @@ public class Character implements Serializable {
     public int getConversationCount() { return conversationCount; }
     public Integer getContextLimit() { return contextLimit; }
     public String getTags() { return tags; }
+    public List<String> getTagList() {
+        if (tagList == null) tagList = TagParser.parse(tags);
+        return tagList;
+    }
     public String getDefaultScenario() { return defaultScenario; }
+    public String getDefaultScenarioImagePath() { return defaultScenarioImagePath; }
+    public String getDefaultScenarioFirstMessage() { return defaultScenarioFirstMessage; }
 
     public void setId(int id) { this.id = id; }
     public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
@@ -165,6 +191,11 @@ public class Character implements Serializable {
     public void setTimeAware(boolean timeAware) { isTimeAware = timeAware; }
     public void setConversationCount(int conversationCount) { this.conversationCount = conversationCount; }
     public void setContextLimit(Integer contextLimit) { this.contextLimit = contextLimit; }
-    public void setTags(String tags) { this.tags = tags; }
+    public void setTags(String tags) {
+        this.tags = tags;
+        this.tagList = null;
+    }
     public void setDefaultScenario(String defaultScenario) { this.defaultScenario = defaultScenario; }
+    public void setDefaultScenarioImagePath(String defaultScenarioImagePath) { this.defaultScenarioImagePath = defaultScenarioImagePath; }
+    public void setDefaultScenarioFirstMessage(String defaultScenarioFirstMessage) { this.defaultScenarioFirstMessage = defaultScenarioFirstMessage; }
 }
\ No newline at end of file
@@ -0,0 +1,37 @@
+package com.example.testing.data.local.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+
+// Links a character to a tag. The (tag_id, character_id) index answers "which characters have
+// these tags" without reading the table; the primary key covers the other direction.
+@Entity(tableName = "character_tag",
+        primaryKeys = {"character_id", "tag_id"},
+        foreignKeys = {
+                @ForeignKey(entity = Character.class,
+                        parentColumns = "character_id",
+                        childColumns = "character_id",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = Tag.class,
+                        parentColumns = "tag_id",
+                        childColumns = "tag_id",
+                        onDelete = ForeignKey.CASCADE)},
+        indices = {@Index(value = {"tag_id", "character_id"})})
+public class CharacterTag {
+
+    @ColumnInfo(name = "character_id")
+    private int characterId;
+
+    @ColumnInfo(name = "tag_id")
+    private int tagId;
+
+    public CharacterTag(int characterId, int tagId) {
+        this.characterId = characterId;
+        this.tagId = tagId;
+    }
+
+    public int getCharacterId() { return characterId; }
+    public int getTagId() { return tagId; }
+}
@@ -2,12 +2,22 @@ package com.example.testing.data.local.entity;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.ForeignKey;
 import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 import java.io.Serializable;
 
-@Entity(tableName = "conversation", indices = {@Index(value = "last_updated", name = "index_conversation_last_updated")})
+// Deleting a character takes its conversations, and through chat_message's key their messages
+@Entity(tableName = "conversation",
+        foreignKeys = @ForeignKey(entity = Character.class,
+                parentColumns = "character_id",
+                childColumns = "character_fk",
+                onDelete = ForeignKey.CASCADE),
+        // last_updated and deleted_at are partial indexes in the database (AppDatabase.PARTIAL_INDEXES)
+        indices = {@Index(value = "last_updated", name = "index_conversation_last_updated"),
+                @Index(value = "character_fk", name = "index_conversation_character_fk"),
+                @Index(value = "deleted_at", name = "index_conversation_deleted_at")})
 public class Conversation implements Serializable {
 
     @PrimaryKey(autoGenerate = true)
@@ -36,6 +46,38 @@ public class Conversation implements Serializable {
     @ColumnInfo(name = "persona_id")
     private Integer personaId; // Nullable (Can be null if using default user profile)
 
+    // Rolling summary of messages that have fallen out of the context window,
+    // covering everything up to and including the (timestamp, index) position.
+    @ColumnInfo(name = "summary")
+    private String summary;
+
+    @ColumnInfo(name = "summary_through_timestamp", defaultValue = "0")
+    private long summaryThroughTimestamp;
+
+    @ColumnInfo(name = "summary_through_index", defaultValue = "0")
+    private int summaryThroughIndex;
+
+    // Rollups of the conversation's messages, kept exact by triggers on chat_message
+    // (AppDatabase.CONVERSATION_ROLLUP_TRIGGERS); treat them as read-only here.
+    @ColumnInfo(name = "message_count", defaultValue = "0")
+    private int messageCount;
+
+    @ColumnInfo(name = "last_message_preview")
+    private String lastMessagePreview;
+
+    @ColumnInfo(name = "last_role")
+    private String lastRole;
+
+    @ColumnInfo(name = "prompt_tokens_total", defaultValue = "0")
+    private long promptTokensTotal;
+
+    @ColumnInfo(name = "completion_tokens_total", defaultValue = "0")
+    private long completionTokensTotal;
+
+    // Set when the conversation is deleted; the row stays hidden until the purge removes it
+    @ColumnInfo(name = "deleted_at")
+    private Long deletedAt;
+
     public Conversation() { }
 
     @Ignore
@@ -72,4 +114,31 @@ public class Conversation implements Serializable {
 
     public Integer getPersonaId() { return personaId; }
     public void setPersonaId(Integer personaId) { this.personaId = personaId; }
+
+    public String getSummary() { return summary; }
+    public void setSummary(String summary) { this.summary = summary; }
+
+    public long getSummaryThroughTimestamp() { return summaryThroughTimestamp; }
+    public void setSummaryThroughTimestamp(long summaryThroughTimestamp) { this.summaryThroughTimestamp = summaryThroughTimestamp; }
+
+    public int getSummaryThroughIndex() { return summaryThroughIndex; }
+    public void setSummaryThroughIndex(int summaryThroughIndex) { this.summaryThroughIndex = summaryThroughIndex; }
+
+    public int getMessageCount() { return messageCount; }
+    public void setMessageCount(int messageCount) { this.messageCount = messageCount; }
+
+    public String getLastMessagePreview() { return lastMessagePreview; }
+    public void setLastMessagePreview(String lastMessagePreview) { this.lastMessagePreview = lastMessagePreview; }
+
+    public String getLastRole() { return lastRole; }
+    public void setLastRole(String lastRole) { this.lastRole = lastRole; }
+
+    public long getPromptTokensTotal() { return promptTokensTotal; }
+    public void setPromptTokensTotal(long promptTokensTotal) { this.promptTokensTotal = promptTokensTotal; }
+
+    public long getCompletionTokensTotal() { return completionTokensTotal; }
+    public void setCompletionTokensTotal(long completionTokensTotal) { this.completionTokensTotal = completionTokensTotal; }
+
+    public Long getDeletedAt() { return deletedAt; }
+    public void setDeletedAt(Long deletedAt) { this.deletedAt = deletedAt; }
 }
\ No newline at end of file
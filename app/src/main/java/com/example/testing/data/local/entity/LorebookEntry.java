@@ -0,0 +1,69 @@
+package com.example.testing.data.local.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import java.io.Serializable;
+
+// World info attached to a character or to one of its scenarios. The content is added to the
+// system prompt only while one of the comma-separated keywords shows up in recent messages.
+@Entity(tableName = "lorebook_entry",
+        foreignKeys = {
+                @ForeignKey(entity = Character.class,
+                        parentColumns = "character_id",
+                        childColumns = "character_id",
+                        onDelete = ForeignKey.CASCADE),
+                @ForeignKey(entity = Scenario.class,
+                        parentColumns = "id",
+                        childColumns = "scenario_id",
+                        onDelete = ForeignKey.CASCADE)},
+        indices = {@Index(value = "character_id"), @Index(value = "scenario_id")})
+public class LorebookEntry implements Serializable {
+
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+
+    @ColumnInfo(name = "character_id")
+    private Integer characterId;
+
+    @ColumnInfo(name = "scenario_id")
+    private Integer scenarioId;
+
+    @ColumnInfo(name = "keywords")
+    private String keywords;
+
+    @ColumnInfo(name = "content")
+    private String content;
+
+    @ColumnInfo(name = "is_enabled", defaultValue = "1")
+    private boolean isEnabled = true;
+
+    public LorebookEntry() {
+    }
+
+    @Ignore
+    public LorebookEntry(Integer characterId, Integer scenarioId, String keywords, String content) {
+        this.characterId = characterId;
+        this.scenarioId = scenarioId;
+        this.keywords = keywords;
+        this.content = content;
+    }
+
+    public int getId() { return id; }
+    public Integer getCharacterId() { return characterId; }
+    public Integer getScenarioId() { return scenarioId; }
+    public String getKeywords() { return keywords; }
+    public String getContent() { return content; }
+    public boolean isEnabled() { return isEnabled; }
+
+    public void setId(int id) { this.id = id; }
+    public void setCharacterId(Integer characterId) { this.characterId = characterId; }
+    public void setScenarioId(Integer scenarioId) { this.scenarioId = scenarioId; }
+    public void setKeywords(String keywords) { this.keywords = keywords; }
+    public void setContent(String content) { this.content = content; }
+    public void setEnabled(boolean enabled) { isEnabled = enabled; }
+}
@@ -3,11 +3,18 @@ package com.example.testing.data.local.entity;
 import androidx.annotation.Nullable;
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.ForeignKey;
 import androidx.room.Ignore;
 import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "chat_message", indices = {@Index(value = "conversation_fk", name = "index_chat_message_conversation_fk")})
+// Messages go with their conversation; the composite index also serves the foreign key.
+@Entity(tableName = "chat_message",
+        foreignKeys = @ForeignKey(entity = Conversation.class,
+                parentColumns = "conversation_id",
+                childColumns = "conversation_fk",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = {"conversation_fk", "timestamp"}, name = "index_chat_message_conversation_fk_timestamp")})
 public class Message {
 
     @PrimaryKey(autoGenerate = true)
@@ -39,6 +46,24 @@ public class Message {
     @ColumnInfo(name = "finish_reason")
     private String finishReason;
 
+    // --- Generation telemetry (assistant messages only) ---
+    @ColumnInfo(name = "first_byte_ms", defaultValue = "0")
+    private long firstByteMs;
+
+    @ColumnInfo(name = "ttft_ms", defaultValue = "0")
+    private long ttftMs;
+
+    @ColumnInfo(name = "generation_ms", defaultValue = "0")
+    private long generationMs;
+
+    @ColumnInfo(name = "tokens_per_second", defaultValue = "0")
+    private float tokensPerSecond;
+
+    // Comma-separated counts of inter-token gaps in log2 ms buckets (see GenerationTimer)
+    @Nullable
+    @ColumnInfo(name = "inter_token_histogram")
+    private String interTokenHistogram;
+
     public Message(int index, String role, String content, long timestamp, int conversationId, int tokenCount, int promptTokens, int completionTokens, String finishReason) {
         this.index = index;
         this.role = role;
@@ -77,6 +102,12 @@ public class Message {
     public int getCompletionTokens() { return completionTokens; }
     @Nullable
     public String getFinishReason() { return finishReason; }
+    public long getFirstByteMs() { return firstByteMs; }
+    public long getTtftMs() { return ttftMs; }
+    public long getGenerationMs() { return generationMs; }
+    public float getTokensPerSecond() { return tokensPerSecond; }
+    @Nullable
+    public String getInterTokenHistogram() { return interTokenHistogram; }
 
     public void setIndex(int index) { this.index = index; }
     public void setRole(String role) { this.role = role; }
@@ -87,4 +118,9 @@ public class Message {
     public void setPromptTokens(int promptTokens) { this.promptTokens = promptTokens; }
     public void setCompletionTokens(int completionTokens) { this.completionTokens = completionTokens; }
     public void setFinishReason(String finishReason) { this.finishReason = finishReason; }
+    public void setFirstByteMs(long firstByteMs) { this.firstByteMs = firstByteMs; }
+    public void setTtftMs(long ttftMs) { this.ttftMs = ttftMs; }
+    public void setGenerationMs(long generationMs) { this.generationMs = generationMs; }
+    public void setTokensPerSecond(float tokensPerSecond) { this.tokensPerSecond = tokensPerSecond; }
+    public void setInterTokenHistogram(String interTokenHistogram) { this.interTokenHistogram = interTokenHistogram; }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.example.testing.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// Packed TextEmbedder vector for one message, used to recall older messages by similarity.
+// Rows go away with their message; the conversation and timestamp are copied here so a
+// conversation's vectors can be loaded and filtered without touching chat_message.
+@Entity(tableName = "message_embedding",
+        foreignKeys = @ForeignKey(entity = Message.class,
+                parentColumns = "index",
+                childColumns = "message_id",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index(value = "conversation_fk")})
+public class MessageEmbedding {
+
+    @PrimaryKey
+    @ColumnInfo(name = "message_id")
+    private int messageId;
+
+    @ColumnInfo(name = "conversation_fk")
+    private int conversationId;
+
+    @ColumnInfo(name = "message_timestamp")
+    private long messageTimestamp;
+
+    @NonNull
+    @ColumnInfo(name = "vector", typeAffinity = ColumnInfo.BLOB)
+    private byte[] vector;
+
+    public MessageEmbedding(int messageId, int conversationId, long messageTimestamp, @NonNull byte[] vector) {
+        this.messageId = messageId;
+        this.conversationId = conversationId;
+        this.messageTimestamp = messageTimestamp;
+        this.vector = vector;
+    }
+
+    public int getMessageId() { return messageId; }
+    public int getConversationId() { return conversationId; }
+    public long getMessageTimestamp() { return messageTimestamp; }
+    @NonNull
+    public byte[] getVector() { return vector; }
+
+    public void setMessageId(int messageId) { this.messageId = messageId; }
+    public void setConversationId(int conversationId) { this.conversationId = conversationId; }
+    public void setMessageTimestamp(long messageTimestamp) { this.messageTimestamp = messageTimestamp; }
+    public void setVector(@NonNull byte[] vector) { this.vector = vector; }
+}
@@ -0,0 +1,27 @@
+package com.example.testing.data.local.entity;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+// External-content FTS4 index over chat_message.content. Only the index lives here; the text is
+// read back from chat_message, and Room's sync triggers keep the two in step.
+@Fts4(contentEntity = Message.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "message_fts")
+public class MessageFts {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+
+    @ColumnInfo(name = "content")
+    private String content;
+
+    public int getRowId() { return rowId; }
+    public String getContent() { return content; }
+
+    public void setRowId(int rowId) { this.rowId = rowId; }
+    public void setContent(String content) { this.content = content; }
+}
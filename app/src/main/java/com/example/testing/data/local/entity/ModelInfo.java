@@ -0,0 +1,93 @@
+package com.example.testing.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+import com.example.testing.data.remote.response.Model;
+
+import java.util.Locale;
+
+// Cached row of the OpenRouter /v1/models catalog. Prices are USD per token,
+// parsed once at fetch time; a negative price means the API didn't give a usable number.
+@Entity(tableName = "model_catalog")
+public class ModelInfo {
+
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "model_id")
+    private String id = "";
+
+    @ColumnInfo(name = "name")
+    private String name;
+
+    @ColumnInfo(name = "description")
+    private String description;
+
+    @ColumnInfo(name = "context_length", defaultValue = "0")
+    private int contextLength;
+
+    @ColumnInfo(name = "prompt_price", defaultValue = "-1")
+    private double promptPrice = -1;
+
+    @ColumnInfo(name = "completion_price", defaultValue = "-1")
+    private double completionPrice = -1;
+
+    public ModelInfo() {
+    }
+
+    @Ignore
+    public ModelInfo(Model model) {
+        this.id = model.getId();
+        this.name = model.getName();
+        this.description = model.getDescription();
+        this.contextLength = model.getContextLength();
+        if (model.getPricing() != null) {
+            this.promptPrice = parsePrice(model.getPricing().getPrompt());
+            this.completionPrice = parsePrice(model.getPricing().getCompletion());
+        }
+    }
+
+    private static double parsePrice(String value) {
+        if (value == null) return -1;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @NonNull
+    public String getId() { return id; }
+    public String getName() { return name; }
+    public String getDescription() { return description; }
+    public int getContextLength() { return contextLength; }
+    public double getPromptPrice() { return promptPrice; }
+    public double getCompletionPrice() { return completionPrice; }
+
+    public void setId(@NonNull String id) { this.id = id; }
+    public void setName(String name) { this.name = name; }
+    public void setDescription(String description) { this.description = description; }
+    public void setContextLength(int contextLength) { this.contextLength = contextLength; }
+    public void setPromptPrice(double promptPrice) { this.promptPrice = promptPrice; }
+    public void setCompletionPrice(double completionPrice) { this.completionPrice = completionPrice; }
+
+    public boolean hasPricing() {
+        return promptPrice >= 0 && completionPrice >= 0;
+    }
+
+    // Helper to format price per 1M tokens for readability
+    public String getFormattedPricing() {
+        if (!hasPricing()) return "Pricing unavailable";
+        return String.format(Locale.getDefault(), "Input: $%.2f/1M | Output: $%.2f/1M",
+                promptPrice * 1000000, completionPrice * 1000000);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return id; // Important for AutoCompleteTextView
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.testing.data.local.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+// One distinct character tag. Names are unique ignoring case, so "Fantasy" and "fantasy" are the
+// same tag. usage_count is kept by triggers on character_tag (AppDatabase.TAG_USAGE_TRIGGERS) and
+// a tag goes away once nothing uses it.
+@Entity(tableName = "tag",
+        indices = {@Index(value = "name", unique = true)})
+public class Tag {
+
+    @PrimaryKey(autoGenerate = true)
+    @ColumnInfo(name = "tag_id")
+    private int id;
+
+    @NonNull
+    @ColumnInfo(name = "name", collate = ColumnInfo.NOCASE)
+    private String name = "";
+
+    @ColumnInfo(name = "usage_count", defaultValue = "0")
+    private int usageCount;
+
+    public int getId() { return id; }
+    @NonNull
+    public String getName() { return name; }
+    public int getUsageCount() { return usageCount; }
+
+    public void setId(int id) { this.id = id; }
+    public void setName(@NonNull String name) { this.name = name; }
+    public void setUsageCount(int usageCount) { this.usageCount = usageCount; }
+}
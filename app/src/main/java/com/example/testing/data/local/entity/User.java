@@ -78,6 +78,10 @@ public class User implements Serializable {
     @ColumnInfo(name = "chat_line_spacing", defaultValue = "1.0")
     private float chatLineSpacing = 1.0f;
 
+    // Model used to fold evicted history into the conversation summary; empty disables it.
+    @ColumnInfo(name = "summary_model")
+    private String summaryModel = "";
+
     @Ignore
     public User(String username, String email, String profileImagePath,
                 String apiKey, String preferredModel, String globalSystemPrompt) {
@@ -179,4 +183,7 @@ public class User implements Serializable {
 
     public float getChatLineSpacing() { return chatLineSpacing; }
     public void setChatLineSpacing(float chatLineSpacing) { this.chatLineSpacing = chatLineSpacing; }
+
+    public String getSummaryModel() { return summaryModel; }
+    public void setSummaryModel(String summaryModel) { this.summaryModel = summaryModel; }
 }
\ No newline at end of file
@@ -0,0 +1,27 @@
+package com.example.testing.data.local.entity.relations;
+
+import androidx.room.ColumnInfo;
+
+import java.util.Objects;
+
+// The text of one character that the in-memory character search indexes.
+public class CharacterSearchText {
+
+    @ColumnInfo(name = "character_id")
+    public int characterId;
+
+    @ColumnInfo(name = "name")
+    public String name;
+
+    @ColumnInfo(name = "tags")
+    public String tags;
+
+    @ColumnInfo(name = "personality_excerpt")
+    public String personalityExcerpt;
+
+    public boolean sameTextAs(CharacterSearchText other) {
+        return Objects.equals(name, other.name)
+                && Objects.equals(tags, other.tags)
+                && Objects.equals(personalityExcerpt, other.personalityExcerpt);
+    }
+}
@@ -5,7 +5,7 @@ import androidx.room.Embedded;
 
 import com.example.testing.data.local.entity.Conversation;
 
-// This class will hold a Conversation object, the character name, and the message count.
+// This class will hold a Conversation object and the character name.
 public class ConversationWithCharacter {
 
     @Embedded
@@ -14,9 +14,6 @@ public class ConversationWithCharacter {
     @ColumnInfo(name = "name") // From 'character' table
     public String characterName;
 
-    @ColumnInfo(name = "message_count")
-    public int messageCount;
-
     // --- Helper Methods to access inner Conversation fields directly ---
 
     public int getId() {
@@ -31,6 +28,14 @@ public class ConversationWithCharacter {
         return conversation != null ? conversation.getLastUpdated() : 0;
     }
 
+    public int getMessageCount() {
+        return conversation != null ? conversation.getMessageCount() : 0;
+    }
+
+    public String getLastMessagePreview() {
+        return conversation != null ? conversation.getLastMessagePreview() : null;
+    }
+
     // FIX: Use getTitle() instead of getName()
     public String getConversationName() {
         return conversation != null ? conversation.getTitle() : "";
@@ -0,0 +1,13 @@
+package com.example.testing.data.local.entity.relations;
+
+import androidx.room.ColumnInfo;
+
+// A full-text match before ranking: the message and FTS4 matchinfo('pcnalx') for it.
+public class MessageMatch {
+
+    @ColumnInfo(name = "message_id")
+    public int messageId;
+
+    @ColumnInfo(name = "match_info")
+    public byte[] matchInfo;
+}
@@ -0,0 +1,31 @@
+package com.example.testing.data.local.entity.relations;
+
+import androidx.room.ColumnInfo;
+
+// One search result row: where the message lives plus a snippet around the matched terms.
+public class MessageSearchHit {
+
+    @ColumnInfo(name = "message_id")
+    public int messageId;
+
+    @ColumnInfo(name = "conversation_id")
+    public int conversationId;
+
+    @ColumnInfo(name = "character_id")
+    public int characterId;
+
+    @ColumnInfo(name = "character_name")
+    public String characterName;
+
+    @ColumnInfo(name = "conversation_title")
+    public String conversationTitle;
+
+    @ColumnInfo(name = "role")
+    public String role;
+
+    @ColumnInfo(name = "timestamp")
+    public long timestamp;
+
+    @ColumnInfo(name = "snippet")
+    public String snippet;
+}
@@ -1,30 +1,82 @@
 package com.example.testing.data.remote.api;
 
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
+// App-wide network stack: one OkHttpClient, one Retrofit and one ApiService.
+// Sharing the client lets back-to-back requests reuse the warm TLS/HTTP2 connection.
 public class ApiClient {
-    private static final String BASE_URL = "https://openrouter.ai/api/";
-    private static Retrofit retrofit = null;
+    public static final String BASE_URL = "https://openrouter.ai/api/";
+
+    // A chat session rarely needs more than a stream plus a credits/models call.
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    // Keep idle connections alive across the pause between reading a reply and sending the next one.
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final int MAX_REQUESTS = 16;
+    private static final int MAX_REQUESTS_PER_HOST = 6;
+    // HTTP/2 PINGs keep NATs from silently dropping a long-lived SSE stream.
+    private static final long PING_INTERVAL_SECONDS = 20;
+
+    private static volatile OkHttpClient httpClient;
+    private static volatile Retrofit retrofit;
+    private static volatile ApiService apiService;
+
+    public static OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            synchronized (ApiClient.class) {
+                if (httpClient == null) {
+                    Dispatcher dispatcher = new Dispatcher();
+                    dispatcher.setMaxRequests(MAX_REQUESTS);
+                    dispatcher.setMaxRequestsPerHost(MAX_REQUESTS_PER_HOST);
+
+                    // OkHttp adds Accept-Encoding: gzip and unzips transparently unless a call
+                    // sets its own header, which the streaming endpoint does.
+                    httpClient = new OkHttpClient.Builder()
+                            .connectTimeout(60, TimeUnit.SECONDS) // Fix for initial connection timeout
+                            .readTimeout(90, TimeUnit.SECONDS)    // Fix for slow generation/cold boot
+                            .writeTimeout(60, TimeUnit.SECONDS)
+                            .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                            .dispatcher(dispatcher)
+                            .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                            .pingInterval(PING_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                            .retryOnConnectionFailure(true)
+                            .build();
+                }
+            }
+        }
+        return httpClient;
+    }
 
     public static Retrofit getClient() {
         if (retrofit == null) {
-            // FIX: Configure OkHttpClient with increased timeouts
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .connectTimeout(60, TimeUnit.SECONDS) // Fix for initial connection timeout
-                    .readTimeout(90, TimeUnit.SECONDS)    // Fix for slow generation/cold boot
-                    .writeTimeout(60, TimeUnit.SECONDS)
-                    .build();
-
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL)
-                    .client(client) // Attach the custom client
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .build();
+            synchronized (ApiClient.class) {
+                if (retrofit == null) {
+                    retrofit = new Retrofit.Builder()
+                            .baseUrl(BASE_URL)
+                            .client(getHttpClient())
+                            .addConverterFactory(GsonConverterFactory.create())
+                            .build();
+                }
+            }
         }
         return retrofit;
     }
-}
\ No newline at end of file
+
+    public static ApiService getService() {
+        if (apiService == null) {
+            synchronized (ApiClient.class) {
+                if (apiService == null) {
+                    apiService = getClient().create(ApiService.class);
+                }
+            }
+        }
+        return apiService;
+    }
+}
@@ -8,6 +8,7 @@ import retrofit2.http.GET;
 import retrofit2.Call;
 import retrofit2.http.Body;
 import retrofit2.http.Header;
+import retrofit2.http.Headers;
 import retrofit2.http.POST;
 import retrofit2.http.Streaming;
 
@@ -19,7 +20,9 @@ public interface ApiService {
             @Body ApiRequest requestBody
     );
 
+    // SSE must not be gzipped: compressed streams get buffered and tokens arrive in bursts.
     @Streaming
+    @Headers("Accept-Encoding: identity")
     @POST("v1/chat/completions")
     Call<ResponseBody> getChatCompletionStream(
             @Header("Authorization") String authToken,
@@ -29,6 +32,10 @@ public interface ApiService {
     @GET("v1/credits")
     Call<ResponseBody> getCredits(@Header("Authorization") String authToken);
 
+    // Conditional fetch: null headers are omitted, a 304 means the cached catalog is current.
     @GET("v1/models")
-    Call<ModelResponse> getModels();
+    Call<ModelResponse> getModels(
+            @Header("If-None-Match") String etag,
+            @Header("If-Modified-Since") String lastModified
+    );
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.example.testing.data.remote.api;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Opens a connection to the API host ahead of the first send so DNS, TCP and
+// TLS are already paid for. The HEAD response itself is thrown away; what we
+// want is the pooled connection it leaves behind in the shared client.
+public class ConnectionWarmer {
+
+    private static final long MIN_INTERVAL_MS = 60_000;
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    private static final Object LOCK = new Object();
+    private static long lastWarmUpAt = 0;
+
+    public static void warmUp(Context context) {
+        Context appContext = context.getApplicationContext();
+        if (!shouldWarmUp(appContext)) return;
+
+        OkHttpClient client = ApiClient.getHttpClient();
+        // Something is already pooled (previous reply, credits call); nothing to gain.
+        if (client.connectionPool().idleConnectionCount() > 0) return;
+
+        synchronized (LOCK) {
+            long now = SystemClock.elapsedRealtime();
+            if (lastWarmUpAt != 0 && now - lastWarmUpAt < MIN_INTERVAL_MS) return;
+            lastWarmUpAt = now;
+        }
+
+        Request request = new Request.Builder()
+                .url(ApiClient.BASE_URL)
+                .head()
+                .build();
+
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                // Best effort only; the real request will connect on its own.
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                response.close();
+            }
+        });
+    }
+
+    private static boolean shouldWarmUp(Context context) {
+        ConnectivityManager connectivity = context.getSystemService(ConnectivityManager.class);
+        if (connectivity == null || connectivity.getActiveNetwork() == null) return false;
+        if (connectivity.isActiveNetworkMetered()) return false;
+
+        PowerManager power = context.getSystemService(PowerManager.class);
+        if (power != null && power.isPowerSaveMode()) return false;
+
+        BatteryManager battery = context.getSystemService(BatteryManager.class);
+        if (battery != null && !battery.isCharging()
+                && battery.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) < LOW_BATTERY_PERCENT) {
+            return false;
+        }
+        return true;
+    }
+}
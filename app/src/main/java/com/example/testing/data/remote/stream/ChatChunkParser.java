@@ -0,0 +1,207 @@
+package com.example.testing.data.remote.stream;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+// Pulls choices[0].delta.content, finish_reason, usage and error out of a
+// completion chunk with a single streaming JsonReader. The reader runs in
+// lenient mode over a rewindable char source so consecutive chunks are read
+// as consecutive top-level values; it is only rebuilt after malformed input.
+public class ChatChunkParser {
+
+    private final CharSequenceReader input = new CharSequenceReader();
+    private JsonReader reader = newReader();
+
+    public boolean parse(CharSequence json, ChatStreamChunk out) {
+        out.reset();
+        input.reset(json);
+        try {
+            readChunk(out);
+            return true;
+        } catch (IOException | IllegalStateException | NumberFormatException first) {
+            // Residue from an earlier bad chunk can trip the shared reader; retry once on a fresh one.
+            reader = newReader();
+            out.reset();
+            input.reset(json);
+            try {
+                readChunk(out);
+                return true;
+            } catch (IOException | IllegalStateException | NumberFormatException e) {
+                reader = newReader();
+                out.reset();
+                return false;
+            }
+        }
+    }
+
+    private JsonReader newReader() {
+        JsonReader jsonReader = new JsonReader(input);
+        jsonReader.setLenient(true);
+        return jsonReader;
+    }
+
+    private void readChunk(ChatStreamChunk out) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "choices":
+                    readChoices(out);
+                    break;
+                case "usage":
+                    readUsage(out);
+                    break;
+                case "error":
+                    readError(out);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readChoices(ChatStreamChunk out) throws IOException {
+        if (skipIfNull()) return;
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            if (first && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                readChoice(out);
+            } else {
+                reader.skipValue();
+            }
+            first = false;
+        }
+        reader.endArray();
+    }
+
+    private void readChoice(ChatStreamChunk out) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "delta":
+                    readDelta(out);
+                    break;
+                case "finish_reason":
+                    out.finishReason = nextStringOrNull();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readDelta(ChatStreamChunk out) throws IOException {
+        if (skipIfNull()) return;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("content".equals(reader.nextName())) {
+                out.content = nextStringOrNull();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readUsage(ChatStreamChunk out) throws IOException {
+        if (skipIfNull()) return;
+        out.hasUsage = true;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "prompt_tokens":
+                    out.promptTokens = nextIntOrZero();
+                    break;
+                case "completion_tokens":
+                    out.completionTokens = nextIntOrZero();
+                    break;
+                case "total_tokens":
+                    out.totalTokens = nextIntOrZero();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readError(ChatStreamChunk out) throws IOException {
+        if (skipIfNull()) return;
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            out.error = reader.peek() == JsonToken.STRING ? reader.nextString() : null;
+            if (out.error == null) reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("message".equals(reader.nextName())) {
+                out.error = nextStringOrNull();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (out.error == null) out.error = "Unknown error";
+    }
+
+    private boolean skipIfNull() throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    private String nextStringOrNull() throws IOException {
+        if (skipIfNull()) return null;
+        if (reader.peek() != JsonToken.STRING) {
+            reader.skipValue();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private int nextIntOrZero() throws IOException {
+        if (skipIfNull()) return 0;
+        if (reader.peek() != JsonToken.NUMBER) {
+            reader.skipValue();
+            return 0;
+        }
+        return reader.nextInt();
+    }
+
+    private static final class CharSequenceReader extends Reader {
+        private CharSequence source;
+        private int position;
+
+        void reset(CharSequence source) {
+            this.source = source;
+            this.position = 0;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (source == null || position >= source.length()) return -1;
+            int count = Math.min(length, source.length() - position);
+            if (source instanceof StringBuilder) {
+                ((StringBuilder) source).getChars(position, position + count, buffer, offset);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    buffer[offset + i] = source.charAt(position + i);
+                }
+            }
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+            source = null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.testing.data.remote.stream;
+
+// Mutable holder for the few fields we need out of a streamed completion chunk.
+// Reused across events by ChatChunkParser.
+public class ChatStreamChunk {
+
+    String content;
+    String finishReason;
+    String error;
+
+    boolean hasUsage;
+    int promptTokens;
+    int completionTokens;
+    int totalTokens;
+
+    void reset() {
+        content = null;
+        finishReason = null;
+        error = null;
+        hasUsage = false;
+        promptTokens = 0;
+        completionTokens = 0;
+        totalTokens = 0;
+    }
+
+    public String getContent() { return content; }
+    public String getFinishReason() { return finishReason; }
+    public String getError() { return error; }
+
+    public boolean hasUsage() { return hasUsage; }
+    public int getPromptTokens() { return promptTokens; }
+    public int getCompletionTokens() { return completionTokens; }
+    public int getTotalTokens() { return totalTokens; }
+}
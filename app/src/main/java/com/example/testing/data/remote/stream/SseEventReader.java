@@ -0,0 +1,199 @@
+package com.example.testing.data.remote.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+// Server-Sent Events decoder working directly on an Okio source.
+// Follows the HTML event-stream rules: lines end in "\r\n", '\n' or a bare '\r',
+// multi-line data is joined with '\n',
+// ':' comment lines (keep-alives) are skipped without being copied,
+// event/id/retry fields are tracked, unknown fields are ignored and an
+// unterminated event at EOF is discarded. Line and data buffers are reused
+// across events so steady-state decoding does not allocate per line.
+public class SseEventReader {
+
+    private static final ByteString COLON = ByteString.encodeUtf8(":");
+    private static final ByteString LF = ByteString.encodeUtf8("\n");
+    private static final ByteString LINE_ENDS = ByteString.encodeUtf8("\r\n");
+
+    private static final byte[] FIELD_DATA = {'d', 'a', 't', 'a'};
+    private static final byte[] FIELD_EVENT = {'e', 'v', 'e', 'n', 't'};
+    private static final byte[] FIELD_ID = {'i', 'd'};
+    private static final byte[] FIELD_RETRY = {'r', 'e', 't', 'r', 'y'};
+
+    private final BufferedSource source;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private byte[] lineBytes = new byte[1024];
+    private ByteBuffer lineByteBuffer = ByteBuffer.wrap(lineBytes);
+    private CharBuffer lineChars = CharBuffer.allocate(1024);
+    private int lineLength;
+
+    private final StringBuilder data = new StringBuilder(1024);
+    private String eventType;
+    private String lastEventId;
+    private long retryMs = -1;
+    // The last line ended in '\r'; a '\n' right after it is part of the same line end. Checked
+    // when the next line is read rather than straight away, so a bare '\r' never waits on the
+    // network for a byte that may not come.
+    private boolean afterCr;
+
+    public SseEventReader(BufferedSource source) {
+        this.source = source;
+    }
+
+    // Blocks until the next complete event is dispatched. Returns false at end of stream.
+    public boolean next() throws IOException {
+        data.setLength(0);
+        eventType = null;
+        boolean hasData = false;
+
+        while (true) {
+            if (afterCr) {
+                afterCr = false;
+                if (source.rangeEquals(0, LF)) source.skip(1);
+            }
+
+            long lineEnd = source.indexOfElement(LINE_ENDS);
+            if (lineEnd == -1) {
+                // Anything left is an unterminated event; the spec says to drop it.
+                return false;
+            }
+
+            if (lineEnd > 0 && source.rangeEquals(0, COLON)) {
+                source.skip(lineEnd);
+                skipLineEnd();
+                continue;
+            }
+
+            readLine(lineEnd);
+
+            if (lineLength == 0) {
+                if (!hasData) {
+                    eventType = null;
+                    continue;
+                }
+                data.setLength(data.length() - 1);
+                return true;
+            }
+
+            int colon = indexOfColon();
+            int nameEnd = colon == -1 ? lineLength : colon;
+            int valueStart = colon == -1 ? lineLength : colon + 1;
+            if (valueStart < lineLength && lineBytes[valueStart] == ' ') valueStart++;
+
+            if (fieldIs(FIELD_DATA, nameEnd)) {
+                appendValue(valueStart);
+                data.append('\n');
+                hasData = true;
+            } else if (fieldIs(FIELD_EVENT, nameEnd)) {
+                eventType = valueAsString(valueStart);
+            } else if (fieldIs(FIELD_ID, nameEnd)) {
+                String id = valueAsString(valueStart);
+                if (id.indexOf('\0') == -1) lastEventId = id;
+            } else if (fieldIs(FIELD_RETRY, nameEnd)) {
+                long retry = parseDigits(valueStart);
+                if (retry >= 0) retryMs = retry;
+            }
+        }
+    }
+
+    // The reused buffer is only valid until the next call to next().
+    public StringBuilder getData() { return data; }
+    public String getEventType() { return eventType != null ? eventType : "message"; }
+    public String getLastEventId() { return lastEventId; }
+    public long getRetryMs() { return retryMs; }
+
+    private void readLine(long lineEnd) throws IOException {
+        if (lineEnd > Integer.MAX_VALUE - 1) throw new IOException("SSE line too long");
+        int length = (int) lineEnd;
+        ensureLineCapacity(length);
+
+        int offset = 0;
+        while (offset < length) {
+            int read = source.read(lineBytes, offset, length - offset);
+            if (read == -1) throw new IOException("Unexpected end of SSE stream");
+            offset += read;
+        }
+        skipLineEnd();
+        lineLength = length;
+    }
+
+    private void skipLineEnd() throws IOException {
+        afterCr = source.readByte() == '\r';
+    }
+
+    private void ensureLineCapacity(int length) {
+        if (lineBytes.length >= length) return;
+        int capacity = Math.max(length, lineBytes.length * 2);
+        lineBytes = new byte[capacity];
+        lineByteBuffer = ByteBuffer.wrap(lineBytes);
+        lineChars = CharBuffer.allocate(capacity);
+    }
+
+    private int indexOfColon() {
+        for (int i = 0; i < lineLength; i++) {
+            if (lineBytes[i] == ':') return i;
+        }
+        return -1;
+    }
+
+    private boolean fieldIs(byte[] field, int nameEnd) {
+        if (nameEnd != field.length) return false;
+        for (int i = 0; i < nameEnd; i++) {
+            if (lineBytes[i] != field[i]) return false;
+        }
+        return true;
+    }
+
+    private void appendValue(int valueStart) {
+        int length = lineLength - valueStart;
+        if (length <= 0) return;
+
+        // Fast path for the common all-ASCII JSON payload.
+        boolean ascii = true;
+        for (int i = valueStart; i < lineLength; i++) {
+            if (lineBytes[i] < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (ascii) {
+            for (int i = valueStart; i < lineLength; i++) {
+                data.append((char) lineBytes[i]);
+            }
+            return;
+        }
+
+        lineByteBuffer.limit(lineLength).position(valueStart);
+        lineChars.clear();
+        decoder.reset();
+        decoder.decode(lineByteBuffer, lineChars, true);
+        decoder.flush(lineChars);
+        data.append(lineChars.array(), 0, lineChars.position());
+    }
+
+    private String valueAsString(int valueStart) {
+        return new String(lineBytes, valueStart, lineLength - valueStart, StandardCharsets.UTF_8);
+    }
+
+    private long parseDigits(int valueStart) {
+        if (valueStart >= lineLength) return -1;
+        long value = 0;
+        for (int i = valueStart; i < lineLength; i++) {
+            byte b = lineBytes[i];
+            if (b < '0' || b > '9') return -1;
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+}
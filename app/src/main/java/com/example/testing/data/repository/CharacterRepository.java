@@ -2,30 +2,37 @@ package com.example.testing.data.repository;
 
 import android.app.Application;
 import androidx.lifecycle.LiveData;
-import androidx.lifecycle.Transformations;
 
 import com.example.testing.data.local.AppDatabase;
 import com.example.testing.data.local.entity.Character;
 import com.example.testing.data.local.dao.CharacterDao;
+import com.example.testing.data.local.entity.Tag;
+import com.example.testing.data.local.dao.TagDao;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 public class CharacterRepository {
 
+    private final AppDatabase database;
     private final CharacterDao characterDao;
+    private final TagDao tagDao;
     private final ExecutorService executorService;
+    // The search index is confined to this thread
+    private final ExecutorService searchExecutor = Executors.newSingleThreadExecutor();
+    private final CharacterSearchIndex searchIndex;
     private static volatile CharacterRepository INSTANCE;
 
     private CharacterRepository(Application application) {
-        AppDatabase db = AppDatabase.getInstance(application);
-        characterDao = db.characterDao();
+        database = AppDatabase.getInstance(application);
+        characterDao = database.characterDao();
+        tagDao = database.tagDao();
         executorService = Executors.newFixedThreadPool(4);
+        searchIndex = new CharacterSearchIndex(database);
     }
 
     public static CharacterRepository getInstance(Application application) {
@@ -39,39 +46,45 @@ public class CharacterRepository {
         return INSTANCE;
     }
 
-    public LiveData<List<Character>> getFilteredCharacters(boolean isHidden, String searchQuery, String tagFilter) {
-        return characterDao.getFilteredCharacters(isHidden, searchQuery, tagFilter);
+    public LiveData<List<Character>> getFilteredCharacters(boolean isHidden, List<String> tags, boolean matchAllTags) {
+        return characterDao.getFilteredCharacters(isHidden, tags, tags.size(), matchAllTags);
     }
 
-    public LiveData<List<String>> getAllTags() {
-        return Transformations.map(characterDao.getAllTags(), rawTagsList -> {
-            Set<String> uniqueTags = new HashSet<>();
-            for (String raw : rawTagsList) {
-                if (raw != null && !raw.isEmpty()) {
-                    String[] split = raw.split("\\|");
-                    for (String t : split) {
-                        if (!t.trim().isEmpty()) {
-                            uniqueTags.add(t.trim());
-                        }
-                    }
-                }
+    // The candidates that match the query, best match first and in their own order on ties.
+    // The callback runs on the search thread.
+    public void searchCharacters(List<Character> candidates, String query, Consumer<List<Character>> callback) {
+        searchExecutor.execute(() -> {
+            Map<Integer, Float> scores = searchIndex.search(query);
+            List<Character> results = new ArrayList<>();
+            for (Character character : candidates) {
+                if (scores.containsKey(character.getId())) results.add(character);
             }
-            List<String> sortedTags = new ArrayList<>(uniqueTags);
-            Collections.sort(sortedTags);
-            return sortedTags;
+            results.sort((a, b) -> Float.compare(scores.get(b.getId()), scores.get(a.getId())));
+            callback.accept(results);
         });
     }
 
+    public LiveData<List<Tag>> getAllTags() {
+        return tagDao.getAllTags();
+    }
+
     public LiveData<com.example.testing.data.local.entity.Character> getCharacterById(int id) {
         return characterDao.getCharacterById(id);
     }
 
+    // The tags string stays the editable copy; character_tag follows it in the same transaction
     public void insert(Character character) {
-        executorService.execute(() -> characterDao.insert(character));
+        executorService.execute(() -> database.runInTransaction(() -> {
+            long id = characterDao.insert(character);
+            tagDao.setTagsForCharacter((int) id, character.getTags());
+        }));
     }
 
     public void update(Character character) {
-        executorService.execute(() -> characterDao.update(character));
+        executorService.execute(() -> database.runInTransaction(() -> {
+            characterDao.update(character);
+            tagDao.setTagsForCharacter(character.getId(), character.getTags());
+        }));
     }
 
     public void delete(Character character) {
@@ -0,0 +1,269 @@
+package com.example.testing.data.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.InvalidationTracker;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.entity.relations.CharacterSearchText;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+// Character names, tags and the start of each personality, split into words held in memory.
+// A query word matches an indexed word exactly, as a prefix (the vocabulary is sorted, so that is
+// a range scan) or, from four letters on, within one or two edits of it, with candidates found
+// through the trigrams the two words share. Every query word has to match somewhere.
+//
+// Built on the first search. After a change to character only the search text is re-read, and
+// only rows whose text differs are re-indexed. Not thread-safe: the repository calls it from one
+// thread.
+class CharacterSearchIndex {
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float TAG_WEIGHT = 2f;
+    private static final float TEXT_WEIGHT = 1f;
+
+    private static final float EXACT_MATCH = 1f;
+    private static final float PREFIX_MATCH = 0.8f;
+    private static final float ONE_EDIT_MATCH = 0.6f;
+    private static final float TWO_EDIT_MATCH = 0.4f;
+
+    private static final int MIN_FUZZY_LENGTH = 4;
+    // Words this long or longer may be two edits away
+    private static final int TWO_EDIT_LENGTH = 7;
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final Supplier<List<CharacterSearchText>> source;
+    private final InvalidationTracker tracker;
+    private final AtomicBoolean stale = new AtomicBoolean(true);
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("character") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            stale.set(true);
+        }
+    };
+    private boolean observing = false;
+
+    private final Map<Integer, Document> documents = new HashMap<>();
+    // word -> character id -> weight of the best field the word appears in
+    private final TreeMap<String, Map<Integer, Float>> postings = new TreeMap<>();
+    // trigram -> indexed words containing it
+    private final Map<String, Set<String>> trigrams = new HashMap<>();
+
+    private static final class Document {
+        final CharacterSearchText text;
+        final Map<String, Float> words = new HashMap<>();
+
+        Document(CharacterSearchText text) {
+            this.text = text;
+            addWords(text.personalityExcerpt, TEXT_WEIGHT);
+            addWords(text.tags, TAG_WEIGHT);
+            addWords(text.name, NAME_WEIGHT);
+        }
+
+        private void addWords(String field, float weight) {
+            for (String word : tokenize(field)) {
+                words.merge(word, weight, Math::max);
+            }
+        }
+    }
+
+    CharacterSearchIndex(AppDatabase database) {
+        this(database.characterDao()::getSearchTextsSync, database.getInvalidationTracker());
+    }
+
+    // Without a tracker to say when character changed, the text is re-read on every search.
+    CharacterSearchIndex(Supplier<List<CharacterSearchText>> source, @Nullable InvalidationTracker tracker) {
+        this.source = source;
+        this.tracker = tracker;
+    }
+
+    // Score of every character matching all words of the query; higher is better. Empty for a
+    // query without any words.
+    Map<Integer, Float> search(String query) {
+        if (!observing && tracker != null) {
+            tracker.addObserver(observer);
+            observing = true;
+        }
+        if (stale.getAndSet(tracker == null)) {
+            refresh();
+        }
+
+        Map<Integer, Float> scores = null;
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Map<Integer, Float> termScores = new HashMap<>();
+            for (Map.Entry<String, Float> match : matchWords(term).entrySet()) {
+                float quality = match.getValue();
+                for (Map.Entry<Integer, Float> posting : postings.get(match.getKey()).entrySet()) {
+                    termScores.merge(posting.getKey(), quality * posting.getValue(), Math::max);
+                }
+            }
+
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if (scores.isEmpty()) break;
+        }
+        return scores != null ? scores : new HashMap<>();
+    }
+
+    private void refresh() {
+        Set<Integer> present = new HashSet<>();
+        for (CharacterSearchText text : source.get()) {
+            present.add(text.characterId);
+            Document old = documents.get(text.characterId);
+            if (old != null) {
+                if (old.text.sameTextAs(text)) continue;
+                remove(old);
+            }
+            add(new Document(text));
+        }
+
+        Iterator<Map.Entry<Integer, Document>> it = documents.entrySet().iterator();
+        while (it.hasNext()) {
+            Document document = it.next().getValue();
+            if (!present.contains(document.text.characterId)) {
+                it.remove();
+                removePostings(document);
+            }
+        }
+    }
+
+    private void add(Document document) {
+        int id = document.text.characterId;
+        documents.put(id, document);
+        for (Map.Entry<String, Float> entry : document.words.entrySet()) {
+            String word = entry.getKey();
+            Map<Integer, Float> ids = postings.get(word);
+            if (ids == null) {
+                ids = new HashMap<>();
+                postings.put(word, ids);
+                for (String trigram : trigramsOf(word)) {
+                    trigrams.computeIfAbsent(trigram, k -> new HashSet<>()).add(word);
+                }
+            }
+            ids.put(id, entry.getValue());
+        }
+    }
+
+    private void remove(Document document) {
+        documents.remove(document.text.characterId);
+        removePostings(document);
+    }
+
+    private void removePostings(Document document) {
+        for (String word : document.words.keySet()) {
+            Map<Integer, Float> ids = postings.get(word);
+            if (ids == null) continue;
+            ids.remove(document.text.characterId);
+            if (!ids.isEmpty()) continue;
+
+            // Last use of the word; take it out of the vocabulary
+            postings.remove(word);
+            for (String trigram : trigramsOf(word)) {
+                Set<String> words = trigrams.get(trigram);
+                if (words == null) continue;
+                words.remove(word);
+                if (words.isEmpty()) trigrams.remove(trigram);
+            }
+        }
+    }
+
+    // Indexed words the term matches, each with how good a match it is
+    private Map<String, Float> matchWords(String term) {
+        Map<String, Float> matches = new HashMap<>();
+        for (String word : postings.subMap(term, true, term + Character.MAX_VALUE, false).keySet()) {
+            matches.put(word, word.length() == term.length() ? EXACT_MATCH : PREFIX_MATCH);
+        }
+        if (term.length() < MIN_FUZZY_LENGTH) return matches;
+
+        int maxEdits = term.length() >= TWO_EDIT_LENGTH ? 2 : 1;
+        Set<String> candidates = new HashSet<>();
+        for (String trigram : trigramsOf(term)) {
+            Set<String> words = trigrams.get(trigram);
+            if (words != null) candidates.addAll(words);
+        }
+        for (String word : candidates) {
+            if (matches.containsKey(word) || Math.abs(word.length() - term.length()) > maxEdits) continue;
+            int edits = editDistance(term, word, maxEdits);
+            // max + 1 means too far, which is 2 when only one edit is allowed
+            if (edits > maxEdits) continue;
+            if (edits == 1) {
+                matches.put(word, ONE_EDIT_MATCH);
+            } else if (edits == 2) {
+                matches.put(word, TWO_EDIT_MATCH);
+            }
+        }
+        return matches;
+    }
+
+    // Lower-cased words with accents stripped, so "Zoë" is found by "zoe"
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null || text.isEmpty()) return words;
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        for (String word : NON_WORD.split(folded.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) words.add(word);
+        }
+        return words;
+    }
+
+    // Padded so short words have trigrams too and word starts weigh in: "cat" -> ^ca, cat, at$
+    private static List<String> trigramsOf(String word) {
+        String padded = "^" + word + "$";
+        List<String> result = new ArrayList<>(padded.length() - 2);
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    // Optimal string alignment distance (a swap of neighbours is one edit), or max + 1 once it
+    // can no longer come in at or under max
+    private static int editDistance(String a, String b, int max) {
+        int n = a.length();
+        int m = b.length();
+        int[] previous2 = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int j = 0; j <= m; j++) previous[j] = j;
+
+        for (int i = 1; i <= n; i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= m; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, previous2[j - 2] + 1);
+                }
+                current[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) return max + 1;
+            int[] recycled = previous2;
+            previous2 = previous;
+            previous = current;
+            current = recycled;
+        }
+        return Math.min(previous[m], max + 1);
+    }
+}
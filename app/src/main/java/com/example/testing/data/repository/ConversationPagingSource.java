@@ -0,0 +1,140 @@
+package com.example.testing.data.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.paging.ListenableFuturePagingSource;
+import androidx.paging.PagingState;
+import androidx.room.InvalidationTracker;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.dao.ConversationDao;
+import com.example.testing.data.local.entity.relations.ConversationWithCharacter;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import kotlin.Unit;
+
+// Conversation history, newest first, paged by keyset on (last_updated, conversation_id) so a
+// page deep in the list costs the same as the first one. A refresh after a change reloads from
+// the row nearest the viewport rather than from the top of the list.
+public class ConversationPagingSource extends ListenableFuturePagingSource<ConversationPagingSource.Key, ConversationWithCharacter> {
+
+    private static final String[] SOURCE_TABLES = {"conversation", "chat_message", "character"};
+
+    private final AppDatabase database;
+    private final ConversationDao conversationDao;
+    private final ListeningExecutorService executor;
+    private final AtomicBoolean observing = new AtomicBoolean(false);
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer(SOURCE_TABLES) {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            invalidate();
+        }
+    };
+
+    public static final class Key {
+        final long lastUpdated;
+        final int id;
+
+        Key(long lastUpdated, int id) {
+            this.lastUpdated = lastUpdated;
+            this.id = id;
+        }
+
+        static Key of(ConversationWithCharacter item) {
+            return new Key(item.getLastUpdated(), item.getId());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return lastUpdated == key.lastUpdated && id == key.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(lastUpdated) + id;
+        }
+    }
+
+    ConversationPagingSource(AppDatabase database, ListeningExecutorService executor) {
+        this.database = database;
+        this.conversationDao = database.conversationDao();
+        this.executor = executor;
+        registerInvalidatedCallback(() -> {
+            if (observing.get()) database.getInvalidationTracker().removeObserver(observer);
+            return Unit.INSTANCE;
+        });
+    }
+
+    @NonNull
+    @Override
+    public ListenableFuture<LoadResult<Key, ConversationWithCharacter>> loadFuture(@NonNull LoadParams<Key> params) {
+        return executor.submit(() -> load(params));
+    }
+
+    private LoadResult<Key, ConversationWithCharacter> load(LoadParams<Key> params) {
+        // Registered on the first load, off the main thread, before anything is read
+        if (observing.compareAndSet(false, true)) {
+            database.getInvalidationTracker().addObserver(observer);
+        }
+        if (getInvalid()) return new LoadResult.Invalid<>();
+
+        Key key = params.getKey();
+        int limit = params.getLoadSize();
+
+        if (params instanceof LoadParams.Append) {
+            List<ConversationWithCharacter> rows = conversationDao.getConversationsWithCharacterOlderThan(key.lastUpdated, key.id, limit);
+            Key nextKey = rows.size() < limit ? null : Key.of(rows.get(rows.size() - 1));
+            return new LoadResult.Page<>(rows, null, nextKey);
+        }
+
+        if (params instanceof LoadParams.Prepend) {
+            List<ConversationWithCharacter> rows = conversationDao.getConversationsWithCharacterNewerThan(key.lastUpdated, key.id, limit);
+            Collections.reverse(rows);
+            Key prevKey = rows.size() < limit ? null : Key.of(rows.get(0));
+            return new LoadResult.Page<>(rows, prevKey, null);
+        }
+
+        // Rows and counts from one snapshot, so the placeholders line up with the data
+        return database.runInTransaction(() -> {
+            List<ConversationWithCharacter> rows = key == null
+                    ? conversationDao.getNewestConversationsWithCharacter(limit)
+                    : conversationDao.getConversationsWithCharacterFrom(key.lastUpdated, key.id, limit);
+            if (rows.isEmpty() && key != null) {
+                // Everything at or below the old anchor is gone; start over from the top
+                rows = conversationDao.getNewestConversationsWithCharacter(limit);
+            }
+            if (rows.isEmpty()) {
+                return new LoadResult.Page<>(rows, null, null, 0, 0);
+            }
+
+            Key first = Key.of(rows.get(0));
+            Key last = Key.of(rows.get(rows.size() - 1));
+            int itemsBefore = conversationDao.countConversationsNewerThan(first.lastUpdated, first.id);
+            int itemsAfter = conversationDao.countConversationsOlderThan(last.lastUpdated, last.id);
+            return new LoadResult.Page<>(rows,
+                    itemsBefore > 0 ? first : null,
+                    itemsAfter > 0 ? last : null,
+                    itemsBefore, itemsAfter);
+        });
+    }
+
+    @Nullable
+    @Override
+    public Key getRefreshKey(@NonNull PagingState<Key, ConversationWithCharacter> state) {
+        Integer anchor = state.getAnchorPosition();
+        if (anchor == null) return null;
+        // Start half a load above the anchor so the viewport stays covered after the reload
+        int start = Math.max(0, anchor - state.getConfig().initialLoadSize / 2);
+        ConversationWithCharacter item = state.closestItemToPosition(start);
+        return item != null ? Key.of(item) : null;
+    }
+}
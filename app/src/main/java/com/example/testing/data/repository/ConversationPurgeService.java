@@ -0,0 +1,45 @@
+package com.example.testing.data.repository;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Removes tombstoned conversations and their messages once the undo window is over. Runs only
+// while the device is idle, so the deletes never compete with a chat; stopped part-way it just
+// leaves the rest for the next idle window, every step having committed on its own.
+public class ConversationPurgeService extends JobService {
+
+    private static final int JOB_ID = 1001;
+
+    private final AtomicBoolean stopped = new AtomicBoolean(false);
+
+    // Replaces any pending run, so a burst of deletes ends in one purge after the last of them
+    static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null) return;
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ConversationPurgeService.class))
+                .setMinimumLatency(ConversationRepository.UNDO_WINDOW_MS)
+                .setRequiresDeviceIdle(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped.set(false);
+        ConversationRepository.getInstance(getApplication())
+                .purgeDeleted(stopped::get, () -> jobFinished(params, false));
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        stopped.set(true);
+        return true;
+    }
+}
@@ -2,24 +2,41 @@ package com.example.testing.data.repository;
 
 import android.app.Application;
 import androidx.lifecycle.LiveData;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
 import android.os.Handler;
 import android.os.Looper;
 
 import com.example.testing.data.local.AppDatabase;
 import com.example.testing.data.local.entity.Conversation;
 import com.example.testing.data.local.dao.ConversationDao;
-import com.example.testing.data.local.entity.relations.ConversationWithCharacter;
 import com.example.testing.data.local.dao.MessageDao;
+import com.example.testing.utils.MemoryIndex;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class ConversationRepository {
 
+    // A deleted conversation can be brought back for this long; the purge leaves it alone until then
+    static final long UNDO_WINDOW_MS = 60_000;
+    // Small enough that a purge step holds the writer for milliseconds, so a reply being
+    // streamed in meanwhile only ever waits for one step
+    private static final int PURGE_MESSAGE_BATCH = 500;
+    private static final int PURGE_CONVERSATION_BATCH = 100;
+
     private static volatile ConversationRepository INSTANCE;
+    private final Application application;
+    private final AppDatabase database;
     private final ConversationDao conversationDao;
     private final MessageDao messageDao;
     private final ExecutorService executorService;
+    private final ListeningExecutorService pagingExecutor;
+    // Purges run apart from executorService so they never hold up conversation updates
+    private final ExecutorService purgeExecutor;
     private final Handler mainHandler;
 
     public interface InsertCallback {
@@ -31,11 +48,21 @@ public class ConversationRepository {
     }
 
     private ConversationRepository(Application application) {
-        AppDatabase db = AppDatabase.getInstance(application);
-        this.conversationDao = db.conversationDao();
-        this.messageDao = db.messageDao();
+        this.application = application;
+        this.database = AppDatabase.getInstance(application);
+        this.conversationDao = database.conversationDao();
+        this.messageDao = database.messageDao();
         this.executorService = Executors.newSingleThreadExecutor();
+        this.pagingExecutor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+        this.purgeExecutor = Executors.newSingleThreadExecutor();
         this.mainHandler = new Handler(Looper.getMainLooper());
+
+        // Pending purges don't survive a reboot; tombstones left over get a new one
+        purgeExecutor.execute(() -> {
+            if (conversationDao.hasDeletedConversationsSync()) {
+                ConversationPurgeService.schedule(application);
+            }
+        });
     }
 
     public static ConversationRepository getInstance(Application application) {
@@ -49,17 +76,21 @@ public class ConversationRepository {
         return INSTANCE;
     }
 
-    public void loadConversationsPaged(int limit, int offset, DataCallback<List<ConversationWithCharacter>> callback) {
+    public void loadAllConversationIds(DataCallback<List<Integer>> callback) {
         executorService.execute(() -> {
-            List<ConversationWithCharacter> data = conversationDao.getConversationsWithCharacterPaged(limit, offset);
+            List<Integer> ids = conversationDao.getAllConversationIdsSync();
             mainHandler.post(() -> {
                 if (callback != null) {
-                    callback.onDataLoaded(data);
+                    callback.onDataLoaded(ids);
                 }
             });
         });
     }
 
+    public ConversationPagingSource createConversationPagingSource() {
+        return new ConversationPagingSource(database, pagingExecutor);
+    }
+
     public void insert(Conversation conversation, InsertCallback callback) {
         executorService.execute(() -> {
             long newId = conversationDao.insert(conversation);
@@ -81,6 +112,10 @@ public class ConversationRepository {
         conversationDao.updateLastUpdated(conversationId, timestamp);
     }
 
+    public void updateSummarySync(int conversationId, String summary, long throughTimestamp, int throughIndex) {
+        conversationDao.updateSummary(conversationId, summary, throughTimestamp, throughIndex);
+    }
+
     public void update(Conversation conversation) {
         executorService.execute(() -> conversationDao.update(conversation));
     }
@@ -93,27 +128,63 @@ public class ConversationRepository {
         return conversationDao.getAllConversationsSync();
     }
 
+    // Messages go with the conversations through the foreign key
     public void deleteAll() {
-        executorService.execute(() -> {
-            messageDao.deleteAll();
-            conversationDao.deleteAll();
-        });
+        executorService.execute(conversationDao::deleteAll);
     }
 
     public void delete(Conversation conversation) {
-        executorService.execute(() -> {
-            messageDao.deleteMessagesByConversationId(conversation.getId());
-            conversationDao.delete(conversation);
-        });
+        deleteConversations(Collections.singletonList(conversation.getId()));
     }
 
+    // Only stamps deleted_at, one UPDATE however long the conversations are; they drop out of
+    // every list at once and ConversationPurgeService removes the rows later.
     public void deleteConversations(List<Integer> ids) {
         executorService.execute(() -> {
-            messageDao.deleteMessagesByConversationIds(ids);
-            conversationDao.deleteConversationsByIds(ids);
+            conversationDao.markDeleted(ids, System.currentTimeMillis());
+            ConversationPurgeService.schedule(application);
         });
     }
 
+    public void restoreConversations(List<Integer> ids) {
+        executorService.execute(() -> conversationDao.restore(ids));
+    }
+
+    // Removes conversations tombstoned longer than UNDO_WINDOW_MS, a batch of messages at a time,
+    // each batch its own transaction, then the emptied conversations. A crash or stop part-way
+    // leaves fewer messages, never orphans: the conversation rows, and with them the cascade, go
+    // last. Checks stopRequested between batches; onFinished runs on the purge thread.
+    void purgeDeleted(BooleanSupplier stopRequested, Runnable onFinished) {
+        purgeExecutor.execute(() -> {
+            long deletedBefore = System.currentTimeMillis() - UNDO_WINDOW_MS;
+            List<Integer> purged = purgeDeletedBefore(conversationDao, messageDao, deletedBefore, stopRequested);
+            // Their memory stores would otherwise stay cached with vectors of messages that are gone
+            if (!purged.isEmpty()) MemoryIndex.getInstance(application).evict(purged);
+            // Deletes from inside the undo window are left for a later run, scheduled once this
+            // one has finished so it doesn't cut this one short
+            boolean more = !stopRequested.getAsBoolean() && conversationDao.hasDeletedConversationsSync();
+            onFinished.run();
+            if (more) ConversationPurgeService.schedule(application);
+        });
+    }
+
+    // Ids of the conversations removed, tombstoned at or before deletedBefore.
+    static List<Integer> purgeDeletedBefore(ConversationDao conversationDao, MessageDao messageDao, long deletedBefore,
+                                            BooleanSupplier stopRequested) {
+        List<Integer> purged = new ArrayList<>();
+        List<Integer> ids;
+        while (!stopRequested.getAsBoolean()
+                && !(ids = conversationDao.getDeletedConversationIdsSync(deletedBefore, PURGE_CONVERSATION_BATCH)).isEmpty()) {
+            while (!stopRequested.getAsBoolean() && messageDao.deleteMessageBatch(ids, PURGE_MESSAGE_BATCH) > 0) {
+                // Next batch
+            }
+            if (stopRequested.getAsBoolean()) break;
+            conversationDao.deleteDeletedConversations(ids);
+            purged.addAll(ids);
+        }
+        return purged;
+    }
+
     public LiveData<Conversation> getConversationById(int conversationId) {
         return conversationDao.getConversationById(conversationId);
     }
@@ -121,8 +192,4 @@ public class ConversationRepository {
     public Conversation getConversationByIdSync(int conversationId) {
         return conversationDao.getConversationByIdSync(conversationId);
     }
-
-    public LiveData<List<ConversationWithCharacter>> getAllConversationsWithCharacter() {
-        return conversationDao.getAllConversationsWithCharacter();
-    }
-}
\ No newline at end of file
+}
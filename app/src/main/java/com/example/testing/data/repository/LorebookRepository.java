@@ -0,0 +1,64 @@
+package com.example.testing.data.repository;
+
+import android.app.Application;
+import androidx.lifecycle.LiveData;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.dao.LorebookDao;
+import com.example.testing.data.local.entity.LorebookEntry;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class LorebookRepository {
+
+    private static volatile LorebookRepository INSTANCE;
+    private final LorebookDao lorebookDao;
+    private final ExecutorService executorService;
+
+    private LorebookRepository(Application application) {
+        AppDatabase db = AppDatabase.getInstance(application);
+        this.lorebookDao = db.lorebookDao();
+        this.executorService = Executors.newSingleThreadExecutor();
+    }
+
+    public static LorebookRepository getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (LorebookRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new LorebookRepository(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public void insert(LorebookEntry entry) {
+        executorService.execute(() -> lorebookDao.insert(entry));
+    }
+
+    public void update(LorebookEntry entry) {
+        executorService.execute(() -> lorebookDao.update(entry));
+    }
+
+    public void delete(LorebookEntry entry) {
+        executorService.execute(() -> lorebookDao.delete(entry));
+    }
+
+    public LiveData<List<LorebookEntry>> getEntriesForCharacter(int characterId) {
+        return lorebookDao.getEntriesForCharacter(characterId);
+    }
+
+    public LiveData<List<LorebookEntry>> getEntriesForScenario(int scenarioId) {
+        return lorebookDao.getEntriesForScenario(scenarioId);
+    }
+
+    public List<LorebookEntry> getEnabledEntriesForCharacterSync(int characterId) {
+        return lorebookDao.getEnabledEntriesForCharacterSync(characterId);
+    }
+
+    public List<LorebookEntry> getEnabledEntriesForScenarioSync(int scenarioId) {
+        return lorebookDao.getEnabledEntriesForScenarioSync(scenarioId);
+    }
+}
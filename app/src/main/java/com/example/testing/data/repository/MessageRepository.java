@@ -1,7 +1,6 @@
 package com.example.testing.data.repository;
 
 import android.app.Application;
-import androidx.lifecycle.LiveData;
 
 import com.example.testing.data.local.AppDatabase;
 import com.example.testing.data.local.dao.MessageDao;
@@ -38,8 +37,8 @@ public class MessageRepository {
         executorService.execute(() -> messageDao.insert(message));
     }
 
-    public void insertSync(Message message) {
-        messageDao.insert(message);
+    public long insertSync(Message message) {
+        return messageDao.insert(message);
     }
 
     public void update(Message message) {
@@ -50,6 +49,10 @@ public class MessageRepository {
         messageDao.update(message);
     }
 
+    public void updateContentSync(int messageId, String content) {
+        messageDao.updateContent(messageId, content);
+    }
+
     public void delete(Message message) {
         executorService.execute(() -> messageDao.delete(message));
     }
@@ -58,11 +61,31 @@ public class MessageRepository {
         messageDao.delete(message);
     }
 
-    public LiveData<List<Message>> getMessagesForConversation(int conversationId) {
-        return messageDao.getMessagesForConversation(conversationId);
-    }
-
     public List<Message> getMessagesForConversationSync(int conversationId) {
         return messageDao.getMessagesForConversationSync(conversationId);
     }
-}
\ No newline at end of file
+
+    public List<Message> getMessagesByIdsSync(List<Integer> messageIds) {
+        return messageDao.getMessagesByIdsSync(messageIds);
+    }
+
+    public List<Message> getRecentMessagesSync(int conversationId, int limit) {
+        return messageDao.getRecentMessagesSync(conversationId, limit);
+    }
+
+    public List<Message> getMessagesBeforeSync(int conversationId, Message oldest, int limit) {
+        return messageDao.getMessagesBeforeSync(conversationId, oldest.getTimestamp(), oldest.getIndex(), limit);
+    }
+
+    public List<Message> getMessagesBetweenSync(int conversationId, long afterTimestamp, int afterIndex, Message before, int limit) {
+        return messageDao.getMessagesBetweenSync(conversationId, afterTimestamp, afterIndex, before.getTimestamp(), before.getIndex(), limit);
+    }
+
+    public List<Message> getMessagesAfterSync(int conversationId, Message newest, int limit) {
+        return messageDao.getMessagesAfterSync(conversationId, newest.getTimestamp(), newest.getIndex(), limit);
+    }
+
+    public List<Message> getMessagesFromSync(int conversationId, Message first, int limit) {
+        return messageDao.getMessagesFromSync(conversationId, first.getTimestamp(), first.getIndex(), limit);
+    }
+}
@@ -1,104 +1,179 @@
 package com.example.testing.data.repository;
 
+import android.app.Application;
+import android.content.Context;
+import android.content.SharedPreferences;
+
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.dao.ModelDao;
+import com.example.testing.data.local.entity.ModelInfo;
 import com.example.testing.data.remote.api.ApiClient;
 import com.example.testing.data.remote.api.ApiService;
 import com.example.testing.data.remote.response.Model;
 import com.example.testing.data.remote.response.ModelResponse;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import retrofit2.Call;
 import retrofit2.Callback;
 import retrofit2.Response;
 
+// The /v1/models catalog, persisted in Room and served stale-while-revalidate:
+// the cached copy is available immediately (and offline), and the network is
+// asked with If-None-Match / If-Modified-Since so an unchanged catalog costs a 304.
 public class ModelRepository {
 
-    private static ModelRepository instance;
+    private static final String PREFS_NAME = "model_catalog";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "last_modified";
+    private static final String KEY_LAST_CHECKED = "last_checked";
+    private static final long STALE_AFTER_MS = TimeUnit.HOURS.toMillis(6);
+
+    private static volatile ModelRepository INSTANCE;
+    private final ModelDao modelDao;
     private final ApiService apiService;
+    private final SharedPreferences prefs;
+    private final ExecutorService executorService;
 
-    // Cache the models in memory
-    private List<Model> cachedModels = null;
-    private final MutableLiveData<List<Model>> modelsLiveData = new MutableLiveData<>();
+    // Rebuilt once per catalog load and swapped in whole, so lookups never see a partial map.
+    private volatile Map<String, ModelInfo> modelIndex = Collections.emptyMap();
+    private final MutableLiveData<List<ModelInfo>> modelsLiveData = new MutableLiveData<>();
+    private final AtomicBoolean refreshInFlight = new AtomicBoolean(false);
 
     public interface RefreshCallback {
         void onResult(boolean isSuccess);
     }
 
-    private ModelRepository() {
-        apiService = ApiClient.getClient().create(ApiService.class);
+    private ModelRepository(Application application) {
+        modelDao = AppDatabase.getInstance(application).modelDao();
+        apiService = ApiClient.getService();
+        prefs = application.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        executorService = Executors.newSingleThreadExecutor();
+        executorService.execute(() -> publish(modelDao.getAllModelsSync()));
     }
 
-    public static synchronized ModelRepository getInstance() {
-        if (instance == null) {
-            instance = new ModelRepository();
+    public static ModelRepository getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (ModelRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ModelRepository(application);
+                }
+            }
         }
-        return instance;
+        return INSTANCE;
     }
 
-    public LiveData<List<Model>> getModels() {
-        if (cachedModels == null) {
-            fetchModelsFromApi(null);
-        } else {
-            // Return immediately if cached
-            modelsLiveData.setValue(cachedModels);
-        }
+    public LiveData<List<ModelInfo>> getModels() {
+        revalidateIfStale(null);
         return modelsLiveData;
     }
 
     public void refreshModels() {
-        fetchModelsFromApi(null);
+        fetchModelsFromApi(null, true);
     }
 
     public void refreshModels(RefreshCallback callback) {
-        fetchModelsFromApi(callback);
+        fetchModelsFromApi(callback, true);
     }
 
-    private void fetchModelsFromApi(RefreshCallback callback) {
-        // We don't need an API key for the public models endpoint in many cases,
-        // but usually OpenRouter allows public access to /models without auth.
-        // If auth is required in future, pass it here.
-
-        apiService.getModels().enqueue(new Callback<ModelResponse>() {
-            @Override
-            public void onResponse(Call<ModelResponse> call, Response<ModelResponse> response) {
-                if (response.isSuccessful() && response.body() != null) {
-                    cachedModels = response.body().getData();
-                    modelsLiveData.postValue(cachedModels);
-                    if (callback != null) {
-                        callback.onResult(true);
-                    }
-                } else {
-                    if (callback != null) {
-                        callback.onResult(false);
+    // Background check for app start: does nothing if the catalog was checked recently,
+    // and only reports back (on a worker thread) when the catalog actually changed.
+    // An empty catalog is always fetched, whatever the timestamp says: the last fetch may have
+    // failed after it was written, or a destructive migration may have cleared the table.
+    // Decided on the executor, after the initial disk load.
+    public void revalidateIfStale(RefreshCallback callback) {
+        executorService.execute(() -> {
+            long lastChecked = prefs.getLong(KEY_LAST_CHECKED, 0);
+            boolean recent = System.currentTimeMillis() - lastChecked < STALE_AFTER_MS;
+            if (recent && !modelIndex.isEmpty()) return;
+            fetchModelsFromApi(callback, false);
+        });
+    }
+
+    public ModelInfo getModelById(String id) {
+        if (id == null) return null;
+        return modelIndex.get(id);
+    }
+
+    public boolean isModelsCached() {
+        return !modelIndex.isEmpty();
+    }
+
+    private void publish(List<ModelInfo> models) {
+        Map<String, ModelInfo> index = new HashMap<>(models.size() * 2);
+        for (ModelInfo model : models) {
+            index.put(model.getId(), model);
+        }
+        modelIndex = index;
+        modelsLiveData.postValue(Collections.unmodifiableList(models));
+    }
+
+    private void fetchModelsFromApi(RefreshCallback callback, boolean reportUnchanged) {
+        if (!refreshInFlight.compareAndSet(false, true)) {
+            if (callback != null && reportUnchanged) callback.onResult(false);
+            return;
+        }
+
+        // Queued behind the initial disk load, so we know whether there is a catalog to validate.
+        executorService.execute(() -> {
+            boolean hasCatalog = !modelIndex.isEmpty();
+            String etag = hasCatalog ? prefs.getString(KEY_ETAG, null) : null;
+            String lastModified = hasCatalog ? prefs.getString(KEY_LAST_MODIFIED, null) : null;
+
+            apiService.getModels(etag, lastModified).enqueue(new Callback<ModelResponse>() {
+                @Override
+                public void onResponse(Call<ModelResponse> call, Response<ModelResponse> response) {
+                    if (response.code() == 304) {
+                        prefs.edit().putLong(KEY_LAST_CHECKED, System.currentTimeMillis()).apply();
+                        finish(callback, reportUnchanged, true);
+                    } else if (response.isSuccessful() && response.body() != null && response.body().getData() != null) {
+                        List<ModelInfo> models = new ArrayList<>();
+                        for (Model m : response.body().getData()) {
+                            if (m != null && m.getId() != null) models.add(new ModelInfo(m));
+                        }
+                        String newEtag = response.headers().get("ETag");
+                        String newLastModified = response.headers().get("Last-Modified");
+
+                        executorService.execute(() -> {
+                            modelDao.replaceAll(models);
+                            publish(modelDao.getAllModelsSync());
+                            prefs.edit()
+                                    .putString(KEY_ETAG, newEtag)
+                                    .putString(KEY_LAST_MODIFIED, newLastModified)
+                                    .putLong(KEY_LAST_CHECKED, System.currentTimeMillis())
+                                    .apply();
+                            finish(callback, true, true);
+                        });
+                    } else {
+                        finish(callback, reportUnchanged, false);
                     }
                 }
-            }
 
-            @Override
-            public void onFailure(Call<ModelResponse> call, Throwable t) {
-                // Handle error if needed, or just leave LiveData empty
-                t.printStackTrace();
-                if (callback != null) {
-                    callback.onResult(false);
+                @Override
+                public void onFailure(Call<ModelResponse> call, Throwable t) {
+                    // Offline or server trouble: the cached catalog stays in use.
+                    t.printStackTrace();
+                    finish(callback, reportUnchanged, false);
                 }
-            }
+            });
         });
     }
 
-    // Helper to find a model object by its ID string (for displaying details)
-    public Model getModelById(String id) {
-        if (cachedModels == null) return null;
-        for (Model m : cachedModels) {
-            if (m.getId().equals(id)) return m;
+    private void finish(RefreshCallback callback, boolean report, boolean isSuccess) {
+        refreshInFlight.set(false);
+        if (callback != null && report) {
+            callback.onResult(isSuccess);
         }
-        return null;
-    }
-
-    // --- ADDED: Check if we already have models ---
-    public boolean isModelsCached() {
-        return cachedModels != null && !cachedModels.isEmpty();
     }
-}
\ No newline at end of file
+}
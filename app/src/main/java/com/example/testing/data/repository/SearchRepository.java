@@ -0,0 +1,85 @@
+package com.example.testing.data.repository;
+
+import android.app.Application;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.dao.MessageSearchDao;
+import com.example.testing.data.local.entity.relations.MessageMatch;
+import com.example.testing.data.local.entity.relations.MessageSearchHit;
+import com.example.testing.utils.FtsQuery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SearchRepository {
+
+    // Wrapped around matched terms in snippets; never typed, so they can't collide with content.
+    public static final String HIGHLIGHT_START = "\u0002";
+    public static final String HIGHLIGHT_END = "\u0003";
+
+    // Ranking reads matchinfo for every candidate, so only the newest this many are ranked.
+    private static final int MAX_RANKED_MATCHES = 1000;
+
+    private static volatile SearchRepository INSTANCE;
+    private final MessageSearchDao searchDao;
+
+    private SearchRepository(Application application) {
+        AppDatabase db = AppDatabase.getInstance(application);
+        this.searchDao = db.messageSearchDao();
+    }
+
+    public static SearchRepository getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (SearchRepository.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SearchRepository(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Ids of matching messages across all conversations, best BM25 score first.
+    public List<Integer> rankMatchesSync(String input) {
+        String query = FtsQuery.toMatchExpression(input);
+        if (query == null) return Collections.emptyList();
+
+        List<MessageMatch> matches = searchDao.getMatchesSync(query, MAX_RANKED_MATCHES);
+        Map<Integer, Double> scores = new HashMap<>(matches.size() * 2);
+        List<Integer> ids = new ArrayList<>(matches.size());
+        for (MessageMatch match : matches) {
+            scores.put(match.messageId, FtsQuery.bm25(match.matchInfo));
+            ids.add(match.messageId);
+        }
+        // Stable sort keeps newer messages ahead on equal scores
+        ids.sort((a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        return ids;
+    }
+
+    // Ids of matching messages in one conversation, newest first.
+    public List<Integer> findInConversationSync(String input, int conversationId) {
+        String query = FtsQuery.toMatchExpression(input);
+        if (query == null) return Collections.emptyList();
+        return searchDao.getMatchIdsInConversationSync(query, conversationId, MAX_RANKED_MATCHES);
+    }
+
+    // Display rows for a page of ids from one of the calls above, in the same order.
+    public List<MessageSearchHit> getHitsSync(String input, List<Integer> messageIds) {
+        String query = FtsQuery.toMatchExpression(input);
+        if (query == null || messageIds.isEmpty()) return Collections.emptyList();
+
+        Map<Integer, MessageSearchHit> byId = new HashMap<>();
+        for (MessageSearchHit hit : searchDao.getHitsSync(query, messageIds, HIGHLIGHT_START, HIGHLIGHT_END)) {
+            byId.put(hit.messageId, hit);
+        }
+        List<MessageSearchHit> hits = new ArrayList<>(messageIds.size());
+        for (Integer id : messageIds) {
+            MessageSearchHit hit = byId.get(id);
+            if (hit != null) hits.add(hit);
+        }
+        return hits;
+    }
+}
@@ -31,15 +31,20 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 import com.example.testing.data.local.entity.Character;
 import com.example.testing.utils.CharacterImageHandler;
+import com.example.testing.utils.TagParser;
 import com.example.testing.utils.TagViewManager;
 import com.example.testing.ui.scenario.AddEditScenarioActivity;
 import com.example.testing.ui.base.BaseActivity;
 import com.example.testing.data.repository.ModelRepository;
 import com.example.testing.R;
 import com.example.testing.data.local.entity.Scenario;
+import com.example.testing.data.local.entity.Tag;
 import com.example.testing.ui.scenario.ScenarioAdapter;
 import com.example.testing.ui.base.ThemeUtils;
-import com.example.testing.data.remote.response.Model;
+import com.example.testing.data.local.entity.ModelInfo;
+import com.example.testing.data.local.entity.LorebookEntry;
+import com.example.testing.ui.lorebook.LorebookAdapter;
+import com.example.testing.ui.lorebook.LorebookEntryDialog;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
@@ -80,6 +85,10 @@ public class AddEditCharacterActivity extends BaseActivity {
     private MaterialButton buttonAddScenario;
     private LinearLayout layoutScenariosContainer;
 
+    private LorebookAdapter lorebookAdapter;
+    private MaterialButton buttonAddLorebookEntry;
+    private LinearLayout layoutLorebookContainer;
+
     private CharacterViewModel characterViewModel;
     private int currentCharacterId = -1;
     private Character editingCharacter;
@@ -152,6 +161,16 @@ public class AddEditCharacterActivity extends BaseActivity {
         scenarioAdapter = new ScenarioAdapter();
         recyclerViewScenarios.setAdapter(scenarioAdapter);
 
+        RecyclerView recyclerViewLorebook = findViewById(R.id.recycler_view_lorebook);
+        buttonAddLorebookEntry = findViewById(R.id.button_add_lorebook_entry);
+        layoutLorebookContainer = findViewById(R.id.layout_lorebook_container);
+        buttonAddLorebookEntry.setTextColor(secondaryColor);
+        buttonAddLorebookEntry.setStrokeColor(ColorStateList.valueOf(secondaryColor));
+        buttonAddLorebookEntry.setStrokeWidth((int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 1, getResources().getDisplayMetrics()));
+        recyclerViewLorebook.setLayoutManager(new LinearLayoutManager(this));
+        lorebookAdapter = new LorebookAdapter();
+        recyclerViewLorebook.setAdapter(lorebookAdapter);
+
         modelsAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, modelIds);
         editTextModel.setAdapter(modelsAdapter);
 
@@ -163,7 +182,9 @@ public class AddEditCharacterActivity extends BaseActivity {
         characterViewModel.getAllTags().observe(this, tags -> {
             if (tags != null) {
                 tagsAdapter.clear();
-                tagsAdapter.addAll(tags);
+                for (Tag tag : tags) {
+                    tagsAdapter.add(tag.getName());
+                }
                 tagsAdapter.notifyDataSetChanged();
             }
         });
@@ -179,10 +200,10 @@ public class AddEditCharacterActivity extends BaseActivity {
             addNewTag(tag);
         });
 
-        ModelRepository.getInstance().getModels().observe(this, models -> {
+        ModelRepository.getInstance(getApplication()).getModels().observe(this, models -> {
             if (models != null) {
                 modelIds.clear();
-                for (Model m : models) {
+                for (ModelInfo m : models) {
                     modelIds.add(m.getId());
                 }
                 modelsAdapter.notifyDataSetChanged();
@@ -191,7 +212,7 @@ public class AddEditCharacterActivity extends BaseActivity {
 
         buttonRefreshModels.setOnClickListener(v -> {
             Toast.makeText(this, "Refreshing models...", Toast.LENGTH_SHORT).show();
-            ModelRepository.getInstance().refreshModels();
+            ModelRepository.getInstance(getApplication()).refreshModels();
         });
 
         editTextModel.setOnItemClickListener((parent, view, position, id) -> {
@@ -267,6 +288,27 @@ public class AddEditCharacterActivity extends BaseActivity {
             startActivity(intent);
         });
 
+        lorebookAdapter.setOnLorebookActionListener(new LorebookAdapter.OnLorebookActionListener() {
+            @Override
+            public void onEdit(LorebookEntry entry) {
+                LorebookEntryDialog.show(AddEditCharacterActivity.this, entry, currentCharacterId, null,
+                        characterViewModel::saveLorebookEntry);
+            }
+
+            @Override
+            public void onDelete(LorebookEntry entry) {
+                new AlertDialog.Builder(AddEditCharacterActivity.this)
+                        .setTitle(R.string.delete_lorebook_entry)
+                        .setMessage("Are you sure you want to delete this entry?")
+                        .setPositiveButton("Yes", (dialog, which) -> characterViewModel.deleteLorebookEntry(entry))
+                        .setNegativeButton("No", null)
+                        .show();
+            }
+        });
+
+        buttonAddLorebookEntry.setOnClickListener(v -> LorebookEntryDialog.show(this, null, currentCharacterId, null,
+                characterViewModel::saveLorebookEntry));
+
         Intent intent = getIntent();
         if (intent.hasExtra("CHARACTER_ID")) {
             setTitle("Edit Character");
@@ -314,9 +356,13 @@ public class AddEditCharacterActivity extends BaseActivity {
                 scenarioAdapter.setScenarios(scenarios);
             });
 
+            layoutLorebookContainer.setVisibility(View.VISIBLE);
+            characterViewModel.getLorebookForCharacter(currentCharacterId).observe(this, entries -> lorebookAdapter.setEntries(entries));
+
         } else {
             setTitle("Add Character");
             layoutScenariosContainer.setVisibility(View.GONE);
+            layoutLorebookContainer.setVisibility(View.GONE);
         }
     }
 
@@ -336,14 +382,9 @@ public class AddEditCharacterActivity extends BaseActivity {
     private void loadTags(String tagsString) {
         currentTags.clear();
         chipGroupTags.removeAllViews();
-        if (tagsString != null && !tagsString.isEmpty()) {
-            String[] split = tagsString.split("\\|");
-            for (String tag : split) {
-                if (!tag.trim().isEmpty()) {
-                    currentTags.add(tag.trim());
-                    addTagChip(tag.trim());
-                }
-            }
+        for (String tag : TagParser.parse(tagsString)) {
+            currentTags.add(tag);
+            addTagChip(tag);
         }
     }
 
@@ -356,7 +397,7 @@ public class AddEditCharacterActivity extends BaseActivity {
     }
 
     private void updateModelInfo(String modelId) {
-        Model model = ModelRepository.getInstance().getModelById(modelId);
+        ModelInfo model = ModelRepository.getInstance(getApplication()).getModelById(modelId);
         if (model != null) {
             textViewModelInfo.setVisibility(View.VISIBLE);
             String info = "Name: " + model.getName() + "\n" +
@@ -12,6 +12,7 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
@@ -103,17 +104,13 @@ public class CharacterAdapter extends RecyclerView.Adapter<CharacterAdapter.Char
         // --- Tag Handling (ChipGroup) ---
         // Logic applies to both Card and List view now
         if (holder.tagsContainer != null) {
-            String tagsStr = currentCharacter.getTags();
-            if (tagsStr != null && !tagsStr.trim().isEmpty()) {
+            List<String> tags = currentCharacter.getTagList();
+            if (!tags.isEmpty()) {
                 holder.tagsContainer.setVisibility(View.VISIBLE);
                 holder.tagsContainer.removeAllViews();
 
-                String[] tags = tagsStr.split("[,|]");
                 for (String tag : tags) {
-                    String cleanTag = tag.trim();
-                    if (!cleanTag.isEmpty()) {
-                        addTagView(holder.itemView.getContext(), holder.tagsContainer, cleanTag);
-                    }
+                    addTagView(holder.itemView.getContext(), holder.tagsContainer, tag);
                 }
             } else {
                 holder.tagsContainer.setVisibility(View.GONE);
@@ -167,9 +164,33 @@ public class CharacterAdapter extends RecyclerView.Adapter<CharacterAdapter.Char
         return characters.size();
     }
 
-    public void setCharacters(List<com.example.testing.data.local.entity.Character> characters) {
-        this.characters = characters;
-        notifyDataSetChanged();
+    // Narrowing a search only removes and moves rows, so most of them keep their views
+    public void setCharacters(List<Character> newCharacters) {
+        List<Character> oldCharacters = this.characters;
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldCharacters.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return newCharacters.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldCharacters.get(oldItemPosition).getId() == newCharacters.get(newItemPosition).getId();
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                // Rows from a new query are new objects and get rebound; search results reuse them
+                return oldCharacters.get(oldItemPosition) == newCharacters.get(newItemPosition);
+            }
+        });
+        this.characters = newCharacters;
+        diff.dispatchUpdatesTo(this);
     }
 
     class CharacterViewHolder extends RecyclerView.ViewHolder {
@@ -1,6 +1,8 @@
 package com.example.testing.ui.character;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MediatorLiveData;
@@ -18,9 +20,17 @@ import com.example.testing.data.local.entity.Persona;
 import com.example.testing.data.local.dao.PersonaDao;
 import com.example.testing.data.local.entity.Scenario;
 import com.example.testing.data.repository.ScenarioRepository;
-
+import com.example.testing.data.local.entity.LorebookEntry;
+import com.example.testing.data.repository.LorebookRepository;
+import com.example.testing.data.local.entity.Tag;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
 public class CharacterViewModel extends AndroidViewModel {
 
@@ -28,14 +38,20 @@ public class CharacterViewModel extends AndroidViewModel {
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final ScenarioRepository scenarioRepository;
+    private final LorebookRepository lorebookRepository;
     private final PersonaDao personaDao;
 
     private final MutableLiveData<Boolean> showHiddenInput = new MutableLiveData<>(false);
     private final MutableLiveData<String> searchQueryInput = new MutableLiveData<>("");
-    private final MutableLiveData<String> tagFilterInput = new MutableLiveData<>("");
+    private final MutableLiveData<Set<String>> selectedTagsInput = new MutableLiveData<>(Collections.emptySet());
+    private final MutableLiveData<Boolean> matchAllTagsInput = new MutableLiveData<>(false);
 
-    private final LiveData<List<com.example.testing.data.local.entity.Character>> displayedCharacters;
-    private final LiveData<List<String>> allTags;
+    private final LiveData<List<Character>> filteredCharacters;
+    private final MediatorLiveData<List<Character>> displayedCharacters = new MediatorLiveData<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every new query or list, so a search that finishes late is dropped. Main thread only.
+    private int searchGeneration = 0;
+    private final LiveData<List<Tag>> allTags;
 
     private final MutableLiveData<ConversationInfo> navigateToConversation = new MutableLiveData<>();
 
@@ -45,20 +61,24 @@ public class CharacterViewModel extends AndroidViewModel {
         conversationRepository = ConversationRepository.getInstance(application);
         messageRepository = MessageRepository.getInstance(application);
         scenarioRepository = ScenarioRepository.getInstance(application);
+        lorebookRepository = LorebookRepository.getInstance(application);
         personaDao = AppDatabase.getInstance(application).personaDao();
 
         MediatorLiveData<FilterParams> filterParams = new MediatorLiveData<>();
-        filterParams.setValue(new FilterParams(false, "", ""));
+        filterParams.setValue(new FilterParams(false, Collections.emptySet(), false));
 
         filterParams.addSource(showHiddenInput, v ->
-                filterParams.setValue(new FilterParams(v, searchQueryInput.getValue(), tagFilterInput.getValue())));
-        filterParams.addSource(searchQueryInput, v ->
-                filterParams.setValue(new FilterParams(showHiddenInput.getValue(), v, tagFilterInput.getValue())));
-        filterParams.addSource(tagFilterInput, v ->
-                filterParams.setValue(new FilterParams(showHiddenInput.getValue(), searchQueryInput.getValue(), v)));
-
-        displayedCharacters = Transformations.switchMap(filterParams, params ->
-                characterRepository.getFilteredCharacters(params.isHidden, params.searchQuery, params.tagFilter));
+                filterParams.setValue(new FilterParams(v, selectedTagsInput.getValue(), matchAllTagsInput.getValue())));
+        filterParams.addSource(selectedTagsInput, v ->
+                filterParams.setValue(new FilterParams(showHiddenInput.getValue(), v, matchAllTagsInput.getValue())));
+        filterParams.addSource(matchAllTagsInput, v ->
+                filterParams.setValue(new FilterParams(showHiddenInput.getValue(), selectedTagsInput.getValue(), v)));
+
+        // Visibility and tags are filtered in SQL; typing only re-runs the in-memory search
+        filteredCharacters = Transformations.switchMap(filterParams, params ->
+                characterRepository.getFilteredCharacters(params.isHidden, params.tags, params.matchAllTags));
+        displayedCharacters.addSource(filteredCharacters, v -> applySearch());
+        displayedCharacters.addSource(searchQueryInput, v -> applySearch());
 
         allTags = characterRepository.getAllTags();
     }
@@ -79,19 +99,54 @@ public class CharacterViewModel extends AndroidViewModel {
         scenarioRepository.delete(scenario);
     }
 
+    public LiveData<List<LorebookEntry>> getLorebookForCharacter(int characterId) {
+        return lorebookRepository.getEntriesForCharacter(characterId);
+    }
+
+    public LiveData<List<LorebookEntry>> getLorebookForScenario(int scenarioId) {
+        return lorebookRepository.getEntriesForScenario(scenarioId);
+    }
+
+    public void saveLorebookEntry(LorebookEntry entry, boolean isNew) {
+        if (isNew) {
+            lorebookRepository.insert(entry);
+        } else {
+            lorebookRepository.update(entry);
+        }
+    }
+
+    public void deleteLorebookEntry(LorebookEntry entry) {
+        lorebookRepository.delete(entry);
+    }
+
     public LiveData<List<Persona>> getAllPersonas() {
         return personaDao.getAllPersonas();
     }
 
+    private void applySearch() {
+        List<Character> candidates = filteredCharacters.getValue();
+        if (candidates == null) return;
+
+        int generation = ++searchGeneration;
+        String query = searchQueryInput.getValue();
+        if (query == null || query.trim().isEmpty()) {
+            displayedCharacters.setValue(candidates);
+            return;
+        }
+        characterRepository.searchCharacters(candidates, query, results -> mainHandler.post(() -> {
+            if (generation == searchGeneration) displayedCharacters.setValue(results);
+        }));
+    }
+
     private static class FilterParams {
         final boolean isHidden;
-        final String searchQuery;
-        final String tagFilter;
+        final List<String> tags;
+        final boolean matchAllTags;
 
-        FilterParams(boolean isHidden, String searchQuery, String tagFilter) {
-            this.isHidden = isHidden;
-            this.searchQuery = searchQuery == null ? "" : searchQuery;
-            this.tagFilter = tagFilter == null ? "" : tagFilter;
+        FilterParams(Boolean isHidden, Set<String> tags, Boolean matchAllTags) {
+            this.isHidden = Boolean.TRUE.equals(isHidden);
+            this.tags = tags == null ? Collections.emptyList() : new ArrayList<>(tags);
+            this.matchAllTags = Boolean.TRUE.equals(matchAllTags);
         }
     }
 
@@ -105,8 +160,8 @@ public class CharacterViewModel extends AndroidViewModel {
         }
     }
 
-    public LiveData<List<com.example.testing.data.local.entity.Character>> getDisplayedCharacters() { return displayedCharacters; }
-    public LiveData<List<String>> getAllTags() { return allTags; }
+    public LiveData<List<Character>> getDisplayedCharacters() { return displayedCharacters; }
+    public LiveData<List<Tag>> getAllTags() { return allTags; }
     public LiveData<Character> getCharacterById(int id) { return characterRepository.getCharacterById(id); }
     public LiveData<ConversationInfo> getNavigateToConversation() { return navigateToConversation; }
 
@@ -126,14 +181,34 @@ public class CharacterViewModel extends AndroidViewModel {
         }
     }
 
-    public void setTagFilter(String tag) {
-        if (!Objects.equals(tagFilterInput.getValue(), tag)) {
-            tagFilterInput.setValue(tag);
+    public void setTagSelected(String tag, boolean selected) {
+        Set<String> tags = new LinkedHashSet<>(getSelectedTags());
+        if (selected ? tags.add(tag) : tags.remove(tag)) {
+            selectedTagsInput.setValue(Collections.unmodifiableSet(tags));
+        }
+    }
+
+    // Drops selections whose tag no longer exists, which would otherwise empty an all-tags filter
+    public void retainSelectedTags(Collection<String> existingTags) {
+        Set<String> tags = new LinkedHashSet<>(getSelectedTags());
+        if (tags.retainAll(existingTags)) {
+            selectedTagsInput.setValue(Collections.unmodifiableSet(tags));
+        }
+    }
+
+    public Set<String> getSelectedTags() {
+        Set<String> tags = selectedTagsInput.getValue();
+        return tags != null ? tags : Collections.emptySet();
+    }
+
+    public void setMatchAllTags(boolean matchAll) {
+        if (!Objects.equals(matchAllTagsInput.getValue(), matchAll)) {
+            matchAllTagsInput.setValue(matchAll);
         }
     }
 
-    public String getCurrentTagFilter() {
-        return tagFilterInput.getValue();
+    public boolean isMatchingAllTags() {
+        return Boolean.TRUE.equals(matchAllTagsInput.getValue());
     }
 
     public void insert(Character character) { characterRepository.insert(character); }
@@ -5,6 +5,7 @@ import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Color;
 import android.graphics.drawable.GradientDrawable;
 import android.os.Bundle;
 import android.text.Editable;
@@ -24,6 +25,8 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AlertDialog;
@@ -39,18 +42,25 @@ import com.example.testing.R;
 import com.example.testing.data.local.entity.Scenario;
 import com.example.testing.data.local.entity.Persona;
 import com.example.testing.ui.base.ThemeUtils;
+import com.example.testing.ui.search.SearchActivity;
 import com.example.testing.data.local.entity.User;
+import com.example.testing.data.repository.ModelRepository;
 import com.example.testing.utils.ConversationStatsFormatter;
 import com.example.testing.utils.MessagePopupHelper;
+import com.example.testing.utils.PromptTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class ConversationActivity extends BaseActivity {
 
+    // How close to either end of the loaded messages a scroll asks for the next page
+    private static final int PREFETCH_DISTANCE = 10;
+
     private EditText editTextMessage;
     private ImageButton buttonSend;
     private ProgressBar progressBarGenerating;
+    private ImageButton buttonStopGenerating;
     private RecyclerView recyclerViewMessages;
     private MessageAdapter messageAdapter;
 
@@ -72,9 +82,22 @@ public class ConversationActivity extends BaseActivity {
     private Persona currentPersona;
 
     private List<Message> currentMessages = new ArrayList<>();
+    // Whether the last delivered slice ended at the newest message; new messages only scroll the list then
+    private boolean followingLatest = true;
     private String currentActionBarImagePath = null;
     private MessagePopupHelper messagePopupHelper;
 
+    // Set when opened from a search hit or after find-in-conversation; consumed once the message is in the list.
+    private int pendingScrollMessageId = -1;
+
+    private final ActivityResultLauncher<Intent> findInConversation = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(), result -> {
+                if (result.getResultCode() == RESULT_OK && result.getData() != null) {
+                    pendingScrollMessageId = result.getData().getIntExtra(SearchActivity.EXTRA_MESSAGE_ID, -1);
+                    scrollToPendingMessage();
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -85,6 +108,7 @@ public class ConversationActivity extends BaseActivity {
         Intent intent = getIntent();
         int characterId = intent.getIntExtra("CHARACTER_ID", -1);
         conversationId = intent.getIntExtra("CONVERSATION_ID", -1);
+        pendingScrollMessageId = intent.getIntExtra(SearchActivity.EXTRA_MESSAGE_ID, -1);
 
         if (intent.hasExtra("PERSONA_ID")) {
             selectedPersonaId = intent.getIntExtra("PERSONA_ID", -1);
@@ -102,6 +126,7 @@ public class ConversationActivity extends BaseActivity {
         initViews();
         setupViewModel(characterId);
         setupObservers();
+        conversationViewModel.warmUpConnection();
 
         messagePopupHelper = new MessagePopupHelper(this, conversationViewModel, messageAdapter);
     }
@@ -139,6 +164,7 @@ public class ConversationActivity extends BaseActivity {
         editTextMessage = findViewById(R.id.edit_text_message);
         buttonSend = findViewById(R.id.button_send);
         progressBarGenerating = findViewById(R.id.progress_bar_generating);
+        buttonStopGenerating = findViewById(R.id.button_stop_generating);
 
         layoutScenarioContainer = findViewById(R.id.layout_scenario_container);
         textViewScenarioToggle = findViewById(R.id.text_view_scenario_toggle);
@@ -167,11 +193,30 @@ public class ConversationActivity extends BaseActivity {
         messageAdapter = new MessageAdapter();
         recyclerViewMessages.setAdapter(messageAdapter);
 
+        recyclerViewMessages.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (conversationId == -1) return;
+                if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+                    conversationViewModel.loadOlderMessages();
+                } else if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= messageAdapter.getItemCount() - 1 - PREFETCH_DISTANCE) {
+                    conversationViewModel.loadNewerMessages();
+                }
+            }
+        });
+
         buttonSend.setOnClickListener(v -> handleSendAction());
+        buttonStopGenerating.setOnClickListener(v -> conversationViewModel.stopGeneration());
 
         editTextMessage.addTextChangedListener(new TextWatcher() {
             @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-            @Override public void onTextChanged(CharSequence s, int start, int before, int count) { checkIfReadyToSend(); }
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {
+                if (before == 0 && count > 0 && s.length() == count) {
+                    // First character typed: a send is likely coming, make sure the connection is warm.
+                    conversationViewModel.warmUpConnection();
+                }
+                checkIfReadyToSend();
+            }
             @Override public void afterTextChanged(Editable s) {}
         });
 
@@ -200,13 +245,11 @@ public class ConversationActivity extends BaseActivity {
 
         conversationViewModel.getIsGenerating().observe(this, isGenerating -> {
             if (isGenerating) {
-                buttonSend.setVisibility(View.GONE);
                 progressBarGenerating.setVisibility(View.VISIBLE);
             } else {
-                buttonSend.setVisibility(View.VISIBLE);
                 progressBarGenerating.setVisibility(View.GONE);
-                checkIfReadyToSend();
             }
+            checkIfReadyToSend();
         });
 
         conversationViewModel.getCurrentCharacter().observe(this, character -> {
@@ -256,15 +299,46 @@ public class ConversationActivity extends BaseActivity {
             }
         });
 
-        conversationViewModel.getMessages().observe(this, messages -> {
-            if (messages != null && !messages.isEmpty()) {
-                messageAdapter.setMessages(messages);
-                currentMessages = messages;
+        conversationViewModel.getStreamingState().observe(this, state -> {
+            messageAdapter.setStreamingState(state);
+            if (state != null && !state.isDone() && messageAdapter.getItemCount() > 0) {
+                recyclerViewMessages.scrollToPosition(messageAdapter.getItemCount() - 1);
+            }
+        });
+
+        conversationViewModel.getMessages().observe(this, slice -> {
+            List<Message> messages = slice.messages;
+            if (messages.isEmpty()) return;
+
+            int previousLastId = currentMessages.isEmpty() ? -1 : currentMessages.get(currentMessages.size() - 1).getIndex();
+            boolean newMessageAtEnd = messages.get(messages.size() - 1).getIndex() != previousLastId;
+            boolean wasFollowing = followingLatest;
+            followingLatest = slice.atLatest;
+
+            messageAdapter.setMessages(messages);
+            currentMessages = messages;
+            if (pendingScrollMessageId != -1) {
+                scrollToPendingMessage();
+            } else if (slice.atLatest && wasFollowing && newMessageAtEnd) {
                 recyclerViewMessages.post(() -> recyclerViewMessages.scrollToPosition(messages.size() - 1));
             }
         });
     }
 
+    private void scrollToPendingMessage() {
+        int secondaryColor = ThemeUtils.getSecondaryColor(this);
+        int tint = Color.argb(64, Color.red(secondaryColor), Color.green(secondaryColor), Color.blue(secondaryColor));
+        int position = messageAdapter.highlightMessage(pendingScrollMessageId, tint);
+        if (position == RecyclerView.NO_POSITION) {
+            // Not in the loaded pages; load a window around it and try again when it arrives
+            if (!currentMessages.isEmpty()) conversationViewModel.loadMessagesAround(pendingScrollMessageId);
+            return;
+        }
+        pendingScrollMessageId = -1;
+        recyclerViewMessages.post(() -> ((LinearLayoutManager) recyclerViewMessages.getLayoutManager())
+                .scrollToPositionWithOffset(position, recyclerViewMessages.getHeight() / 4));
+    }
+
     private void updateUIForScenario(Scenario scenario) {
         if (conversationId == -1) return;
 
@@ -343,7 +417,9 @@ public class ConversationActivity extends BaseActivity {
         if (text == null) return "";
         String userName = (currentPersona != null && !TextUtils.isEmpty(currentPersona.getName())) ? currentPersona.getName() : "User";
         String charName = (currentCharacter != null && !TextUtils.isEmpty(currentCharacter.getName())) ? currentCharacter.getName() : "Character";
-        return text.replace("{{user}}", userName).replace("{{character}}", charName);
+        String model = currentCharacter != null && !TextUtils.isEmpty(currentCharacter.getModel()) ? currentCharacter.getModel()
+                : currentUser != null ? currentUser.getPreferredModel() : null;
+        return PromptTemplate.render(text, new PromptTemplate.Variables(userName, charName, model, 0, conversationId));
     }
 
     private void updateActionBarImage(String imagePath) {
@@ -412,6 +488,13 @@ public class ConversationActivity extends BaseActivity {
         if (id == R.id.action_copy_history) {
             copyConversationHistoryToClipboard();
             return true;
+        } else if (id == R.id.action_find_in_conversation) {
+            if (conversationId != -1) {
+                Intent intent = new Intent(this, SearchActivity.class);
+                intent.putExtra(SearchActivity.EXTRA_CONVERSATION_ID, conversationId);
+                findInConversation.launch(intent);
+            }
+            return true;
         } else if (id == R.id.action_conversation_info) {
             showConversationInfo();
             return true;
@@ -423,7 +506,18 @@ public class ConversationActivity extends BaseActivity {
     }
 
     private void showConversationInfo() {
-        String info = ConversationStatsFormatter.generateStatsInfo(currentMessages, currentCharacter, currentUser);
+        if (conversationId == -1) {
+            showConversationInfo(currentMessages);
+        } else {
+            // The list only holds a window of the conversation; stats cover all of it
+            conversationViewModel.loadAllMessages(this::showConversationInfo);
+        }
+    }
+
+    private void showConversationInfo(List<Message> messages) {
+        if (isFinishing()) return;
+        String info = ConversationStatsFormatter.generateStatsInfo(messages, currentCharacter, currentUser,
+                ModelRepository.getInstance(getApplication()));
         new AlertDialog.Builder(this)
                 .setTitle("Conversation Stats")
                 .setMessage(info)
@@ -446,10 +540,19 @@ public class ConversationActivity extends BaseActivity {
     }
 
     private void checkIfReadyToSend() {
-        if (Boolean.TRUE.equals(conversationViewModel.getIsGenerating().getValue())) return;
-
         String text = editTextMessage.getText().toString().trim();
         boolean hasContent = !TextUtils.isEmpty(text);
+
+        // While generating, an empty box offers Stop; typed text offers Send, which pre-empts the reply.
+        if (Boolean.TRUE.equals(conversationViewModel.getIsGenerating().getValue())) {
+            buttonStopGenerating.setVisibility(hasContent ? View.GONE : View.VISIBLE);
+            buttonSend.setVisibility(hasContent ? View.VISIBLE : View.GONE);
+            if (!hasContent) return;
+        } else {
+            buttonStopGenerating.setVisibility(View.GONE);
+            buttonSend.setVisibility(View.VISIBLE);
+        }
+
         boolean hasCreds = currentUser != null && !TextUtils.isEmpty(currentUser.getApiKey()) && currentCharacter != null;
 
         if (hasContent) {
@@ -467,6 +570,8 @@ public class ConversationActivity extends BaseActivity {
         }
 
         String messageContent = editTextMessage.getText().toString().trim();
+        // Sending brings the list back to the end of the conversation
+        followingLatest = true;
 
         if (!TextUtils.isEmpty(messageContent)) {
             if (conversationId == -1) {
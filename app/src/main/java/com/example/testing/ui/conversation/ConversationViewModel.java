@@ -16,6 +16,7 @@ import com.example.testing.data.repository.CharacterRepository;
 import com.example.testing.data.local.entity.Conversation;
 import com.example.testing.data.repository.ConversationRepository;
 import com.example.testing.data.repository.MessageRepository;
+import com.example.testing.data.repository.ModelRepository;
 import com.example.testing.data.local.entity.Persona;
 import com.example.testing.data.local.dao.PersonaDao;
 import com.example.testing.data.local.entity.Scenario;
@@ -24,18 +25,26 @@ import com.example.testing.data.local.entity.User;
 import com.example.testing.data.repository.UserRepository;
 import com.example.testing.data.remote.api.ApiClient;
 import com.example.testing.data.remote.api.ApiService;
+import com.example.testing.data.remote.api.ConnectionWarmer;
 import com.example.testing.data.remote.request.ApiRequest;
 import com.example.testing.data.remote.request.RequestMessage;
 import com.example.testing.utils.ChatStreamHandler;
 import com.example.testing.utils.ChatPromptGenerator;
+import com.example.testing.utils.ConversationSummarizer;
+import com.example.testing.utils.GenerationTimer;
+import com.example.testing.utils.LorebookIndex;
+import com.example.testing.utils.MemoryIndex;
+import com.example.testing.utils.PromptTemplate;
+import com.example.testing.utils.SystemPromptCache;
+import com.example.testing.utils.TokenCounter;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import okhttp3.ResponseBody;
@@ -50,13 +59,17 @@ public class ConversationViewModel extends AndroidViewModel {
     private final ConversationRepository conversationRepository;
     private final ScenarioRepository scenarioRepository;
     private final PersonaDao personaDao;
+    private final AppDatabase database;
     private final ApiService apiService;
     private final ExecutorService executorService;
     private final ChatPromptGenerator chatPromptGenerator;
+    private final ConversationSummarizer summarizer;
+    private final MemoryIndex memoryIndex;
+    private final MessageWindow messageWindow;
 
     private final MutableLiveData<Integer> conversationIdInput = new MutableLiveData<>();
     private final MutableLiveData<Integer> selectedPersonaIdInput = new MutableLiveData<>();
-    private final LiveData<List<Message>> messages;
+    private final LiveData<MessageWindow.Slice> messages;
 
     private LiveData<Character> currentCharacter;
     private LiveData<User> currentUser;
@@ -66,6 +79,11 @@ public class ConversationViewModel extends AndroidViewModel {
     private final LiveData<Scenario> conversationScenario;
 
     private final MutableLiveData<Boolean> isGenerating = new MutableLiveData<>(false);
+    private final MutableLiveData<StreamingState> streamingState = new MutableLiveData<>();
+
+    // Bumped on every new generation or stop; a task whose token is stale has been pre-empted.
+    private final AtomicInteger generationToken = new AtomicInteger();
+    private volatile Call<ResponseBody> activeCall;
 
     public ConversationViewModel(@NonNull Application application) {
         super(application);
@@ -74,17 +92,23 @@ public class ConversationViewModel extends AndroidViewModel {
         userRepository = UserRepository.getInstance(application);
         conversationRepository = ConversationRepository.getInstance(application);
         scenarioRepository = ScenarioRepository.getInstance(application);
-        personaDao = AppDatabase.getInstance(application).personaDao();
+        database = AppDatabase.getInstance(application);
+        personaDao = database.personaDao();
 
-        apiService = ApiClient.getClient().create(ApiService.class);
+        apiService = ApiClient.getService();
         executorService = Executors.newSingleThreadExecutor();
-        chatPromptGenerator = new ChatPromptGenerator(personaDao, scenarioRepository);
+        memoryIndex = MemoryIndex.getInstance(application);
+        chatPromptGenerator = new ChatPromptGenerator(messageRepository, personaDao, scenarioRepository,
+                ModelRepository.getInstance(application), TokenCounter.getInstance(application),
+                SystemPromptCache.getInstance(application), LorebookIndex.getInstance(application), memoryIndex);
+        summarizer = ConversationSummarizer.getInstance(application);
+        messageWindow = new MessageWindow(messageRepository, database);
 
         messages = Transformations.switchMap(conversationIdInput, id -> {
             if (id == -1) {
-                return new MutableLiveData<>(new ArrayList<>());
+                return new MutableLiveData<>(MessageWindow.Slice.EMPTY);
             } else {
-                return messageRepository.getMessagesForConversation(id);
+                return messageWindow.open(id);
             }
         });
 
@@ -107,7 +131,9 @@ public class ConversationViewModel extends AndroidViewModel {
     @Override
     protected void onCleared() {
         super.onCleared();
+        stopGeneration();
         executorService.shutdown();
+        messageWindow.close();
     }
 
     public void loadData(int characterId, int conversationId) {
@@ -163,17 +189,27 @@ public class ConversationViewModel extends AndroidViewModel {
         conversationIdInput.setValue(conversationId);
     }
 
-    public LiveData<List<Message>> getMessages() { return messages; }
+    public LiveData<MessageWindow.Slice> getMessages() { return messages; }
     public LiveData<com.example.testing.data.local.entity.Character> getCurrentCharacter() { return currentCharacter; }
     public LiveData<User> getCurrentUser() { return currentUser; }
     public LiveData<Persona> getActivePersona() { return activePersona; }
     public LiveData<Integer> getConversationId() { return conversationIdInput; }
     public LiveData<Boolean> getIsGenerating() { return isGenerating; }
+    public LiveData<StreamingState> getStreamingState() { return streamingState; }
     public LiveData<Conversation> getCurrentConversation() { return currentConversation; }
     public LiveData<Scenario> getConversationScenario() { return conversationScenario; }
 
     public ScenarioRepository getScenarioRepository() { return scenarioRepository; }
 
+    // Paging of the loaded message window, driven by the list's scroll position
+    public void loadOlderMessages() { messageWindow.loadOlder(); }
+    public void loadNewerMessages() { messageWindow.loadNewer(); }
+    public void loadMessagesAround(int messageId) { messageWindow.loadAround(messageId); }
+
+    public void loadAllMessages(Consumer<List<Message>> callback) {
+        messageWindow.loadAll(all -> new android.os.Handler(android.os.Looper.getMainLooper()).post(() -> callback.accept(all)));
+    }
+
     public LiveData<Scenario> getScenarioByIdLive(int id) {
         return scenarioRepository.getScenarioByIdLive(id);
     }
@@ -234,23 +270,23 @@ public class ConversationViewModel extends AndroidViewModel {
                 newConversation.setPersonaId(null);
             }
 
-            // Apply replacements
-            if (greetingText != null) {
-                greetingText = greetingText.replace("{{user}}", userName)
-                        .replace("{{character}}", characterName);
-            }
-
-            final String finalGreetingText = greetingText;
+            final String greetingSource = greetingText;
+            final String finalUserName = userName;
+            final String model = !TextUtils.isEmpty(character.getModel()) ? character.getModel() : user.getPreferredModel();
 
             conversationRepository.insert(newConversation, newId -> {
                 int id = newId.intValue();
 
                 conversationIdInput.postValue(id);
 
-                if (!TextUtils.isEmpty(finalGreetingText)) {
+                if (!TextUtils.isEmpty(greetingSource)) {
+                    PromptTemplate.Variables vars = new PromptTemplate.Variables(finalUserName, characterName, model,
+                            newConversation.getCreatedAt(), id);
+                    String renderedGreeting = PromptTemplate.render(greetingSource, vars);
                     executorService.execute(() -> {
-                        Message greeting = new Message("assistant", finalGreetingText, id);
-                        messageRepository.insertSync(greeting);
+                        Message greeting = new Message("assistant", renderedGreeting, id);
+                        greeting.setIndex((int) messageRepository.insertSync(greeting));
+                        memoryIndex.index(greeting);
                     });
                 }
 
@@ -280,30 +316,51 @@ public class ConversationViewModel extends AndroidViewModel {
     }
 
     public void regenerateResponse(Message messageToRegenerate, User user, Character character) {
+        stopGeneration();
         executorService.execute(() -> {
             if (messageToRegenerate != null) {
                 messageRepository.deleteSync(messageToRegenerate);
+                memoryIndex.remove(messageToRegenerate);
             }
             triggerApiCall("", messageToRegenerate.getConversationId(), user, character, true);
         });
     }
 
+    // Aborts the in-flight request. The stream task persists the partial reply
+    // with finish_reason "cancelled" and releases the executor right away.
+    public void stopGeneration() {
+        generationToken.incrementAndGet();
+        Call<ResponseBody> call = activeCall;
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    // Speculatively opens a pooled connection so the first send skips the handshake.
+    public void warmUpConnection() {
+        ConnectionWarmer.warmUp(getApplication());
+    }
+
     public void deleteMessage(Message message) {
         if (message != null) {
             messageRepository.delete(message);
+            executorService.execute(() -> memoryIndex.remove(message));
+            messageWindow.remove(message);
         }
     }
 
     public void update(Message message) {
+        message.setContent(PromptTemplate.freeze(message.getContent()));
         messageRepository.update(message);
+        memoryIndex.index(message);
     }
 
     public void getDebugConversationHistory(int conversationId, User user, Character character, Consumer<String> callback) {
         executorService.execute(() -> {
             Conversation conversation = conversationRepository.getConversationByIdSync(conversationId);
-            List<Message> messageHistory = messageRepository.getMessagesForConversationSync(conversationId);
+            if (conversation == null) return;
 
-            List<RequestMessage> requestMessages = chatPromptGenerator.buildApiRequestMessages(conversation, user, character, messageHistory);
+            List<RequestMessage> requestMessages = chatPromptGenerator.buildApiRequestMessages(conversation, user, character);
 
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
             String jsonOutput = gson.toJson(requestMessages);
@@ -317,20 +374,26 @@ public class ConversationViewModel extends AndroidViewModel {
     private void triggerApiCall(String content, int conversationId, User user, Character character, boolean isRegeneration) {
         if (user == null || character == null) return;
 
+        stopGeneration();
+        int token = generationToken.get();
+        messageWindow.showLatest();
+
         executorService.execute(() -> {
             isGenerating.postValue(true);
 
             try {
                 if (!isRegeneration) {
-                    Message userMessage = new Message("user", content, conversationId);
-                    messageRepository.insertSync(userMessage);
+                    Message userMessage = new Message("user", PromptTemplate.freeze(content), conversationId);
+                    userMessage.setIndex((int) messageRepository.insertSync(userMessage));
+                    memoryIndex.index(userMessage);
                     conversationRepository.updateLastUpdatedSync(conversationId, System.currentTimeMillis());
                 }
 
                 Conversation conversation = conversationRepository.getConversationByIdSync(conversationId);
-                List<Message> messageHistory = messageRepository.getMessagesForConversationSync(conversationId);
+                if (conversation == null) return;
 
-                List<RequestMessage> requestMessages = chatPromptGenerator.buildApiRequestMessages(conversation, user, character, messageHistory);
+                List<RequestMessage> requestMessages = chatPromptGenerator.buildApiRequestMessages(conversation, user, character);
+                Message oldestSent = chatPromptGenerator.getOldestSentMessage();
 
                 String model = !TextUtils.isEmpty(character.getModel()) ? character.getModel() : user.getPreferredModel();
                 if (TextUtils.isEmpty(model)) return;
@@ -361,20 +424,47 @@ public class ConversationViewModel extends AndroidViewModel {
                 );
 
                 Call<ResponseBody> call = apiService.getChatCompletionStream(apiKey, apiRequest);
+                if (token != generationToken.get()) return;
 
-                Message aiMessage = new Message("assistant", "", conversationId);
-                messageRepository.insertSync(aiMessage);
+                Message currentAiMessage = new Message("assistant", "", conversationId);
+                currentAiMessage.setIndex((int) messageRepository.insertSync(currentAiMessage));
+                int aiMessageId = currentAiMessage.getIndex();
 
-                List<Message> updatedHistory = messageRepository.getMessagesForConversationSync(conversationId);
-                Message currentAiMessage = updatedHistory.get(updatedHistory.size() - 1);
+                activeCall = call;
+                if (token != generationToken.get()) call.cancel();
 
+                GenerationTimer timer = new GenerationTimer();
                 try {
+                    timer.markRequestStart();
                     Response<ResponseBody> response = call.execute();
-                    ChatStreamHandler.handleStream(response, currentAiMessage, messageRepository, conversationRepository);
+                    // Tokens go to the bubble through memory; Room only sees periodic checkpoints.
+                    ChatStreamHandler.handleStream(response, currentAiMessage, messageRepository, conversationRepository,
+                            text -> streamingState.postValue(new StreamingState(aiMessageId, text, false)), timer);
+                    if (response.isSuccessful()) {
+                        summarizer.maybeSummarize(conversationId, user, character.getName(), oldestSent);
+                    }
                 } catch (IOException e) {
-                    currentAiMessage.setContent("Error: Stream interrupted. " + e.getMessage());
-                    messageRepository.updateSync(currentAiMessage);
+                    // Keep whatever the write-behind buffer already flushed.
+                    String partial = currentAiMessage.getContent();
+                    if (call.isCanceled()) {
+                        if (TextUtils.isEmpty(partial) || partial.trim().isEmpty()) {
+                            messageRepository.deleteSync(currentAiMessage);
+                        } else {
+                            currentAiMessage.setContent(partial.trim());
+                            currentAiMessage.setFinishReason("cancelled");
+                            messageRepository.updateSync(currentAiMessage);
+                        }
+                    } else {
+                        String error = "Error: Stream interrupted. " + e.getMessage();
+                        currentAiMessage.setContent(TextUtils.isEmpty(partial) ? error : partial + "\n\n" + error);
+                        messageRepository.updateSync(currentAiMessage);
+                    }
+                } finally {
+                    if (activeCall == call) activeCall = null;
                 }
+                streamingState.postValue(new StreamingState(aiMessageId, currentAiMessage.getContent(), true));
+                memoryIndex.index(currentAiMessage);
+                database.checkpointIfDue();
 
             } finally {
                 isGenerating.postValue(false);
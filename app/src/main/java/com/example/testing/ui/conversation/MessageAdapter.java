@@ -15,6 +15,7 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.constraintlayout.widget.ConstraintLayout;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.testing.R;
@@ -31,6 +32,7 @@ import org.commonmark.node.Emphasis;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageViewHolder> {
 
@@ -42,7 +44,8 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     private Markwon markwonCharacter;
 
     private OnMessageLongClickListener longClickListener;
-    private int editingPosition = -1;
+    // Tracked by id, since pages loaded above it shift its position
+    private int editingMessageId = -1;
     private OnMessageEditListener editListener;
 
     private int narrativeColor = Color.GRAY;
@@ -50,6 +53,12 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     private float bubbleWidth = 0.9f;
     private float lineSpacing = 1.0f;
 
+    private StreamingState streamingState;
+
+    // Message jumped to from search; its row is tinted until the next jump.
+    private int highlightedMessageId = -1;
+    private int highlightColor = Color.TRANSPARENT;
+
     public interface OnMessageEditListener {
         void onMessageEdited(Message message);
     }
@@ -74,14 +83,14 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     }
 
     public void setEditingPosition(int position) {
-        int oldPosition = this.editingPosition;
-        this.editingPosition = position;
+        int oldPosition = findPositionById(editingMessageId);
+        this.editingMessageId = position >= 0 && position < messages.size() ? messages.get(position).getIndex() : -1;
 
-        if (oldPosition != -1) {
+        if (oldPosition != RecyclerView.NO_POSITION) {
             notifyItemChanged(oldPosition);
         }
-        if (this.editingPosition != -1) {
-            notifyItemChanged(this.editingPosition);
+        if (this.editingMessageId != -1) {
+            notifyItemChanged(position);
         }
     }
 
@@ -148,8 +157,9 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         Message message = messages.get(position);
 
         holder.applyAppearance(bubbleWidth, lineSpacing, dialogueColor);
+        holder.itemView.setBackgroundColor(message.getIndex() == highlightedMessageId ? highlightColor : Color.TRANSPARENT);
 
-        if (position == editingPosition) {
+        if (editingMessageId != -1 && message.getIndex() == editingMessageId) {
             holder.showEditMode(message);
 
             holder.buttonSaveEdit.setOnClickListener(v -> {
@@ -167,7 +177,11 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
 
         } else {
             Markwon activeMarkwon = "user".equals(message.getRole()) ? markwonUser : markwonCharacter;
-            holder.showDisplayMode(message, activeMarkwon);
+            if (isStreaming(message)) {
+                holder.showDisplayText(streamingState.getText(), activeMarkwon);
+            } else {
+                holder.showDisplayMode(message, activeMarkwon);
+            }
         }
     }
 
@@ -176,27 +190,72 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         return messages.size();
     }
 
+    // Pages arrive as whole lists; diffing turns a page loaded above into an insertion the
+    // list can keep its scroll position across, and a checkpoint into a single-row change.
     public void setMessages(List<Message> newMessages) {
-        if (this.messages == null) {
-            this.messages = newMessages;
-            notifyDataSetChanged();
-            return;
-        }
+        List<Message> oldMessages = this.messages;
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldMessages.size();
+            }
 
-        if (this.messages.size() == newMessages.size() && !newMessages.isEmpty()) {
-            int lastIndex = newMessages.size() - 1;
-            Message oldLast = this.messages.get(lastIndex);
-            Message newLast = newMessages.get(lastIndex);
+            @Override
+            public int getNewListSize() {
+                return newMessages.size();
+            }
 
-            if (!oldLast.getContent().equals(newLast.getContent())) {
-                this.messages = newMessages;
-                notifyItemChanged(lastIndex);
-                return;
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldMessages.get(oldItemPosition).getIndex() == newMessages.get(newItemPosition).getIndex();
             }
-        }
 
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                Message oldMessage = oldMessages.get(oldItemPosition);
+                Message newMessage = newMessages.get(newItemPosition);
+                return oldMessage == newMessage || Objects.equals(oldMessage.getContent(), newMessage.getContent());
+            }
+        });
         this.messages = newMessages;
-        notifyDataSetChanged();
+        diff.dispatchUpdatesTo(this);
+    }
+
+    // Live text for the reply being generated; overrides whatever Room last checkpointed.
+    public void setStreamingState(StreamingState state) {
+        this.streamingState = state;
+        if (state == null) return;
+
+        int position = findPositionById(state.getMessageId());
+        if (position == RecyclerView.NO_POSITION) return;
+
+        if (state.isDone()) {
+            messages.get(position).setContent(state.getText());
+            this.streamingState = null;
+        }
+        notifyItemChanged(position);
+    }
+
+    public int highlightMessage(int messageId, int color) {
+        int previous = findPositionById(highlightedMessageId);
+        highlightedMessageId = messageId;
+        highlightColor = color;
+        if (previous != RecyclerView.NO_POSITION) notifyItemChanged(previous);
+        int position = findPositionById(messageId);
+        if (position != RecyclerView.NO_POSITION) notifyItemChanged(position);
+        return position;
+    }
+
+    private boolean isStreaming(Message message) {
+        return streamingState != null && !streamingState.isDone()
+                && message.getIndex() == streamingState.getMessageId();
+    }
+
+    private int findPositionById(int messageId) {
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if (messages.get(i).getIndex() == messageId) return i;
+        }
+        return RecyclerView.NO_POSITION;
     }
 
     class MessageViewHolder extends RecyclerView.ViewHolder {
@@ -240,7 +299,11 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         }
 
         public void showDisplayMode(Message message, Markwon markwon) {
-            String displayText = message.getContent();
+            showDisplayText(message.getContent(), markwon);
+        }
+
+        public void showDisplayText(String content, Markwon markwon) {
+            String displayText = content;
 
             if (displayText != null) {
                 displayText = displayText.replace("\\[", "$$").replace("\\]", "$$");
@@ -0,0 +1,209 @@
+package com.example.testing.ui.conversation;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.room.InvalidationTracker;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.repository.MessageRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// A contiguous slice of one conversation's messages, oldest first, grown a page at a time in
+// either direction and trimmed from the far end. Only the last page is live: while the slice
+// reaches the newest message, a change to chat_message re-reads that page and splices it onto
+// the older ones, which are never re-queried. Every load runs on one executor, so the slice is
+// only touched from that thread and published as a copy.
+class MessageWindow {
+
+    static final int PAGE_SIZE = 50;
+    private static final int MAX_MESSAGES = 300;
+
+    private final MessageRepository messageRepository;
+    private final AppDatabase database;
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final MutableLiveData<Slice> messages = new MutableLiveData<>();
+
+    private final AtomicBoolean reloadQueued = new AtomicBoolean(false);
+    // Scrolling asks for the next page on every frame near an edge; one request at a time
+    private final AtomicBoolean olderQueued = new AtomicBoolean(false);
+    private final AtomicBoolean newerQueued = new AtomicBoolean(false);
+    private final InvalidationTracker.Observer observer = new InvalidationTracker.Observer("chat_message") {
+        @Override
+        public void onInvalidated(@NonNull Set<String> tables) {
+            if (executorService.isShutdown()) return;
+            if (reloadQueued.compareAndSet(false, true)) {
+                executorService.execute(() -> {
+                    reloadQueued.set(false);
+                    reloadTail();
+                });
+            }
+        }
+    };
+    private boolean observing = false;
+
+    // Executor-confined
+    private int conversationId = -1;
+    private final List<Message> window = new ArrayList<>();
+    private boolean hasOlder = false;
+    private boolean hasNewer = false;
+
+    // What the list shows. atLatest tells a page of newer history apart from a new message.
+    static final class Slice {
+        static final Slice EMPTY = new Slice(new ArrayList<>(), true);
+
+        final List<Message> messages;
+        final boolean atLatest;
+
+        Slice(List<Message> messages, boolean atLatest) {
+            this.messages = messages;
+            this.atLatest = atLatest;
+        }
+    }
+
+    MessageWindow(MessageRepository messageRepository, AppDatabase database) {
+        this.messageRepository = messageRepository;
+        this.database = database;
+    }
+
+    LiveData<Slice> open(int conversationId) {
+        executorService.execute(() -> {
+            if (!observing) {
+                database.getInvalidationTracker().addObserver(observer);
+                observing = true;
+            }
+            this.conversationId = conversationId;
+            loadLatest();
+        });
+        return messages;
+    }
+
+    void close() {
+        executorService.execute(() -> {
+            if (observing) database.getInvalidationTracker().removeObserver(observer);
+            observing = false;
+        });
+        executorService.shutdown();
+    }
+
+    void loadOlder() {
+        if (!olderQueued.compareAndSet(false, true)) return;
+        executorService.execute(() -> {
+            olderQueued.set(false);
+            if (!hasOlder || window.isEmpty()) return;
+            List<Message> older = messageRepository.getMessagesBeforeSync(conversationId, window.get(0), PAGE_SIZE);
+            hasOlder = older.size() == PAGE_SIZE;
+            Collections.reverse(older);
+            window.addAll(0, older);
+            if (window.size() > MAX_MESSAGES) {
+                window.subList(MAX_MESSAGES, window.size()).clear();
+                hasNewer = true;
+            }
+            publish();
+        });
+    }
+
+    void loadNewer() {
+        if (!newerQueued.compareAndSet(false, true)) return;
+        executorService.execute(() -> {
+            newerQueued.set(false);
+            if (!hasNewer || window.isEmpty()) return;
+            List<Message> newer = messageRepository.getMessagesAfterSync(conversationId, window.get(window.size() - 1), PAGE_SIZE);
+            hasNewer = newer.size() == PAGE_SIZE;
+            window.addAll(newer);
+            if (window.size() > MAX_MESSAGES) {
+                window.subList(0, window.size() - MAX_MESSAGES).clear();
+                hasOlder = true;
+            }
+            publish();
+        });
+    }
+
+    // Replaces the slice with one centred on the message, e.g. a search hit outside it.
+    void loadAround(int messageId) {
+        executorService.execute(() -> {
+            List<Message> found = messageRepository.getMessagesByIdsSync(Collections.singletonList(messageId));
+            if (found.isEmpty() || found.get(0).getConversationId() != conversationId) return;
+            Message target = found.get(0);
+
+            List<Message> older = messageRepository.getMessagesBeforeSync(conversationId, target, PAGE_SIZE / 2);
+            List<Message> newer = messageRepository.getMessagesAfterSync(conversationId, target, PAGE_SIZE / 2);
+            Collections.reverse(older);
+
+            window.clear();
+            window.addAll(older);
+            window.add(target);
+            window.addAll(newer);
+            hasOlder = older.size() == PAGE_SIZE / 2;
+            hasNewer = newer.size() == PAGE_SIZE / 2;
+            publish();
+        });
+    }
+
+    // Brings the slice back to the end of the conversation if it has been moved away from it.
+    void showLatest() {
+        executorService.execute(() -> {
+            if (hasNewer) loadLatest();
+        });
+    }
+
+    void remove(Message message) {
+        executorService.execute(() -> {
+            for (int i = 0; i < window.size(); i++) {
+                if (window.get(i).getIndex() == message.getIndex()) {
+                    window.remove(i);
+                    publish();
+                    return;
+                }
+            }
+        });
+    }
+
+    // Every message of the conversation, for the rare caller that really needs them all.
+    void loadAll(Consumer<List<Message>> callback) {
+        executorService.execute(() -> callback.accept(messageRepository.getMessagesForConversationSync(conversationId)));
+    }
+
+    private void loadLatest() {
+        List<Message> latest = messageRepository.getRecentMessagesSync(conversationId, PAGE_SIZE);
+        Collections.reverse(latest);
+        window.clear();
+        window.addAll(latest);
+        hasOlder = latest.size() == PAGE_SIZE;
+        hasNewer = false;
+        publish();
+    }
+
+    private void reloadTail() {
+        if (conversationId == -1 || hasNewer) return;
+        if (window.isEmpty()) {
+            loadLatest();
+            return;
+        }
+
+        // Everything from the start of the last page onwards, including messages added since
+        int tailStart = Math.max(0, window.size() - PAGE_SIZE);
+        List<Message> tail = messageRepository.getMessagesFromSync(conversationId, window.get(tailStart), MAX_MESSAGES);
+        window.subList(tailStart, window.size()).clear();
+        window.addAll(tail);
+        hasNewer = tail.size() == MAX_MESSAGES;
+        if (window.size() > MAX_MESSAGES) {
+            window.subList(0, window.size() - MAX_MESSAGES).clear();
+            hasOlder = true;
+        }
+        publish();
+    }
+
+    private void publish() {
+        messages.postValue(new Slice(new ArrayList<>(window), !hasNewer));
+    }
+}
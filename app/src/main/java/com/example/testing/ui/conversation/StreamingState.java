@@ -0,0 +1,20 @@
+package com.example.testing.ui.conversation;
+
+// Snapshot of the reply currently being streamed. Delivered straight from the
+// network thread to the in-flight bubble so the UI doesn't wait on Room.
+public class StreamingState {
+
+    private final int messageId;
+    private final String text;
+    private final boolean done;
+
+    public StreamingState(int messageId, String text, boolean done) {
+        this.messageId = messageId;
+        this.text = text;
+        this.done = done;
+    }
+
+    public int getMessageId() { return messageId; }
+    public String getText() { return text; }
+    public boolean isDone() { return done; }
+}
@@ -8,7 +8,6 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.Button;
 import android.widget.LinearLayout;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
@@ -19,9 +18,12 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.example.testing.ui.base.BaseActivity;
 import com.example.testing.R;
 import com.example.testing.ui.conversation.ConversationActivity;
+import com.google.android.material.snackbar.Snackbar;
 
 import java.util.List;
 
+import kotlin.Unit;
+
 public class ConversationHistoryActivity extends BaseActivity {
 
     private RecyclerView recyclerView;
@@ -54,11 +56,13 @@ public class ConversationHistoryActivity extends BaseActivity {
 
         viewModel = new ViewModelProvider(this).get(ConversationHistoryViewModel.class);
 
-        viewModel.getAllConversations().observe(this, conversationWithCharacters -> {
-            adapter.setConversations(conversationWithCharacters);
-            if (adapter.isDeleteMode() && conversationWithCharacters.isEmpty()) {
+        viewModel.getConversations().observe(this, pagingData -> adapter.submitData(getLifecycle(), pagingData));
+
+        adapter.addOnPagesUpdatedListener(() -> {
+            if (adapter.isDeleteMode() && adapter.getItemCount() == 0) {
                 toggleDeleteMode(false);
             }
+            return Unit.INSTANCE;
         });
 
         adapter.setOnItemClickListener(conversation -> {
@@ -78,7 +82,7 @@ public class ConversationHistoryActivity extends BaseActivity {
             }
         });
 
-        buttonSelectAll.setOnClickListener(v -> adapter.toggleSelectAll());
+        buttonSelectAll.setOnClickListener(v -> viewModel.loadAllConversationIds(adapter::toggleSelectAll));
 
         buttonDeleteSelected.setOnClickListener(v -> {
             List<Integer> selected = adapter.getSelectedIds();
@@ -121,11 +125,14 @@ public class ConversationHistoryActivity extends BaseActivity {
         int count = selectedIds.size();
         new AlertDialog.Builder(this)
                 .setTitle("Delete Conversations")
-                .setMessage("Are you sure you want to delete " + count + " conversation(s)? This cannot be undone.")
+                .setMessage("Are you sure you want to delete " + count + " conversation(s)?")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     viewModel.deleteConversations(selectedIds);
-                    Toast.makeText(this, "Deleted " + count + " conversations", Toast.LENGTH_SHORT).show();
                     toggleDeleteMode(false);
+                    // The rows are only tombstoned until the purge, so undo is a single update
+                    Snackbar.make(recyclerView, "Deleted " + count + " conversation(s)", Snackbar.LENGTH_LONG)
+                            .setAction("Undo", undo -> viewModel.restoreConversations(selectedIds))
+                            .show();
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
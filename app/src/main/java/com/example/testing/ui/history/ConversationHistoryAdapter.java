@@ -6,6 +6,8 @@ import android.view.ViewGroup;
 import android.widget.CheckBox;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.paging.PagingDataAdapter;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.testing.data.local.entity.Conversation;
@@ -18,11 +20,11 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.Set;
 
-public class ConversationHistoryAdapter extends RecyclerView.Adapter<ConversationHistoryAdapter.ConversationViewHolder> {
+public class ConversationHistoryAdapter extends PagingDataAdapter<ConversationWithCharacter, ConversationHistoryAdapter.ConversationViewHolder> {
 
-    private List<ConversationWithCharacter> conversations = new ArrayList<>();
     private OnItemClickListener listener;
 
     // --- Selection Fields ---
@@ -34,6 +36,26 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
         void onSelectionChanged(int count);
     }
 
+    public ConversationHistoryAdapter() {
+        super(DIFF_CALLBACK);
+    }
+
+    private static final DiffUtil.ItemCallback<ConversationWithCharacter> DIFF_CALLBACK = new DiffUtil.ItemCallback<ConversationWithCharacter>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ConversationWithCharacter oldItem, @NonNull ConversationWithCharacter newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ConversationWithCharacter oldItem, @NonNull ConversationWithCharacter newItem) {
+            return oldItem.getLastUpdated() == newItem.getLastUpdated()
+                    && oldItem.getMessageCount() == newItem.getMessageCount()
+                    && Objects.equals(oldItem.getLastMessagePreview(), newItem.getLastMessagePreview())
+                    && Objects.equals(oldItem.characterName, newItem.characterName)
+                    && Objects.equals(oldItem.getConversationName(), newItem.getConversationName());
+        }
+    };
+
     public void setOnSelectionChangedListener(OnSelectionChangedListener listener) {
         this.selectionListener = listener;
     }
@@ -48,7 +70,16 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
 
     @Override
     public void onBindViewHolder(@NonNull ConversationViewHolder holder, int position) {
-        ConversationWithCharacter currentItem = conversations.get(position);
+        ConversationWithCharacter currentItem = getItem(position);
+        if (currentItem == null) {
+            // Placeholder for a row that hasn't been loaded yet
+            holder.textViewCharacterName.setText("");
+            holder.textViewTitle.setText("");
+            holder.textViewLastMessage.setVisibility(View.GONE);
+            holder.textViewTimestamp.setText("");
+            holder.checkBox.setVisibility(View.GONE);
+            return;
+        }
 
         holder.textViewCharacterName.setText(currentItem.characterName);
 
@@ -59,13 +90,22 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
             holder.textViewTitle.setText(title);
         }
 
+        String preview = currentItem.getLastMessagePreview();
+        if (preview == null || preview.trim().isEmpty()) {
+            holder.textViewLastMessage.setVisibility(View.GONE);
+        } else {
+            String speaker = "user".equals(currentItem.conversation.getLastRole()) ? "You: " : "";
+            holder.textViewLastMessage.setText(speaker + preview.trim().replace('\n', ' '));
+            holder.textViewLastMessage.setVisibility(View.VISIBLE);
+        }
+
         Date date = new Date(currentItem.conversation.getLastUpdated());
         SimpleDateFormat formatter = new SimpleDateFormat("MMM dd, yyyy h:mm a", Locale.getDefault());
         String formattedDate = formatter.format(date);
 
         // --- UPDATED FORMATTING ---
         // Format: <Timestamp> | (<Total Messages>)
-        String infoText = formattedDate + " | (" + currentItem.messageCount + " messages)";
+        String infoText = formattedDate + " | (" + currentItem.getMessageCount() + " messages)";
         holder.textViewTimestamp.setText(infoText);
         // --------------------------
 
@@ -78,16 +118,6 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return conversations.size();
-    }
-
-    public void setConversations(List<ConversationWithCharacter> conversations) {
-        this.conversations = conversations;
-        notifyDataSetChanged();
-    }
-
     public void setDeleteMode(boolean enabled) {
         this.isDeleteMode = enabled;
         this.selectedIds.clear();
@@ -99,13 +129,12 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
         return isDeleteMode;
     }
 
-    public void toggleSelectAll() {
-        if (selectedIds.size() == conversations.size()) {
+    // Takes every conversation id, not just the loaded pages
+    public void toggleSelectAll(List<Integer> allIds) {
+        if (selectedIds.containsAll(allIds)) {
             selectedIds.clear();
         } else {
-            for (ConversationWithCharacter c : conversations) {
-                selectedIds.add(c.conversation.getId());
-            }
+            selectedIds.addAll(allIds);
         }
         notifyDataSetChanged();
         if (selectionListener != null) selectionListener.onSelectionChanged(selectedIds.size());
@@ -118,6 +147,7 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
     class ConversationViewHolder extends RecyclerView.ViewHolder {
         private final TextView textViewCharacterName;
         private final TextView textViewTitle;
+        private final TextView textViewLastMessage;
         private final TextView textViewTimestamp;
         private final CheckBox checkBox;
 
@@ -125,14 +155,16 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
             super(itemView);
             textViewCharacterName = itemView.findViewById(R.id.text_view_character_name);
             textViewTitle = itemView.findViewById(R.id.text_view_conversation_title);
+            textViewLastMessage = itemView.findViewById(R.id.text_view_last_message);
             textViewTimestamp = itemView.findViewById(R.id.text_view_timestamp);
             checkBox = itemView.findViewById(R.id.checkbox_select);
 
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION) {
+                ConversationWithCharacter item = position != RecyclerView.NO_POSITION ? getItem(position) : null;
+                if (item != null) {
                     if (isDeleteMode) {
-                        int id = conversations.get(position).conversation.getId();
+                        int id = item.conversation.getId();
                         if (selectedIds.contains(id)) {
                             selectedIds.remove(id);
                         } else {
@@ -142,7 +174,7 @@ public class ConversationHistoryAdapter extends RecyclerView.Adapter<Conversatio
                         if (selectionListener != null) selectionListener.onSelectionChanged(selectedIds.size());
                     } else {
                         if (listener != null) {
-                            listener.onItemClick(conversations.get(position).conversation);
+                            listener.onItemClick(item.conversation);
                         }
                     }
                 }
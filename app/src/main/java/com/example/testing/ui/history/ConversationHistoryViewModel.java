@@ -4,7 +4,13 @@ import android.app.Application;
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.ViewModelKt;
+import androidx.paging.Pager;
+import androidx.paging.PagingConfig;
+import androidx.paging.PagingData;
+import androidx.paging.PagingLiveData;
 
+import com.example.testing.data.repository.ConversationPagingSource;
 import com.example.testing.data.repository.ConversationRepository;
 import com.example.testing.data.local.entity.relations.ConversationWithCharacter;
 
@@ -12,20 +18,37 @@ import java.util.List;
 
 public class ConversationHistoryViewModel extends AndroidViewModel {
 
+    private static final int PAGE_SIZE = 30;
+    private static final int PREFETCH_DISTANCE = 15;
+    // Pages far from the viewport are dropped back to placeholders
+    private static final int MAX_LOADED_ITEMS = 200;
+
     private final ConversationRepository repository;
-    private final LiveData<List<ConversationWithCharacter>> conversations;
+    private final LiveData<PagingData<ConversationWithCharacter>> conversations;
 
     public ConversationHistoryViewModel(@NonNull Application application) {
         super(application);
         repository = ConversationRepository.getInstance(application);
-        conversations = repository.getAllConversationsWithCharacter();
+
+        PagingConfig config = new PagingConfig(PAGE_SIZE, PREFETCH_DISTANCE, true, PAGE_SIZE * 2, MAX_LOADED_ITEMS);
+        Pager<ConversationPagingSource.Key, ConversationWithCharacter> pager =
+                new Pager<>(config, repository::createConversationPagingSource);
+        conversations = PagingLiveData.cachedIn(PagingLiveData.getLiveData(pager), ViewModelKt.getViewModelScope(this));
     }
 
-    public LiveData<List<ConversationWithCharacter>> getAllConversations() {
+    public LiveData<PagingData<ConversationWithCharacter>> getConversations() {
         return conversations;
     }
 
+    public void loadAllConversationIds(ConversationRepository.DataCallback<List<Integer>> callback) {
+        repository.loadAllConversationIds(callback);
+    }
+
     public void deleteConversations(List<Integer> conversationIds) {
         repository.deleteConversations(conversationIds);
     }
-}
\ No newline at end of file
+
+    public void restoreConversations(List<Integer> conversationIds) {
+        repository.restoreConversations(conversationIds);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.testing.ui.lorebook;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageButton;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+import com.example.testing.R;
+import com.example.testing.data.local.entity.LorebookEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LorebookAdapter extends RecyclerView.Adapter<LorebookAdapter.LorebookViewHolder> {
+
+    private List<LorebookEntry> entries = new ArrayList<>();
+    private OnLorebookActionListener listener;
+
+    public interface OnLorebookActionListener {
+        void onEdit(LorebookEntry entry);
+        void onDelete(LorebookEntry entry);
+    }
+
+    public void setOnLorebookActionListener(OnLorebookActionListener listener) {
+        this.listener = listener;
+    }
+
+    public void setEntries(List<LorebookEntry> entries) {
+        this.entries = entries != null ? entries : new ArrayList<>();
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public LorebookViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_lorebook_entry, parent, false);
+        return new LorebookViewHolder(v);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull LorebookViewHolder holder, int position) {
+        holder.bind(entries.get(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return entries.size();
+    }
+
+    class LorebookViewHolder extends RecyclerView.ViewHolder {
+        TextView textViewKeywords;
+        TextView textViewContent;
+        ImageButton buttonEdit;
+        ImageButton buttonDelete;
+
+        public LorebookViewHolder(@NonNull View itemView) {
+            super(itemView);
+            textViewKeywords = itemView.findViewById(R.id.text_view_lorebook_keywords);
+            textViewContent = itemView.findViewById(R.id.text_view_lorebook_content);
+            buttonEdit = itemView.findViewById(R.id.button_edit_lorebook_entry);
+            buttonDelete = itemView.findViewById(R.id.button_delete_lorebook_entry);
+
+            buttonEdit.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onEdit(entries.get(position));
+                }
+            });
+
+            buttonDelete.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onDelete(entries.get(position));
+                }
+            });
+        }
+
+        public void bind(LorebookEntry entry) {
+            textViewKeywords.setText(entry.getKeywords());
+            textViewContent.setText(entry.getContent());
+            itemView.setAlpha(entry.isEnabled() ? 1f : 0.5f);
+        }
+    }
+}
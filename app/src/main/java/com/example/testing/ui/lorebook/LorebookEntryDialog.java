@@ -0,0 +1,62 @@
+package com.example.testing.ui.lorebook;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.CheckBox;
+import android.widget.EditText;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AlertDialog;
+
+import com.example.testing.R;
+import com.example.testing.data.local.entity.LorebookEntry;
+
+public final class LorebookEntryDialog {
+
+    public interface OnSaveListener {
+        void onSave(LorebookEntry entry, boolean isNew);
+    }
+
+    private LorebookEntryDialog() {
+    }
+
+    // Pass null to create a new entry owned by the given character or scenario.
+    public static void show(Context context, LorebookEntry existing, Integer characterId, Integer scenarioId, OnSaveListener listener) {
+        View view = LayoutInflater.from(context).inflate(R.layout.dialog_lorebook_entry, null);
+        EditText editKeywords = view.findViewById(R.id.edit_lorebook_keywords);
+        EditText editContent = view.findViewById(R.id.edit_lorebook_content);
+        CheckBox checkEnabled = view.findViewById(R.id.check_lorebook_enabled);
+
+        if (existing != null) {
+            editKeywords.setText(existing.getKeywords());
+            editContent.setText(existing.getContent());
+            checkEnabled.setChecked(existing.isEnabled());
+        }
+
+        AlertDialog dialog = new AlertDialog.Builder(context)
+                .setTitle(existing != null ? R.string.edit_lorebook_entry : R.string.add_lorebook_entry)
+                .setView(view)
+                .setPositiveButton("Save", null)
+                .setNegativeButton("Cancel", null)
+                .create();
+
+        dialog.setOnShowListener(d -> dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            String keywords = editKeywords.getText().toString().trim();
+            String content = editContent.getText().toString().trim();
+            if (TextUtils.isEmpty(keywords) || TextUtils.isEmpty(content)) {
+                Toast.makeText(context, "Keywords and content are required", Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            LorebookEntry entry = existing != null ? existing : new LorebookEntry(characterId, scenarioId, keywords, content);
+            entry.setKeywords(keywords);
+            entry.setContent(content);
+            entry.setEnabled(checkEnabled.isChecked());
+            listener.onSave(entry, existing == null);
+            dialog.dismiss();
+        }));
+        dialog.show();
+    }
+}
@@ -2,6 +2,8 @@ package com.example.testing.ui.main;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -16,6 +18,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.testing.ui.base.BaseActivity;
+import com.example.testing.data.local.entity.Tag;
 import com.example.testing.data.repository.ModelRepository;
 import com.example.testing.R;
 import com.example.testing.ui.base.ThemeUtils;
@@ -25,6 +28,7 @@ import com.example.testing.ui.character.CharacterViewModel;
 import com.example.testing.utils.TagViewManager;
 import com.example.testing.ui.conversation.ConversationActivity;
 import com.example.testing.ui.history.ConversationHistoryActivity;
+import com.example.testing.ui.search.SearchActivity;
 import com.example.testing.utils.ChatStartFlowHelper;
 import com.example.testing.ui.settings.SettingsActivity;
 import com.example.testing.ui.settings.SettingsViewModel;
@@ -32,10 +36,14 @@ import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public class MainActivity extends BaseActivity {
 
+    private static final long SEARCH_DELAY_MS = 120;
+
     private CharacterViewModel characterViewModel;
     private SettingsViewModel settingsViewModel;
     private FloatingActionButton fab;
@@ -45,6 +53,10 @@ public class MainActivity extends BaseActivity {
     private CharacterAdapter adapter;
     private ChatStartFlowHelper chatStartFlowHelper;
 
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private String pendingQuery = "";
+    private final Runnable runSearch = () -> characterViewModel.setSearchQuery(pendingQuery);
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -54,16 +66,14 @@ public class MainActivity extends BaseActivity {
         settingsViewModel = new ViewModelProvider(this).get(SettingsViewModel.class);
         chatStartFlowHelper = new ChatStartFlowHelper(this, this, characterViewModel);
 
-        // Check/Update Models
-        if (!ModelRepository.getInstance().isModelsCached()) {
-            ModelRepository.getInstance().refreshModels(isSuccess -> {
-                runOnUiThread(() -> {
-                    if (isSuccess) {
-                        Toast.makeText(MainActivity.this, "Models updated successfully", Toast.LENGTH_SHORT).show();
-                    }
-                });
+        // Check/Update Models (cached catalog is used meanwhile; callback only fires on a change)
+        ModelRepository.getInstance(getApplication()).revalidateIfStale(isSuccess -> {
+            runOnUiThread(() -> {
+                if (isSuccess) {
+                    Toast.makeText(MainActivity.this, "Models updated successfully", Toast.LENGTH_SHORT).show();
+                }
             });
-        }
+        });
 
         initViews();
         setupRecyclerView();
@@ -90,7 +100,14 @@ public class MainActivity extends BaseActivity {
 
             @Override
             public boolean onQueryTextChange(String newText) {
-                characterViewModel.setSearchQuery(newText);
+                pendingQuery = newText;
+                handler.removeCallbacks(runSearch);
+                // Clearing the box shows the full list straight away
+                if (newText.trim().isEmpty()) {
+                    runSearch.run();
+                } else {
+                    handler.postDelayed(runSearch, SEARCH_DELAY_MS);
+                }
                 return true;
             }
         });
@@ -169,23 +186,28 @@ public class MainActivity extends BaseActivity {
         }
     }
 
-    private void populateTagChips(List<String> tags) {
-        String currentSelection = characterViewModel.getCurrentTagFilter();
+    private void populateTagChips(List<Tag> tags) {
+        List<String> names = new ArrayList<>();
+        for (Tag tag : tags) names.add(tag.getName());
+        characterViewModel.retainSelectedTags(names);
+        Set<String> selected = characterViewModel.getSelectedTags();
         chipGroupTags.removeAllViews();
 
-        for (String tag : tags) {
-            boolean isSelected = tag.equals(currentSelection);
-
-            Chip chip = TagViewManager.createFilterChip(this, tag, isSelected, (buttonView, isChecked) -> {
-                if (isChecked) {
-                    characterViewModel.setTagFilter(tag);
-                } else {
-                    if (tag.equals(characterViewModel.getCurrentTagFilter())) {
-                        characterViewModel.setTagFilter("");
-                    }
-                }
-            });
+        // Any/all only means something once more than one tag can be picked
+        if (tags.size() > 1) {
+            Chip matchAllChip = new Chip(this);
+            matchAllChip.setText(R.string.tag_filter_match_all);
+            matchAllChip.setCheckable(true);
+            matchAllChip.setChecked(characterViewModel.isMatchingAllTags());
+            matchAllChip.setOnCheckedChangeListener((buttonView, isChecked) -> characterViewModel.setMatchAllTags(isChecked));
+            chipGroupTags.addView(matchAllChip);
+        }
 
+        for (Tag tag : tags) {
+            String name = tag.getName();
+            String label = getString(R.string.tag_chip_label, name, tag.getUsageCount());
+            Chip chip = TagViewManager.createFilterChip(this, name, label, selected.contains(name),
+                    (buttonView, isChecked) -> characterViewModel.setTagSelected(name, isChecked));
             chipGroupTags.addView(chip);
         }
     }
@@ -213,6 +235,9 @@ public class MainActivity extends BaseActivity {
         } else if (itemId == R.id.action_history) {
             startActivity(new Intent(this, ConversationHistoryActivity.class));
             return true;
+        } else if (itemId == R.id.action_search) {
+            startActivity(new Intent(this, SearchActivity.class));
+            return true;
         } else if (itemId == R.id.action_hidden_bots) {
             boolean currentlyHidden = characterViewModel.isShowingHidden();
             characterViewModel.setShowHidden(!currentlyHidden);
@@ -223,4 +248,10 @@ public class MainActivity extends BaseActivity {
         }
         return super.onOptionsItemSelected(item);
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacks(runSearch);
+        super.onDestroy();
+    }
+}
@@ -5,26 +5,34 @@ import android.content.res.ColorStateList;
 import android.net.Uri;
 import android.os.Bundle;
 import android.util.TypedValue;
+import android.view.View;
 import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.EditText;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.PickVisualMediaRequest;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.canhub.cropper.CropImageContract;
 import com.canhub.cropper.CropImageContractOptions;
 import com.canhub.cropper.CropImageOptions;
 import com.example.testing.R;
+import com.example.testing.data.local.entity.LorebookEntry;
 import com.example.testing.data.local.entity.Scenario;
 import com.example.testing.ui.base.ThemeUtils;
 import com.example.testing.ui.character.CharacterViewModel;
+import com.example.testing.ui.lorebook.LorebookAdapter;
+import com.example.testing.ui.lorebook.LorebookEntryDialog;
 import com.google.android.material.button.MaterialButton;
 
 import java.io.File;
@@ -45,6 +53,8 @@ public class AddEditScenarioActivity extends AppCompatActivity {
     private EditText editTextFirstMessage;
     private CheckBox checkBoxDefault;
     private MaterialButton buttonSave;
+    private LinearLayout layoutLorebookContainer;
+    private LorebookAdapter lorebookAdapter;
 
     private CharacterViewModel characterViewModel;
     private int characterId = -1;
@@ -97,6 +107,16 @@ public class AddEditScenarioActivity extends AppCompatActivity {
         buttonSave.setStrokeColor(ColorStateList.valueOf(secondaryColor));
         buttonSave.setStrokeWidth((int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 1, getResources().getDisplayMetrics()));
 
+        layoutLorebookContainer = findViewById(R.id.layout_scenario_lorebook_container);
+        MaterialButton buttonAddLorebookEntry = findViewById(R.id.button_add_scenario_lorebook_entry);
+        buttonAddLorebookEntry.setTextColor(secondaryColor);
+        buttonAddLorebookEntry.setStrokeColor(ColorStateList.valueOf(secondaryColor));
+        buttonAddLorebookEntry.setStrokeWidth((int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 1, getResources().getDisplayMetrics()));
+        RecyclerView recyclerViewLorebook = findViewById(R.id.recycler_view_scenario_lorebook);
+        recyclerViewLorebook.setLayoutManager(new LinearLayoutManager(this));
+        lorebookAdapter = new LorebookAdapter();
+        recyclerViewLorebook.setAdapter(lorebookAdapter);
+
         characterViewModel = new ViewModelProvider(this).get(CharacterViewModel.class);
 
         if (getSupportActionBar() != null) {
@@ -125,6 +145,7 @@ public class AddEditScenarioActivity extends AppCompatActivity {
                 if (currentScenarioImagePath != null && !currentScenarioImagePath.isEmpty()) {
                     Glide.with(this).load(currentScenarioImagePath).into(imageViewScenarioPreview);
                 }
+                setupLorebook(buttonAddLorebookEntry);
             }
         } else {
             setTitle("Add Scenario");
@@ -139,6 +160,35 @@ public class AddEditScenarioActivity extends AppCompatActivity {
         buttonSave.setOnClickListener(v -> saveScenario());
     }
 
+    // Only saved scenarios have an id for entries to hang off, so the section stays hidden when adding.
+    private void setupLorebook(MaterialButton buttonAddLorebookEntry) {
+        int scenarioId = editingScenario.getId();
+        layoutLorebookContainer.setVisibility(View.VISIBLE);
+
+        lorebookAdapter.setOnLorebookActionListener(new LorebookAdapter.OnLorebookActionListener() {
+            @Override
+            public void onEdit(LorebookEntry entry) {
+                LorebookEntryDialog.show(AddEditScenarioActivity.this, entry, characterId, scenarioId,
+                        characterViewModel::saveLorebookEntry);
+            }
+
+            @Override
+            public void onDelete(LorebookEntry entry) {
+                new AlertDialog.Builder(AddEditScenarioActivity.this)
+                        .setTitle(R.string.delete_lorebook_entry)
+                        .setMessage("Are you sure you want to delete this entry?")
+                        .setPositiveButton("Yes", (dialog, which) -> characterViewModel.deleteLorebookEntry(entry))
+                        .setNegativeButton("No", null)
+                        .show();
+            }
+        });
+
+        buttonAddLorebookEntry.setOnClickListener(v -> LorebookEntryDialog.show(this, null, characterId, scenarioId,
+                characterViewModel::saveLorebookEntry));
+
+        characterViewModel.getLorebookForScenario(scenarioId).observe(this, entries -> lorebookAdapter.setEntries(entries));
+    }
+
     private void saveImageToInternalStorage(Uri uri) {
         try {
             InputStream inputStream = getContentResolver().openInputStream(uri);
@@ -0,0 +1,136 @@
+package com.example.testing.ui.search;
+
+import android.content.Intent;
+import android.graphics.Color;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.MenuItem;
+import android.view.View;
+import android.view.inputmethod.EditorInfo;
+import android.widget.EditText;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.testing.R;
+import com.example.testing.ui.base.BaseActivity;
+import com.example.testing.ui.base.ThemeUtils;
+import com.example.testing.ui.conversation.ConversationActivity;
+
+// Full-text search over message content. With a CONVERSATION_ID extra it becomes
+// find-in-conversation and hands the picked MESSAGE_ID back instead of opening a chat.
+public class SearchActivity extends BaseActivity {
+
+    public static final String EXTRA_CONVERSATION_ID = "CONVERSATION_ID";
+    public static final String EXTRA_MESSAGE_ID = "MESSAGE_ID";
+
+    private static final long SEARCH_DELAY_MS = 300;
+    // Start fetching the next page when this close to the end of the list
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private SearchViewModel viewModel;
+    private SearchResultAdapter adapter;
+    private TextView textViewStatus;
+    private int conversationId = -1;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private String pendingQuery = "";
+    private final Runnable runSearch = () -> viewModel.search(pendingQuery, conversationId);
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_search);
+
+        conversationId = getIntent().getIntExtra(EXTRA_CONVERSATION_ID, -1);
+        setTitle(conversationId == -1 ? R.string.search_messages : R.string.find_in_conversation);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+        }
+
+        EditText editTextSearch = findViewById(R.id.edit_text_search);
+        textViewStatus = findViewById(R.id.text_view_search_status);
+        RecyclerView recyclerView = findViewById(R.id.recycler_view_search_results);
+
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        int secondaryColor = ThemeUtils.getSecondaryColor(this);
+        adapter = new SearchResultAdapter(Color.argb(96, Color.red(secondaryColor), Color.green(secondaryColor), Color.blue(secondaryColor)));
+        recyclerView.setAdapter(adapter);
+
+        viewModel = new ViewModelProvider(this).get(SearchViewModel.class);
+        viewModel.getResults().observe(this, hits -> adapter.setHits(hits));
+        viewModel.getMatchCount().observe(this, count -> {
+            if (pendingQuery.trim().isEmpty()) {
+                textViewStatus.setVisibility(View.GONE);
+            } else {
+                textViewStatus.setVisibility(View.VISIBLE);
+                textViewStatus.setText(count == 0 ? getString(R.string.search_no_results)
+                        : getResources().getQuantityString(R.plurals.search_result_count, count, count));
+            }
+        });
+
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    viewModel.loadMore();
+                }
+            }
+        });
+
+        adapter.setOnResultClickListener(hit -> {
+            if (conversationId != -1) {
+                Intent result = new Intent();
+                result.putExtra(EXTRA_MESSAGE_ID, hit.messageId);
+                setResult(RESULT_OK, result);
+                finish();
+            } else {
+                Intent intent = new Intent(this, ConversationActivity.class);
+                intent.putExtra("CHARACTER_ID", hit.characterId);
+                intent.putExtra("CONVERSATION_ID", hit.conversationId);
+                intent.putExtra(EXTRA_MESSAGE_ID, hit.messageId);
+                startActivity(intent);
+            }
+        });
+
+        editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) {}
+            @Override public void afterTextChanged(Editable s) {
+                pendingQuery = s.toString();
+                handler.removeCallbacks(runSearch);
+                handler.postDelayed(runSearch, SEARCH_DELAY_MS);
+            }
+        });
+        editTextSearch.setOnEditorActionListener((v, actionId, event) -> {
+            if (actionId == EditorInfo.IME_ACTION_SEARCH) {
+                handler.removeCallbacks(runSearch);
+                runSearch.run();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacks(runSearch);
+        super.onDestroy();
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+}
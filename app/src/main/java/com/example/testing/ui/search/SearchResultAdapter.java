@@ -0,0 +1,110 @@
+package com.example.testing.ui.search;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.testing.R;
+import com.example.testing.data.local.entity.relations.MessageSearchHit;
+import com.example.testing.data.repository.SearchRepository;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+public class SearchResultAdapter extends RecyclerView.Adapter<SearchResultAdapter.SearchResultViewHolder> {
+
+    private List<MessageSearchHit> hits = new ArrayList<>();
+    private OnResultClickListener listener;
+    private final int highlightColor;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd, yyyy h:mm a", Locale.getDefault());
+
+    public interface OnResultClickListener {
+        void onResultClick(MessageSearchHit hit);
+    }
+
+    public SearchResultAdapter(int highlightColor) {
+        this.highlightColor = highlightColor;
+    }
+
+    public void setOnResultClickListener(OnResultClickListener listener) {
+        this.listener = listener;
+    }
+
+    public void setHits(List<MessageSearchHit> hits) {
+        this.hits = hits != null ? hits : new ArrayList<>();
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public SearchResultViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View v = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_search_result, parent, false);
+        return new SearchResultViewHolder(v);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull SearchResultViewHolder holder, int position) {
+        MessageSearchHit hit = hits.get(position);
+        String speaker = "assistant".equals(hit.role) ? hit.characterName : "You";
+        holder.textViewSource.setText(hit.characterName + " · " + (hit.conversationTitle != null ? hit.conversationTitle : "New Chat"));
+        holder.textViewSnippet.setText(highlight(speaker + ": " + hit.snippet));
+        holder.textViewTimestamp.setText(dateFormat.format(new Date(hit.timestamp)));
+    }
+
+    @Override
+    public int getItemCount() {
+        return hits.size();
+    }
+
+    // Turns the snippet's highlight markers into bold, tinted spans.
+    private CharSequence highlight(String snippet) {
+        SpannableStringBuilder out = new SpannableStringBuilder();
+        int start = -1;
+        for (int i = 0; i < snippet.length(); i++) {
+            char c = snippet.charAt(i);
+            if (c == SearchRepository.HIGHLIGHT_START.charAt(0)) {
+                start = out.length();
+            } else if (c == SearchRepository.HIGHLIGHT_END.charAt(0)) {
+                if (start >= 0 && start < out.length()) {
+                    out.setSpan(new StyleSpan(Typeface.BOLD), start, out.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                    out.setSpan(new BackgroundColorSpan(highlightColor), start, out.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                }
+                start = -1;
+            } else {
+                out.append(c);
+            }
+        }
+        return out;
+    }
+
+    class SearchResultViewHolder extends RecyclerView.ViewHolder {
+        private final TextView textViewSource;
+        private final TextView textViewSnippet;
+        private final TextView textViewTimestamp;
+
+        public SearchResultViewHolder(@NonNull View itemView) {
+            super(itemView);
+            textViewSource = itemView.findViewById(R.id.text_view_search_source);
+            textViewSnippet = itemView.findViewById(R.id.text_view_search_snippet);
+            textViewTimestamp = itemView.findViewById(R.id.text_view_search_timestamp);
+
+            itemView.setOnClickListener(v -> {
+                int position = getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION) {
+                    listener.onResultClick(hits.get(position));
+                }
+            });
+        }
+    }
+}
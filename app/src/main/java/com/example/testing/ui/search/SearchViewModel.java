@@ -0,0 +1,83 @@
+package com.example.testing.ui.search;
+
+import android.app.Application;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.testing.data.local.entity.relations.MessageSearchHit;
+import com.example.testing.data.repository.SearchRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs a search once to get every matching id in order, then loads display rows (with snippets)
+// a page at a time as the list is scrolled. All state is touched only on the executor.
+public class SearchViewModel extends AndroidViewModel {
+
+    private static final int PAGE_SIZE = 30;
+
+    private final SearchRepository repository;
+    private final ExecutorService executorService;
+    private final MutableLiveData<List<MessageSearchHit>> results = new MutableLiveData<>(new ArrayList<>());
+    private final MutableLiveData<Integer> matchCount = new MutableLiveData<>(0);
+
+    // Bumped per search so a slow earlier search can't overwrite a newer one
+    private final AtomicInteger searchToken = new AtomicInteger();
+    private String query;
+    private List<Integer> matchIds = Collections.emptyList();
+    private final List<MessageSearchHit> loaded = new ArrayList<>();
+    // Ids already asked for; can run ahead of loaded, since an id whose message is gone yields no hit
+    private int nextMatch;
+
+    public SearchViewModel(@NonNull Application application) {
+        super(application);
+        repository = SearchRepository.getInstance(application);
+        executorService = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        executorService.shutdown();
+    }
+
+    public LiveData<List<MessageSearchHit>> getResults() { return results; }
+    public LiveData<Integer> getMatchCount() { return matchCount; }
+
+    // conversationId -1 searches everything, ranked; otherwise only that conversation, newest first.
+    public void search(String text, int conversationId) {
+        int token = searchToken.incrementAndGet();
+        executorService.execute(() -> {
+            if (token != searchToken.get()) return;
+            query = text;
+            matchIds = conversationId == -1
+                    ? repository.rankMatchesSync(text)
+                    : repository.findInConversationSync(text, conversationId);
+            loaded.clear();
+            nextMatch = 0;
+            matchCount.postValue(matchIds.size());
+            loadPage(token);
+        });
+    }
+
+    public void loadMore() {
+        int token = searchToken.get();
+        executorService.execute(() -> loadPage(token));
+    }
+
+    private void loadPage(int token) {
+        if (token != searchToken.get()) return;
+        int from = nextMatch;
+        if (from >= matchIds.size() && from > 0) return;
+        int to = Math.min(from + PAGE_SIZE, matchIds.size());
+        nextMatch = to;
+        loaded.addAll(repository.getHitsSync(query, matchIds.subList(from, to)));
+        results.postValue(new ArrayList<>(loaded));
+    }
+}
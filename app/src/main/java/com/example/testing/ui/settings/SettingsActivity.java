@@ -33,7 +33,7 @@ import com.example.testing.data.repository.ModelRepository;
 import com.example.testing.data.local.entity.Persona;
 import com.example.testing.R;
 import com.example.testing.ui.base.ThemeUtils;
-import com.example.testing.data.remote.response.Model;
+import com.example.testing.data.local.entity.ModelInfo;
 import com.example.testing.utils.CreditsManager;
 import com.example.testing.utils.SettingsAppearanceHelper;
 import com.example.testing.utils.SettingsBackupHelper;
@@ -46,6 +46,7 @@ public class SettingsActivity extends BaseActivity {
     private EditText editTextUsername;
     private EditText editTextApiKey;
     private AutoCompleteTextView editTextPreferredModel;
+    private AutoCompleteTextView editTextSummaryModel;
     private ImageButton buttonRefreshModels;
     private TextView textViewModelInfo;
     private EditText editTextGlobalPrompt;
@@ -62,6 +63,7 @@ public class SettingsActivity extends BaseActivity {
     private Button buttonExport, buttonImport;
     private Button buttonExportCharacters, buttonImportCharacters;
     private Button buttonClearData;
+    private Button buttonDatabaseInfo;
 
     private View saveContainer;
 
@@ -129,6 +131,7 @@ public class SettingsActivity extends BaseActivity {
         editTextApiKey = findViewById(R.id.edit_text_api_key);
         textViewCredits = findViewById(R.id.text_view_credits);
         editTextPreferredModel = findViewById(R.id.edit_text_preferred_model);
+        editTextSummaryModel = findViewById(R.id.edit_text_summary_model);
         buttonRefreshModels = findViewById(R.id.button_refresh_models);
         textViewModelInfo = findViewById(R.id.text_view_model_info);
         editTextGlobalPrompt = findViewById(R.id.edit_text_global_system_prompt);
@@ -153,6 +156,7 @@ public class SettingsActivity extends BaseActivity {
         buttonExportCharacters = findViewById(R.id.button_export_characters);
         buttonImportCharacters = findViewById(R.id.button_import_characters);
         buttonClearData = findViewById(R.id.button_clear_data);
+        buttonDatabaseInfo = findViewById(R.id.button_database_info);
 
         radioGroupListMode = findViewById(R.id.radio_group_list_mode);
         radioModeList = findViewById(R.id.radio_mode_list);
@@ -253,6 +257,9 @@ public class SettingsActivity extends BaseActivity {
                     editTextApiKey.setText(user.getApiKey());
                     if (!user.getApiKey().isEmpty()) CreditsManager.fetchCredits(user.getApiKey(), textViewCredits);
                 }
+                if (user.getSummaryModel() != null) {
+                    editTextSummaryModel.setText(user.getSummaryModel());
+                }
                 if (user.getPreferredModel() != null) {
                     editTextPreferredModel.setText(user.getPreferredModel());
                     updateModelInfo(user.getPreferredModel());
@@ -314,11 +321,12 @@ public class SettingsActivity extends BaseActivity {
 
         modelsAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, modelIds);
         editTextPreferredModel.setAdapter(modelsAdapter);
+        editTextSummaryModel.setAdapter(modelsAdapter);
 
-        ModelRepository.getInstance().getModels().observe(this, models -> {
+        ModelRepository.getInstance(getApplication()).getModels().observe(this, models -> {
             if (models != null) {
                 modelIds.clear();
-                for (Model m : models) {
+                for (ModelInfo m : models) {
                     modelIds.add(m.getId());
                 }
                 modelsAdapter.notifyDataSetChanged();
@@ -327,7 +335,7 @@ public class SettingsActivity extends BaseActivity {
 
         buttonRefreshModels.setOnClickListener(v -> {
             Toast.makeText(this, "Refreshing models...", Toast.LENGTH_SHORT).show();
-            ModelRepository.getInstance().refreshModels();
+            ModelRepository.getInstance(getApplication()).refreshModels();
         });
 
         editTextPreferredModel.setOnItemClickListener((parent, view, position, id) -> updateModelInfo(modelsAdapter.getItem(position)));
@@ -344,6 +352,13 @@ public class SettingsActivity extends BaseActivity {
         buttonExportCharacters.setOnClickListener(v -> backupHelper.launchCharacterExport());
         buttonImportCharacters.setOnClickListener(v -> backupHelper.launchCharacterImport());
 
+        buttonDatabaseInfo.setOnClickListener(v -> settingsViewModel.loadDatabaseInfo(info ->
+                new AlertDialog.Builder(this)
+                        .setTitle(R.string.database_info)
+                        .setMessage(info)
+                        .setPositiveButton(android.R.string.ok, null)
+                        .show()));
+
         buttonClearData.setOnClickListener(v -> {
             new AlertDialog.Builder(this)
                     .setTitle("Clear All Data")
@@ -382,7 +397,7 @@ public class SettingsActivity extends BaseActivity {
     }
 
     private void updateModelInfo(String modelId) {
-        Model model = ModelRepository.getInstance().getModelById(modelId);
+        ModelInfo model = ModelRepository.getInstance(getApplication()).getModelById(modelId);
         if (model != null) {
             textViewModelInfo.setVisibility(View.VISIBLE);
             String info = "Name: " + model.getName() + "\n" +
@@ -399,6 +414,7 @@ public class SettingsActivity extends BaseActivity {
         String username = editTextUsername.getText().toString().trim();
         String apiKey = editTextApiKey.getText().toString().trim();
         String preferredModel = editTextPreferredModel.getText().toString().trim();
+        String summaryModel = editTextSummaryModel.getText().toString().trim();
         String globalPrompt = editTextGlobalPrompt.getText().toString().trim();
 
         float temp = 1.0f;
@@ -451,7 +467,7 @@ public class SettingsActivity extends BaseActivity {
 
         ThemeUtils.saveColors(this, pColor, sColor);
         settingsViewModel.saveSettings(username, apiKey, preferredModel, globalPrompt, contextLimit, pColor, sColor, viewMode, newActivePersonaId,
-                temp, topP, topK, freqPen, presPen, repPen, nColor, dColor, bubbleWidth, lineSpacing);
+                temp, topP, topK, freqPen, presPen, repPen, nColor, dColor, bubbleWidth, lineSpacing, summaryModel);
         Toast.makeText(this, "Settings saved! Restarting...", Toast.LENGTH_SHORT).show();
 
         finish();
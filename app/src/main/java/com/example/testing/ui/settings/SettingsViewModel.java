@@ -13,10 +13,12 @@ import com.example.testing.data.local.entity.Character;
 import com.example.testing.data.local.entity.Conversation;
 import com.example.testing.data.local.entity.Persona;
 import com.example.testing.data.local.dao.PersonaDao;
+import com.example.testing.data.local.entity.LorebookEntry;
 import com.example.testing.data.local.entity.Scenario;
 import com.example.testing.data.local.entity.User;
 import com.example.testing.data.repository.UserRepository;
 import com.example.testing.data.local.entity.Message;
+import com.example.testing.utils.MemoryIndex;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
@@ -34,6 +36,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -100,7 +103,7 @@ public class SettingsViewModel extends AndroidViewModel {
     public void saveSettings(String username, String apiKey, String preferredModel, String globalPrompt, int contextLimit,
                              int colorPrimary, int colorSecondary, String viewMode, int currentPersonaId,
                              float temp, float topP, int topK, float freqPen, float presPen, float repPen,
-                             int narrativeColor, int dialogueColor, float bubbleWidth, float lineSpacing) {
+                             int narrativeColor, int dialogueColor, float bubbleWidth, float lineSpacing, String summaryModel) {
         User currentUser = user.getValue();
 
         if (currentUser == null) {
@@ -128,6 +131,7 @@ public class SettingsViewModel extends AndroidViewModel {
         currentUser.setDialogueTextColor(dialogueColor);
         currentUser.setChatBubbleWidth(bubbleWidth);
         currentUser.setChatLineSpacing(lineSpacing);
+        currentUser.setSummaryModel(summaryModel);
 
         repository.insertOrUpdate(currentUser);
     }
@@ -138,10 +142,12 @@ public class SettingsViewModel extends AndroidViewModel {
                 db.runInTransaction(() -> {
                     db.messageDao().deleteAll();
                     db.conversationDao().deleteAll();
+                    db.lorebookDao().deleteAll();
                     db.scenarioDao().deleteAll();
                     db.characterDao().deleteAll();
                     db.personaDao().deleteAll();
                 });
+                MemoryIndex.getInstance(getApplication()).evictAll();
                 showToast("All data cleared successfully");
             } catch (Exception e) {
                 e.printStackTrace();
@@ -150,6 +156,13 @@ public class SettingsViewModel extends AndroidViewModel {
         });
     }
 
+    public void loadDatabaseInfo(Consumer<String> callback) {
+        executorService.execute(() -> {
+            String info = db.describeStorage();
+            new android.os.Handler(android.os.Looper.getMainLooper()).post(() -> callback.accept(info));
+        });
+    }
+
     public void exportBackup(Uri uri, ContentResolver resolver) {
         executorService.execute(() -> {
             try {
@@ -159,6 +172,7 @@ public class SettingsViewModel extends AndroidViewModel {
                 List<Message> messages = db.messageDao().getAllMessagesSync();
                 List<Persona> personas = db.personaDao().getAllPersonasSync();
                 List<Scenario> scenarios = db.scenarioDao().getAllScenariosSync();
+                List<LorebookEntry> lorebookEntries = db.lorebookDao().getAllEntriesSync();
 
                 for (com.example.testing.data.local.entity.Character c : characters) {
                     if (c.getCharacterProfileImagePath() != null && !c.getCharacterProfileImagePath().isEmpty()) {
@@ -174,7 +188,7 @@ public class SettingsViewModel extends AndroidViewModel {
                     }
                 }
 
-                BackupData backupData = new BackupData(user, characters, conversations, messages, personas, scenarios);
+                BackupData backupData = new BackupData(user, characters, conversations, messages, personas, scenarios, lorebookEntries);
 
                 String json = new GsonBuilder().setPrettyPrinting().create().toJson(backupData);
 
@@ -295,6 +309,7 @@ public class SettingsViewModel extends AndroidViewModel {
                 db.runInTransaction(() -> {
                     db.messageDao().deleteAll();
                     db.conversationDao().deleteAll();
+                    db.lorebookDao().deleteAll();
                     db.scenarioDao().deleteAll();
                     db.characterDao().deleteAll();
                     db.personaDao().deleteAll();
@@ -307,6 +322,7 @@ public class SettingsViewModel extends AndroidViewModel {
                         }
                     }
 
+                    Set<Integer> characterIds = new HashSet<>();
                     if (backupData.characters != null) {
                         for (Character c : backupData.characters) {
                             String relPath = c.getCharacterProfileImagePath();
@@ -314,7 +330,9 @@ public class SettingsViewModel extends AndroidViewModel {
                                 File imgFile = new File(imagesDir, new File(relPath).getName());
                                 c.setCharacterProfileImagePath(imgFile.getAbsolutePath());
                             }
-                            db.characterDao().insert(c);
+                            long charId = db.characterDao().insert(c);
+                            db.tagDao().setTagsForCharacter((int) charId, c.getTags());
+                            characterIds.add((int) charId);
                         }
                     }
 
@@ -329,12 +347,35 @@ public class SettingsViewModel extends AndroidViewModel {
                         }
                     }
 
-                    if (backupData.conversations != null) db.conversationDao().insertAll(backupData.conversations);
-                    if (backupData.messages != null) db.messageDao().insertAll(backupData.messages);
+                    if (backupData.lorebookEntries != null) db.lorebookDao().insertAll(backupData.lorebookEntries);
+
+                    // Backups from before the foreign keys can hold conversations of deleted
+                    // characters and their messages; the keys would reject the whole restore
+                    Set<Integer> conversationIds = new HashSet<>();
+                    if (backupData.conversations != null) {
+                        List<Conversation> conversations = new ArrayList<>();
+                        for (Conversation conversation : backupData.conversations) {
+                            if (characterIds.contains(conversation.getCharacterId())) {
+                                conversations.add(conversation);
+                                conversationIds.add(conversation.getId());
+                            }
+                        }
+                        db.conversationDao().insertAll(conversations);
+                    }
+                    if (backupData.messages != null) {
+                        List<Message> messages = new ArrayList<>();
+                        for (Message message : backupData.messages) {
+                            if (conversationIds.contains(message.getConversationId())) messages.add(message);
+                        }
+                        db.messageDao().insertAll(messages);
+                    }
+                    // Restored conversations carry the rollups they were exported with; the triggers added on top
+                    db.conversationDao().rebuildRollups();
                 });
 
                 tempZip.delete();
 
+                MemoryIndex.getInstance(getApplication()).evictAll();
                 showToast("Backup Restored Successfully");
 
             } catch (Exception e) {
@@ -478,6 +519,7 @@ public class SettingsViewModel extends AndroidViewModel {
 
                         c.setId(0);
                         long newCharId = db.characterDao().insert(c);
+                        db.tagDao().setTagsForCharacter((int) newCharId, c.getTags());
 
                         if (scenarios != null) {
                             for (Scenario s : scenarios) {
@@ -516,14 +558,16 @@ public class SettingsViewModel extends AndroidViewModel {
         List<Message> messages;
         List<Persona> personas;
         List<Scenario> scenarios;
+        List<LorebookEntry> lorebookEntries;
 
-        public BackupData(User user, List<Character> characters, List<Conversation> conversations, List<Message> messages, List<Persona> personas, List<Scenario> scenarios) {
+        public BackupData(User user, List<Character> characters, List<Conversation> conversations, List<Message> messages, List<Persona> personas, List<Scenario> scenarios, List<LorebookEntry> lorebookEntries) {
             this.user = user;
             this.characters = characters;
             this.conversations = conversations;
             this.messages = messages;
             this.personas = personas;
             this.scenarios = scenarios;
+            this.lorebookEntries = lorebookEntries;
         }
     }
 
@@ -5,63 +5,211 @@ import android.text.TextUtils;
 import com.example.testing.data.local.dao.PersonaDao;
 import com.example.testing.data.local.entity.Character;
 import com.example.testing.data.local.entity.Conversation;
+import com.example.testing.data.local.entity.LorebookEntry;
 import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.ModelInfo;
 import com.example.testing.data.local.entity.Persona;
 import com.example.testing.data.local.entity.Scenario;
 import com.example.testing.data.local.entity.User;
+import com.example.testing.data.repository.MessageRepository;
+import com.example.testing.data.repository.ModelRepository;
 import com.example.testing.data.repository.ScenarioRepository;
 import com.example.testing.data.remote.request.RequestMessage;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 
 public class ChatPromptGenerator {
 
+    // Room left for the reply when the character has no max_tokens set: a quarter of the window, capped.
+    private static final int DEFAULT_REPLY_RESERVE = 4096;
+    // Slack for the tokenizer not matching the model exactly and for small injected lines.
+    private static final int SAFETY_MARGIN = 64;
+    // "Current time: ..." line added before each user message for time-aware characters
+    private static final int TIME_LINE_TOKENS = 20;
+
+    // Messages fetched per query while walking the history backwards.
+    private static final int HISTORY_PAGE_SIZE = 64;
+    // Lorebook keywords are matched against this many of the newest messages.
+    private static final int LOREBOOK_SCAN_DEPTH = 4;
+
+    // Recall of messages that no longer fit: the newest messages form the query, and the best
+    // matches older than the sent history go in, up to the token cap.
+    private static final int MEMORY_QUERY_DEPTH = 2;
+    private static final int MEMORY_MAX_RESULTS = 4;
+    private static final float MEMORY_MIN_SIMILARITY = 0.15f;
+    private static final int MEMORY_MAX_TOKENS = 600;
+
+    private final MessageRepository messageRepository;
     private final PersonaDao personaDao;
     private final ScenarioRepository scenarioRepository;
-    private final SimpleDateFormat dayFormatter;
-    private final SimpleDateFormat timeFormatter;
+    private final ModelRepository modelRepository;
+    private final TokenCounter tokenCounter;
+    private final SystemPromptCache systemPromptCache;
+    private final LorebookIndex lorebookIndex;
+    private final MemoryIndex memoryIndex;
 
-    public ChatPromptGenerator(PersonaDao personaDao, ScenarioRepository scenarioRepository) {
+    // Oldest history message that went out with the last build, for the summarizer.
+    private volatile Message oldestSentMessage;
+
+    public ChatPromptGenerator(MessageRepository messageRepository, PersonaDao personaDao, ScenarioRepository scenarioRepository,
+                               ModelRepository modelRepository, TokenCounter tokenCounter, SystemPromptCache systemPromptCache,
+                               LorebookIndex lorebookIndex, MemoryIndex memoryIndex) {
+        this.messageRepository = messageRepository;
         this.personaDao = personaDao;
         this.scenarioRepository = scenarioRepository;
-        this.dayFormatter = new SimpleDateFormat("EEE, MMM dd, yyyy", Locale.getDefault());
-        this.timeFormatter = new SimpleDateFormat("h:mm a", Locale.getDefault());
+        this.modelRepository = modelRepository;
+        this.tokenCounter = tokenCounter;
+        this.systemPromptCache = systemPromptCache;
+        this.lorebookIndex = lorebookIndex;
+        this.memoryIndex = memoryIndex;
     }
 
-    public List<RequestMessage> buildApiRequestMessages(Conversation conversation, User user, Character character, List<Message> messageHistory) {
+    public List<RequestMessage> buildApiRequestMessages(Conversation conversation, User user, Character character) {
         List<RequestMessage> requestMessages = new ArrayList<>();
 
-        long creationTimestamp = !messageHistory.isEmpty() ? messageHistory.get(0).getTimestamp() : System.currentTimeMillis();
-        Date creationDate = new Date(creationTimestamp);
-        String formattedDay = dayFormatter.format(creationDate);
-        String formattedTime = timeFormatter.format(creationDate);
+        SystemPromptCache.Entry prompt = promptEntry(conversation, user, character);
+        String modelId = resolveModelId(user, character);
+        PromptTemplate.Variables vars = variables(conversation, prompt, modelId);
 
-        int limit = character.getContextLimit() != null && character.getContextLimit() > 0
-                ? character.getContextLimit() : user.getDefaultContextLimit();
+        String finalSystemPrompt = prompt.render(vars);
 
-        List<Message> messagesToSend = messageHistory;
-        if (limit > 0) {
-            int keepCount = limit * 2;
-            if (messageHistory.size() > keepCount) {
-                messagesToSend = messageHistory.subList(messageHistory.size() - keepCount, messageHistory.size());
+        // The summary continues the scenario it follows; triggered World Info comes after both
+        if (!TextUtils.isEmpty(conversation.getSummary())) {
+            finalSystemPrompt += "\nSummary of earlier events in this conversation:\n" + conversation.getSummary().trim() + "\n";
+        }
+
+        List<LorebookEntry> lore = lorebookIndex.findTriggered(character.getId(), conversation.getScenarioId(),
+                () -> messageRepository.getRecentMessagesSync(conversation.getId(), LOREBOOK_SCAN_DEPTH));
+        if (!lore.isEmpty()) {
+            StringBuilder loreBuilder = new StringBuilder("\nWorld Info:\n");
+            for (LorebookEntry entry : lore) {
+                if (TextUtils.isEmpty(entry.getContent())) continue;
+                loreBuilder.append(PromptTemplate.render(entry.getContent().trim(), vars)).append("\n\n");
             }
+            finalSystemPrompt += loreBuilder;
         }
 
-        String characterName = character.getName() != null ? character.getName() : "Character";
-        String userName = "User";
+        if (character.isTimeAware()) {
+            finalSystemPrompt += "\nThis conversation was started on " + vars.startDay() + " at " + vars.startTime() + ".";
+        }
+        String systemPrompt = finalSystemPrompt.trim();
+        if (!TextUtils.isEmpty(systemPrompt)) {
+            requestMessages.add(new RequestMessage("system", systemPrompt));
+        }
 
-        String globalPrompt = user.getGlobalSystemPrompt() != null ? user.getGlobalSystemPrompt() : "";
-        String characterPersonality = character.getPersonality() != null ? character.getPersonality() : "";
+        int systemPromptTokens = systemPrompt.isEmpty() ? 0
+                : prompt.countTokens(systemPrompt, tokenCounter) + TokenCounter.MESSAGE_OVERHEAD;
+        int budget = historyTokenBudget(character, modelId, systemPromptTokens);
+        List<Message> messagesToSend = loadHistory(conversation.getId(), user, character, budget);
+
+        String memories = recallMemories(conversation.getId(), messagesToSend, prompt, vars);
+        if (memories != null) {
+            if (budget >= 0) {
+                // Memories displace the oldest history rather than overflowing the window
+                int used = 0;
+                for (Message msg : messagesToSend) used += messageCost(msg, character);
+                int memoryTokens = tokenCounter.count(memories) + TokenCounter.MESSAGE_OVERHEAD;
+                while (used + memoryTokens > budget && messagesToSend.size() > 1) {
+                    used -= messageCost(messagesToSend.remove(0), character);
+                }
+            }
+            requestMessages.add(new RequestMessage("system", memories));
+        }
+        oldestSentMessage = messagesToSend.isEmpty() ? null : messagesToSend.get(0);
 
+        for (Message msg : messagesToSend) {
+            if (character.isTimeAware() && "user".equals(msg.getRole())) {
+                String msgTime = PromptTemplate.formatDay(msg.getTimestamp()) + " at " + PromptTemplate.formatTime(msg.getTimestamp());
+                requestMessages.add(new RequestMessage("system", "Current time: " + msgTime));
+            }
+            requestMessages.add(new RequestMessage(msg.getRole(), PromptTemplate.renderStable(msg.getContent(), vars)));
+        }
+
+        if (!messagesToSend.isEmpty()) {
+            Message lastMessage = messagesToSend.get(messagesToSend.size() - 1);
+            if ("assistant".equals(lastMessage.getRole()) && "length".equals(lastMessage.getFinishReason())) {
+                requestMessages.add(new RequestMessage("system", "Continue from where you stopped, continue with the next logical action."));
+            }
+        }
+
+        return requestMessages;
+    }
+
+    // Older messages most similar to the latest exchange, as a system block, or null if none qualify.
+    private String recallMemories(int conversationId, List<Message> history, SystemPromptCache.Entry prompt,
+                                  PromptTemplate.Variables vars) {
+        if (memoryIndex == null || history.isEmpty()) return null;
+
+        StringBuilder query = new StringBuilder();
+        for (int i = Math.max(0, history.size() - MEMORY_QUERY_DEPTH); i < history.size(); i++) {
+            String content = history.get(i).getContent();
+            if (content != null) query.append(content).append('\n');
+        }
+        List<Integer> ids = memoryIndex.search(conversationId, query.toString(), history.get(0),
+                MEMORY_MAX_RESULTS, MEMORY_MIN_SIMILARITY);
+        if (ids.isEmpty()) return null;
+
+        // Take them best first until the cap is reached, then show the kept ones in story order
+        List<Message> recalled = messageRepository.getMessagesByIdsSync(ids);
+        List<Integer> kept = new ArrayList<>();
+        int tokens = 0;
+        for (Integer id : ids) {
+            for (Message msg : recalled) {
+                if (msg.getIndex() != id) continue;
+                int cost = tokenCounter.countMessage(msg);
+                if (tokens + cost <= MEMORY_MAX_TOKENS) {
+                    tokens += cost;
+                    kept.add(id);
+                }
+            }
+        }
+        if (kept.isEmpty()) return null;
+
+        StringBuilder block = new StringBuilder("Relevant memories from earlier in this conversation:\n");
+        for (Message msg : recalled) {
+            if (!kept.contains(msg.getIndex()) || TextUtils.isEmpty(msg.getContent())) continue;
+            String speaker = "assistant".equals(msg.getRole()) ? prompt.getCharacterName() : prompt.getUserName();
+            block.append(speaker).append(": ").append(PromptTemplate.renderStable(msg.getContent().trim(), vars)).append("\n\n");
+        }
+        return block.toString().trim();
+    }
+
+    public Message getOldestSentMessage() {
+        return oldestSentMessage;
+    }
+
+    private SystemPromptCache.Entry promptEntry(Conversation conversation, User user, Character character) {
         int personaIdToUse = user.getCurrentPersonaId();
-        if (conversation != null && conversation.getPersonaId() != null) {
+        if (conversation.getPersonaId() != null) {
             personaIdToUse = conversation.getPersonaId();
         }
 
+        SystemPromptCache.Entry prompt = systemPromptCache.get(conversation.getId(), user, character, personaIdToUse, conversation.getScenarioId());
+        if (prompt == null) {
+            prompt = buildPromptEntry(conversation, user, character, personaIdToUse);
+            systemPromptCache.put(conversation.getId(), prompt);
+        }
+        return prompt;
+    }
+
+    private static PromptTemplate.Variables variables(Conversation conversation, SystemPromptCache.Entry prompt, String modelId) {
+        return new PromptTemplate.Variables(prompt.getUserName(), prompt.getCharacterName(),
+                modelId, conversation.getCreatedAt(), conversation.getId());
+    }
+
+    // Everything in the system prompt that only changes when a source row does, compiled once.
+    // Placeholders are filled in per send.
+    private SystemPromptCache.Entry buildPromptEntry(Conversation conversation, User user, Character character, int personaIdToUse) {
+        int generation = systemPromptCache.getGeneration();
+
+        String characterName = character.getName() != null ? character.getName() : "Character";
+        String userName = "User";
+
+        String globalPrompt = user.getGlobalSystemPrompt() != null ? user.getGlobalSystemPrompt() : "";
+        String characterPersonality = character.getPersonality() != null ? character.getPersonality() : "";
+
         StringBuilder personaPromptBuilder = new StringBuilder();
         if (personaIdToUse != -1) {
             Persona persona = personaDao.getPersonaById(personaIdToUse);
@@ -82,7 +230,7 @@ public class ChatPromptGenerator {
         String personaPrompt = personaPromptBuilder.toString();
 
         StringBuilder scenarioPromptBuilder = new StringBuilder();
-        if (conversation != null && conversation.getScenarioId() != null) {
+        if (conversation.getScenarioId() != null) {
             Scenario selectedScenario = scenarioRepository.getScenarioByIdSync(conversation.getScenarioId());
             if (selectedScenario != null) {
                 scenarioPromptBuilder.append("Scenario Context:\n");
@@ -99,46 +247,73 @@ public class ChatPromptGenerator {
         }
         String scenarioPrompt = scenarioPromptBuilder.toString();
 
-        globalPrompt = replacePlaceholders(globalPrompt, userName, characterName);
-        characterPersonality = replacePlaceholders(characterPersonality, userName, characterName);
-        personaPrompt = replacePlaceholders(personaPrompt, userName, characterName);
-        scenarioPrompt = replacePlaceholders(scenarioPrompt, userName, characterName);
-
-        globalPrompt = globalPrompt.replace("{day}", formattedDay).replace("{time}", formattedTime);
-        characterPersonality = characterPersonality.replace("{day}", formattedDay).replace("{time}", formattedTime);
+        return new SystemPromptCache.Entry(generation, user, character, personaIdToUse, conversation.getScenarioId(),
+                userName, characterName,
+                globalPrompt + "\n" + personaPrompt + characterPersonality + "\n" + scenarioPrompt);
+    }
 
-        String finalSystemPrompt = globalPrompt + "\n" + personaPrompt + characterPersonality + "\n" + scenarioPrompt;
+    // The message-count limit (if set) still caps history; within that, we keep as many of the
+    // newest messages as fit the model's context window minus the reply reservation.
+    // Pages are read newest-first off the (conversation_fk, timestamp) index and we stop as soon
+    // as either bound is hit, so long conversations are never loaded in full.
+    private List<Message> loadHistory(int conversationId, User user, Character character, int budget) {
+        int limit = character.getContextLimit() != null && character.getContextLimit() > 0
+                ? character.getContextLimit() : user.getDefaultContextLimit();
+        int maxCount = limit > 0 ? limit * 2 : Integer.MAX_VALUE;
 
-        if (character.isTimeAware()) {
-            finalSystemPrompt += "\nThis conversation was started on " + formattedDay + " at " + formattedTime + ".";
-        }
-        if (!TextUtils.isEmpty(finalSystemPrompt.trim())) {
-            requestMessages.add(new RequestMessage("system", finalSystemPrompt.trim()));
+        if (budget < 0 && limit <= 0) {
+            return messageRepository.getMessagesForConversationSync(conversationId);
         }
 
-        for (Message msg : messagesToSend) {
-            if (character.isTimeAware() && "user".equals(msg.getRole())) {
-                Date msgDate = new Date(msg.getTimestamp());
-                String msgTime = dayFormatter.format(msgDate) + " at " + timeFormatter.format(msgDate);
-                requestMessages.add(new RequestMessage("system", "Current time: " + msgTime));
-            }
-            String content = replacePlaceholders(msg.getContent(), userName, characterName);
-            requestMessages.add(new RequestMessage(msg.getRole(), content));
-        }
+        List<Message> newestFirst = new ArrayList<>();
+        Message oldest = null;
+        while (newestFirst.size() < maxCount) {
+            int remaining = maxCount - newestFirst.size();
+            int pageSize = budget < 0 ? remaining : Math.min(HISTORY_PAGE_SIZE, remaining);
+            List<Message> page = oldest == null
+                    ? messageRepository.getRecentMessagesSync(conversationId, pageSize)
+                    : messageRepository.getMessagesBeforeSync(conversationId, oldest, pageSize);
 
-        if (!messagesToSend.isEmpty()) {
-            Message lastMessage = messagesToSend.get(messagesToSend.size() - 1);
-            if ("assistant".equals(lastMessage.getRole()) && "length".equals(lastMessage.getFinishReason())) {
-                requestMessages.add(new RequestMessage("system", "Continue from where you stopped, continue with the next logical action."));
+            for (Message msg : page) {
+                if (budget >= 0) {
+                    int cost = messageCost(msg, character);
+                    // The newest message always goes out, even if it alone overflows.
+                    if (cost > budget && !newestFirst.isEmpty()) {
+                        Collections.reverse(newestFirst);
+                        return newestFirst;
+                    }
+                    budget -= cost;
+                }
+                newestFirst.add(msg);
             }
+            if (page.size() < pageSize) break;
+            oldest = page.get(page.size() - 1);
         }
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
 
-        return requestMessages;
+    // Tokens left for history, or -1 when the model's context window is unknown.
+    private int historyTokenBudget(Character character, String modelId, int systemPromptTokens) {
+        ModelInfo model = modelRepository != null ? modelRepository.getModelById(modelId) : null;
+        if (model == null || model.getContextLength() <= 0) return -1;
+
+        int contextLength = model.getContextLength();
+        int replyReserve = character.getMaxTokens() != null && character.getMaxTokens() > 0
+                ? character.getMaxTokens() : Math.min(DEFAULT_REPLY_RESERVE, contextLength / 4);
+        int budget = contextLength - replyReserve - SAFETY_MARGIN - TokenCounter.REPLY_PRIMING - systemPromptTokens;
+        return Math.max(0, budget);
+    }
+
+    private int messageCost(Message msg, Character character) {
+        int cost = tokenCounter.countMessage(msg);
+        if (character.isTimeAware() && "user".equals(msg.getRole())) {
+            cost += TIME_LINE_TOKENS;
+        }
+        return cost;
     }
 
-    private String replacePlaceholders(String text, String userName, String characterName) {
-        if (text == null) return "";
-        return text.replace("{{user}}", userName)
-                .replace("{{character}}", characterName);
+    private static String resolveModelId(User user, Character character) {
+        return !TextUtils.isEmpty(character.getModel()) ? character.getModel() : user.getPreferredModel();
     }
-}
\ No newline at end of file
+}
@@ -1,79 +1,112 @@
 package com.example.testing.utils;
 
+import android.os.SystemClock;
 import android.text.TextUtils;
 
 import com.example.testing.data.local.entity.Message;
 import com.example.testing.data.repository.ConversationRepository;
 import com.example.testing.data.repository.MessageRepository;
-import com.example.testing.data.remote.response.ChatCompletionResponse;
-import com.google.gson.Gson;
+import com.example.testing.data.remote.stream.ChatChunkParser;
+import com.example.testing.data.remote.stream.ChatStreamChunk;
+import com.example.testing.data.remote.stream.SseEventReader;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 
 import okhttp3.ResponseBody;
 import retrofit2.Response;
 
 public class ChatStreamHandler {
 
+    private static final String DONE = "[DONE]";
+    // The bubble shows at most one update a frame; building the reply string on every token
+    // would be quadratic over a long reply. The caller posts the finished text itself.
+    private static final long CONTENT_UPDATE_INTERVAL_MS = 16;
+
+    public interface StreamListener {
+        void onContent(String content);
+    }
+
     public static void handleStream(Response<ResponseBody> response,
                                     Message currentAiMessage,
                                     MessageRepository messageRepository,
                                     ConversationRepository conversationRepository) throws IOException {
+        handleStream(response, currentAiMessage, messageRepository, conversationRepository, null, null);
+    }
+
+    public static void handleStream(Response<ResponseBody> response,
+                                    Message currentAiMessage,
+                                    MessageRepository messageRepository,
+                                    ConversationRepository conversationRepository,
+                                    StreamListener listener,
+                                    GenerationTimer timer) throws IOException {
 
         if (response.isSuccessful() && response.body() != null) {
-            InputStream is = response.body().byteStream();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(is));
-            String line;
-            StringBuilder contentBuilder = new StringBuilder();
-
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("data: ")) {
-                    String jsonPart = line.substring(6).trim();
-                    if (jsonPart.equals("[DONE]")) break;
-
-                    try {
-                        ChatCompletionResponse chunk = new Gson().fromJson(jsonPart, ChatCompletionResponse.class);
-
-                        if (chunk.getUsage() != null) {
-                            currentAiMessage.setPromptTokens(chunk.getUsage().getPromptTokens());
-                            currentAiMessage.setCompletionTokens(chunk.getUsage().getCompletionTokens());
-                            currentAiMessage.setTokenCount(chunk.getUsage().getTotalTokens());
-                        }
+            StreamingMessageWriter writer = listener != null
+                    ? new StreamingMessageWriter(currentAiMessage, messageRepository, conversationRepository,
+                            StreamingMessageWriter.CHECKPOINT_FLUSH_INTERVAL_MS, StreamingMessageWriter.CHECKPOINT_FLUSH_CHAR_BUDGET)
+                    : new StreamingMessageWriter(currentAiMessage, messageRepository, conversationRepository);
+            boolean completed = false;
 
-                        if (chunk.getChoices() != null && !chunk.getChoices().isEmpty()) {
-                            ChatCompletionResponse.Choice choice = chunk.getChoices().get(0);
+            try (ResponseBody body = response.body()) {
+                SseEventReader events = new SseEventReader(body.source());
+                ChatChunkParser parser = new ChatChunkParser();
+                ChatStreamChunk chunk = new ChatStreamChunk();
+                long lastContentUpdate = 0;
 
-                            ChatCompletionResponse.Message delta = choice.getDelta();
-                            if (delta != null && delta.getContent() != null) {
-                                contentBuilder.append(delta.getContent());
-                                currentAiMessage.setContent(contentBuilder.toString());
-                                messageRepository.updateSync(currentAiMessage);
-                                conversationRepository.updateLastUpdatedSync(currentAiMessage.getConversationId(), System.currentTimeMillis());
-                            }
+                while (events.next()) {
+                    // call.execute() returns on the headers; the body starts with the first event
+                    if (timer != null) timer.markFirstByte();
+                    StringBuilder data = events.getData();
+                    if (DONE.contentEquals(data)) break;
+                    if (!parser.parse(data, chunk)) continue;
+
+                    if (chunk.hasUsage()) {
+                        currentAiMessage.setPromptTokens(chunk.getPromptTokens());
+                        currentAiMessage.setCompletionTokens(chunk.getCompletionTokens());
+                        currentAiMessage.setTokenCount(chunk.getTotalTokens());
+                    }
 
-                            if (choice.getFinishReason() != null) {
-                                currentAiMessage.setFinishReason(choice.getFinishReason());
+                    if (chunk.getContent() != null) {
+                        if (timer != null && !chunk.getContent().isEmpty()) timer.markDelta();
+                        writer.append(chunk.getContent());
+                        if (listener != null && !chunk.getContent().isEmpty()) {
+                            long now = SystemClock.uptimeMillis();
+                            if (now - lastContentUpdate >= CONTENT_UPDATE_INTERVAL_MS) {
+                                lastContentUpdate = now;
+                                listener.onContent(writer.getContent());
                             }
                         }
-                    } catch (Exception e) {
-                        e.printStackTrace();
+                    }
+
+                    if (chunk.getFinishReason() != null) {
+                        currentAiMessage.setFinishReason(chunk.getFinishReason());
+                    }
+
+                    if (chunk.getError() != null) {
+                        writer.append((writer.isEmpty() ? "" : "\n\n") + "Error: " + chunk.getError());
+                        currentAiMessage.setFinishReason("error");
                     }
                 }
+                completed = true;
+            } finally {
+                // Always persist what was received, even when the stream dies mid-reply.
+                writer.flush();
+                if (timer != null) timer.applyTo(currentAiMessage);
             }
 
-            String finalContent = contentBuilder.toString().trim();
-            if (TextUtils.isEmpty(finalContent)) {
-                finalContent = "...";
+            if (completed) {
+                String finalContent = writer.getContent().trim();
+                if (TextUtils.isEmpty(finalContent)) {
+                    finalContent = "...";
+                }
+                currentAiMessage.setContent(finalContent);
+                messageRepository.updateSync(currentAiMessage);
             }
-            currentAiMessage.setContent(finalContent);
-            messageRepository.updateSync(currentAiMessage);
 
         } else {
+            if (response.errorBody() != null) response.errorBody().close();
             currentAiMessage.setContent("Error: " + response.code() + " " + response.message());
             messageRepository.updateSync(currentAiMessage);
         }
     }
-}
\ No newline at end of file
+}
@@ -4,17 +4,19 @@ import android.text.TextUtils;
 
 import com.example.testing.data.local.entity.Character;
 import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.ModelInfo;
 import com.example.testing.data.local.entity.User;
-import com.example.testing.data.remote.response.Model;
 import com.example.testing.data.repository.ModelRepository;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 public class ConversationStatsFormatter {
 
-    public static String generateStatsInfo(List<Message> messages, Character character, User user) {
+    public static String generateStatsInfo(List<Message> messages, Character character, User user, ModelRepository modelRepository) {
         if (messages == null || messages.isEmpty() || character == null) {
             return "No information available yet.";
         }
@@ -26,6 +28,8 @@ public class ConversationStatsFormatter {
         long firstTimestamp = Long.MAX_VALUE;
         long lastTimestamp = 0;
         String lastFinishReason = "N/A";
+        List<Long> ttfts = new ArrayList<>();
+        List<Float> throughputs = new ArrayList<>();
 
         for (Message msg : messages) {
             if ("user".equals(msg.getRole())) {
@@ -37,6 +41,8 @@ public class ConversationStatsFormatter {
                 if (msg.getFinishReason() != null) {
                     lastFinishReason = msg.getFinishReason();
                 }
+                if (msg.getTtftMs() > 0) ttfts.add(msg.getTtftMs());
+                if (msg.getTokensPerSecond() > 0) throughputs.add(msg.getTokensPerSecond());
             }
             if (msg.getTimestamp() < firstTimestamp) firstTimestamp = msg.getTimestamp();
             if (msg.getTimestamp() > lastTimestamp) lastTimestamp = msg.getTimestamp();
@@ -47,7 +53,7 @@ public class ConversationStatsFormatter {
 
         // Cost Calculation
         String modelId = !TextUtils.isEmpty(character.getModel()) ? character.getModel() : (user != null ? user.getPreferredModel() : null);
-        String[] costStrings = calculateCost(modelId, totalInputTokens, totalOutputTokens);
+        String[] costStrings = calculateCost(modelRepository, modelId, totalInputTokens, totalOutputTokens);
 
         StringBuilder info = new StringBuilder();
         info.append("Model: ").append(modelId != null ? modelId : "Default").append("\n");
@@ -62,11 +68,45 @@ public class ConversationStatsFormatter {
         info.append("Total Input Tokens: ").append(totalInputTokens).append("\n");
         info.append("Total Output Tokens: ").append(totalOutputTokens).append("\n");
         info.append("Last Finish Reason: ").append(lastFinishReason).append("\n\n");
+
+        info.append("--- Speed ---\n");
+        if (ttfts.isEmpty()) {
+            info.append("No timing data yet.\n\n");
+        } else {
+            Collections.sort(ttfts);
+            Collections.sort(throughputs);
+            info.append("Time to First Token (p50/p95): ")
+                    .append(formatMillis(percentile(ttfts, 50))).append(" / ")
+                    .append(formatMillis(percentile(ttfts, 95))).append("\n");
+            if (!throughputs.isEmpty()) {
+                // For throughput the slow tail is the interesting one, so p95 here is the 5th percentile.
+                info.append("Throughput (p50/p95): ")
+                        .append(String.format(Locale.getDefault(), "%.1f / %.1f tok/s",
+                                percentile(throughputs, 50), percentile(throughputs, 5)))
+                        .append("\n");
+            }
+            info.append("Timed Replies: ").append(ttfts.size()).append("\n\n");
+        }
+
         info.append("Total Cost: ").append(costStrings[0]);
 
         return info.toString();
     }
 
+    // Nearest-rank percentile over an already sorted list.
+    private static <T extends Number> double percentile(List<T> sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+        int i = Math.max(0, Math.min(sorted.size() - 1, rank - 1));
+        return sorted.get(i).doubleValue();
+    }
+
+    private static String formatMillis(double millis) {
+        if (millis >= 1000) {
+            return String.format(Locale.getDefault(), "%.2f s", millis / 1000.0);
+        }
+        return String.format(Locale.getDefault(), "%.0f ms", millis);
+    }
+
     private static String calculateDuration(long start, long end) {
         if (start == Long.MAX_VALUE || end == 0) return "N/A";
 
@@ -84,29 +124,27 @@ public class ConversationStatsFormatter {
     }
 
     // Returns [TotalCost, InputPriceString, OutputPriceString]
-    private static String[] calculateCost(String modelId, long inputTokens, long outputTokens) {
+    private static String[] calculateCost(ModelRepository modelRepository, String modelId, long inputTokens, long outputTokens) {
         String costStr = "Unknown Model Price";
         String inputPriceStr = "N/A";
         String outputPriceStr = "N/A";
 
-        if (modelId != null) {
-            Model model = ModelRepository.getInstance().getModelById(modelId);
-            if (model != null && model.getPricing() != null) {
-                try {
-                    double promptPrice = Double.parseDouble(model.getPricing().getPrompt());
-                    double completionPrice = Double.parseDouble(model.getPricing().getCompletion());
-                    double totalCost = (inputTokens * promptPrice) + (outputTokens * completionPrice);
-
-                    if (totalCost < 0.0001) {
-                        costStr = String.format(Locale.getDefault(), "$%.6f", totalCost);
-                    } else {
-                        costStr = String.format(Locale.getDefault(), "$%.4f", totalCost);
-                    }
-                    inputPriceStr = String.format(Locale.getDefault(), "$%.2f/1M", promptPrice * 1000000);
-                    outputPriceStr = String.format(Locale.getDefault(), "$%.2f/1M", completionPrice * 1000000);
-                } catch (Exception e) {
-                    costStr = "Pricing Error";
+        if (modelId != null && modelRepository != null) {
+            ModelInfo model = modelRepository.getModelById(modelId);
+            if (model != null && model.hasPricing()) {
+                double promptPrice = model.getPromptPrice();
+                double completionPrice = model.getCompletionPrice();
+                double totalCost = (inputTokens * promptPrice) + (outputTokens * completionPrice);
+
+                if (totalCost < 0.0001) {
+                    costStr = String.format(Locale.getDefault(), "$%.6f", totalCost);
+                } else {
+                    costStr = String.format(Locale.getDefault(), "$%.4f", totalCost);
                 }
+                inputPriceStr = String.format(Locale.getDefault(), "$%.2f/1M", promptPrice * 1000000);
+                outputPriceStr = String.format(Locale.getDefault(), "$%.2f/1M", completionPrice * 1000000);
+            } else if (model != null) {
+                costStr = "Pricing Error";
             }
         }
         return new String[]{costStr, inputPriceStr, outputPriceStr};
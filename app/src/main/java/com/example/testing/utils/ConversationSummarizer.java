@@ -0,0 +1,139 @@
+package com.example.testing.utils;
+
+import android.app.Application;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.example.testing.data.local.entity.Conversation;
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.User;
+import com.example.testing.data.remote.api.ApiClient;
+import com.example.testing.data.remote.request.ApiRequest;
+import com.example.testing.data.remote.request.RequestMessage;
+import com.example.testing.data.remote.response.ChatCompletionResponse;
+import com.example.testing.data.repository.ConversationRepository;
+import com.example.testing.data.repository.MessageRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit2.Response;
+
+// Folds messages that have dropped out of the context window into a running summary on the
+// conversation. Runs on its own executor after a reply has finished, so sends never wait on it.
+// Each pass only covers messages between the end of the current summary and the oldest message
+// still being sent, and only once that gap is big enough to be worth a request.
+public class ConversationSummarizer {
+
+    private static final String TAG = "ConversationSummarizer";
+
+    private static final int MIN_EVICTED_TOKENS = 1500;
+    private static final int MAX_BATCH_MESSAGES = 200;
+    private static final int MAX_BATCH_TOKENS = 12000;
+    private static final int SUMMARY_MAX_TOKENS = 600;
+    private static final float SUMMARY_TEMPERATURE = 0.3f;
+
+    private static final String INSTRUCTIONS =
+            "You maintain a running summary of a roleplay conversation. Merge the new messages into the existing summary. " +
+            "Keep names, relationships, places, promises, unresolved threads and important facts; drop small talk. " +
+            "Write in past tense, third person, as compact prose under 400 words. Reply with the summary only.";
+
+    private static volatile ConversationSummarizer INSTANCE;
+
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final TokenCounter tokenCounter;
+    private final ExecutorService executorService;
+    private final Set<Integer> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ConversationSummarizer(Application application) {
+        this.conversationRepository = ConversationRepository.getInstance(application);
+        this.messageRepository = MessageRepository.getInstance(application);
+        this.tokenCounter = TokenCounter.getInstance(application);
+        this.executorService = Executors.newSingleThreadExecutor();
+    }
+
+    public static ConversationSummarizer getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (ConversationSummarizer.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ConversationSummarizer(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public void maybeSummarize(int conversationId, User user, String characterName, Message oldestSent) {
+        if (user == null || oldestSent == null) return;
+        String model = user.getSummaryModel();
+        if (TextUtils.isEmpty(model) || TextUtils.isEmpty(user.getApiKey())) return;
+        if (!inFlight.add(conversationId)) return;
+
+        executorService.execute(() -> {
+            try {
+                summarize(conversationId, model.trim(), user.getApiKey(), characterName, oldestSent);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Summary update failed for conversation " + conversationId, e);
+            } finally {
+                inFlight.remove(conversationId);
+            }
+        });
+    }
+
+    private void summarize(int conversationId, String model, String apiKey, String characterName, Message oldestSent) throws IOException {
+        Conversation conversation = conversationRepository.getConversationByIdSync(conversationId);
+        if (conversation == null) return;
+
+        List<Message> evicted = messageRepository.getMessagesBetweenSync(conversationId,
+                conversation.getSummaryThroughTimestamp(), conversation.getSummaryThroughIndex(), oldestSent, MAX_BATCH_MESSAGES);
+        if (evicted.isEmpty()) return;
+
+        int tokens = 0;
+        int count = 0;
+        for (Message msg : evicted) {
+            int cost = tokenCounter.countMessage(msg);
+            if (count > 0 && tokens + cost > MAX_BATCH_TOKENS) break;
+            tokens += cost;
+            count++;
+        }
+        if (tokens < MIN_EVICTED_TOKENS) return;
+        List<Message> batch = evicted.subList(0, count);
+
+        String speaker = !TextUtils.isEmpty(characterName) ? characterName : "Character";
+        StringBuilder transcript = new StringBuilder(tokens * 4 + 256);
+        if (!TextUtils.isEmpty(conversation.getSummary())) {
+            transcript.append("Existing summary:\n").append(conversation.getSummary().trim()).append("\n\n");
+        }
+        transcript.append("New messages:\n");
+        for (Message msg : batch) {
+            if (TextUtils.isEmpty(msg.getContent())) continue;
+            transcript.append("assistant".equals(msg.getRole()) ? speaker : "User")
+                    .append(": ").append(msg.getContent().trim()).append("\n\n");
+        }
+
+        List<RequestMessage> messages = new ArrayList<>();
+        messages.add(new RequestMessage("system", INSTRUCTIONS));
+        messages.add(new RequestMessage("user", transcript.toString()));
+        ApiRequest request = new ApiRequest(model, messages, SUMMARY_TEMPERATURE, SUMMARY_MAX_TOKENS, false);
+
+        Response<ChatCompletionResponse> response = ApiClient.getService().getChatCompletion("Bearer " + apiKey, request).execute();
+        ChatCompletionResponse body = response.body();
+        if (!response.isSuccessful() || body == null || body.getChoices() == null || body.getChoices().isEmpty()
+                || body.getChoices().get(0).getMessage() == null) {
+            Log.w(TAG, "Summary request failed: " + response.code());
+            return;
+        }
+
+        String summary = body.getChoices().get(0).getMessage().getContent();
+        if (TextUtils.isEmpty(summary) || summary.trim().isEmpty()) return;
+
+        Message last = batch.get(batch.size() - 1);
+        conversationRepository.updateSummarySync(conversationId, summary.trim(), last.getTimestamp(), last.getIndex());
+    }
+}
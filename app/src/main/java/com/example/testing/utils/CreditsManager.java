@@ -17,7 +17,7 @@ public class CreditsManager {
         textViewCredits.setVisibility(View.VISIBLE);
         textViewCredits.setText("Loading credits...");
 
-        ApiService apiService = ApiClient.getClient().create(ApiService.class);
+        ApiService apiService = ApiClient.getService();
         apiService.getCredits("Bearer " + apiKey).enqueue(new Callback<ResponseBody>() {
             @Override
             public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
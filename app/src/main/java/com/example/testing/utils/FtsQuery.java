@@ -0,0 +1,64 @@
+package com.example.testing.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Locale;
+
+// Helpers for the message_fts index: turning typed text into a safe MATCH expression, and
+// scoring rows with BM25 from matchinfo('pcnalx'), since FTS4 has no ranking of its own.
+public final class FtsQuery {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private FtsQuery() {
+    }
+
+    // Every word becomes a prefix term and all of them must match. Punctuation is dropped and terms
+    // are lower-cased (FTS operators are upper-case only), so nothing typed can be a syntax error.
+    // Null if nothing is left.
+    public static String toMatchExpression(String input) {
+        if (input == null) return null;
+        StringBuilder out = new StringBuilder();
+        int n = input.length();
+        int i = 0;
+        while (i < n) {
+            while (i < n && !Character.isLetterOrDigit(input.charAt(i))) i++;
+            int start = i;
+            while (i < n && Character.isLetterOrDigit(input.charAt(i))) i++;
+            if (i > start) {
+                if (out.length() > 0) out.append(' ');
+                out.append(input.substring(start, i).toLowerCase(Locale.ROOT)).append('*');
+            }
+        }
+        return out.length() > 0 ? out.toString() : null;
+    }
+
+    // Layout for one column: p, c, n, a, l, then (hits in row, hits in all rows, rows with hits) per phrase.
+    public static double bm25(byte[] matchInfo) {
+        if (matchInfo == null || matchInfo.length < 20) return 0;
+        IntBuffer info = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = info.get(0);
+        int columns = info.get(1);
+        long rows = info.get(2) & 0xffffffffL;
+        int avgLengthAt = 3;
+        int lengthAt = 3 + columns;
+        int hitsAt = 3 + 2 * columns;
+
+        double score = 0;
+        for (int p = 0; p < phrases; p++) {
+            for (int c = 0; c < columns; c++) {
+                int x = hitsAt + 3 * (p * columns + c);
+                int termFrequency = info.get(x);
+                if (termFrequency == 0) continue;
+                int documentFrequency = info.get(x + 2);
+                double avgLength = Math.max(1, info.get(avgLengthAt + c));
+                double length = info.get(lengthAt + c);
+                double idf = Math.log((rows - documentFrequency + 0.5) / (documentFrequency + 0.5) + 1);
+                score += idf * termFrequency * (K1 + 1) / (termFrequency + K1 * (1 - B + B * length / avgLength));
+            }
+        }
+        return score;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.testing.utils;
+
+import android.os.SystemClock;
+
+import com.example.testing.data.local.entity.Message;
+
+// Collects timing for a single streamed reply: request start, first byte,
+// first content delta, every delta after that and the end of the stream.
+// Inter-token gaps go into log2 millisecond buckets: bucket 0 is < 1 ms,
+// bucket i is [2^(i-1), 2^i) ms and the last bucket is open ended.
+public class GenerationTimer {
+
+    public static final int HISTOGRAM_BUCKETS = 14;
+
+    private long requestStartNanos;
+    private long firstByteNanos;
+    private long firstDeltaNanos;
+    private long lastDeltaNanos;
+    private long endNanos;
+    private int deltaCount;
+    private final int[] gapHistogram = new int[HISTOGRAM_BUCKETS];
+
+    public void markRequestStart() {
+        requestStartNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void markFirstByte() {
+        if (firstByteNanos == 0) firstByteNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    public void markDelta() {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (firstDeltaNanos == 0) {
+            firstDeltaNanos = now;
+        } else {
+            gapHistogram[bucketFor((now - lastDeltaNanos) / 1_000_000L)]++;
+        }
+        lastDeltaNanos = now;
+        deltaCount++;
+    }
+
+    public void markEnd() {
+        if (endNanos == 0) endNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    public long getTimeToFirstByteMs() {
+        if (requestStartNanos == 0 || firstByteNanos == 0) return 0;
+        return (firstByteNanos - requestStartNanos) / 1_000_000L;
+    }
+
+    public long getTimeToFirstTokenMs() {
+        if (requestStartNanos == 0 || firstDeltaNanos == 0) return 0;
+        return (firstDeltaNanos - requestStartNanos) / 1_000_000L;
+    }
+
+    public long getTotalDurationMs() {
+        if (requestStartNanos == 0 || endNanos == 0) return 0;
+        return (endNanos - requestStartNanos) / 1_000_000L;
+    }
+
+    // Output rate over the decode phase only, so slow queues/prefill don't skew it.
+    public float getTokensPerSecond(int completionTokens) {
+        if (firstDeltaNanos == 0 || endNanos <= firstDeltaNanos) return 0f;
+        int tokens = completionTokens > 0 ? completionTokens : deltaCount;
+        double seconds = (endNanos - firstDeltaNanos) / 1_000_000_000.0;
+        return seconds > 0 ? (float) (tokens / seconds) : 0f;
+    }
+
+    public String getHistogram() {
+        StringBuilder sb = new StringBuilder(HISTOGRAM_BUCKETS * 3);
+        for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(gapHistogram[i]);
+        }
+        return sb.toString();
+    }
+
+    public void applyTo(Message message) {
+        markEnd();
+        message.setFirstByteMs(getTimeToFirstByteMs());
+        message.setTtftMs(getTimeToFirstTokenMs());
+        message.setGenerationMs(getTotalDurationMs());
+        message.setTokensPerSecond(getTokensPerSecond(message.getCompletionTokens()));
+        message.setInterTokenHistogram(deltaCount > 1 ? getHistogram() : null);
+    }
+
+    static int bucketFor(long gapMs) {
+        if (gapMs <= 0) return 0;
+        int bucket = 64 - Long.numberOfLeadingZeros(gapMs);
+        return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.testing.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Aho-Corasick automaton over case-folded keywords. Built once per keyword set; every scan is a
+// single pass over the text no matter how many keywords there are. Matches must sit on word
+// boundaries, so "cat" fires on "the cat." but not on "category".
+public final class KeywordMatcher {
+
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    // Nearest node on the fail chain (excluding itself) that ends a keyword, or 0 for none
+    private final int[] outputLink;
+    private final int[][] outputs;
+    private final int[] keywordLength;
+    private final boolean[] keywordWordStart;
+    private final boolean[] keywordWordEnd;
+    private final int[] keywordPayload;
+
+    private KeywordMatcher(char[][] edgeChars, int[][] edgeTargets, int[] fail, int[] outputLink, int[][] outputs,
+                           int[] keywordLength, boolean[] keywordWordStart, boolean[] keywordWordEnd, int[] keywordPayload) {
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.fail = fail;
+        this.outputLink = outputLink;
+        this.outputs = outputs;
+        this.keywordLength = keywordLength;
+        this.keywordWordStart = keywordWordStart;
+        this.keywordWordEnd = keywordWordEnd;
+        this.keywordPayload = keywordPayload;
+    }
+
+    public boolean isEmpty() {
+        return keywordPayload.length == 0;
+    }
+
+    // Sets hits[payload] for every keyword found in the text.
+    public void scan(CharSequence text, boolean[] hits) {
+        if (text == null || keywordPayload.length == 0) return;
+        int state = 0;
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = step(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = step(state, c);
+            }
+            state = next < 0 ? 0 : next;
+
+            for (int node = outputs[state].length > 0 ? state : outputLink[state]; node != 0; node = outputLink[node]) {
+                for (int k : outputs[node]) {
+                    if (!hits[keywordPayload[k]] && onWordBoundary(text, i + 1 - keywordLength[k], i + 1, k)) {
+                        hits[keywordPayload[k]] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private int step(int state, char c) {
+        char[] chars = edgeChars[state];
+        int lo = 0;
+        int hi = chars.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char m = chars[mid];
+            if (m < c) lo = mid + 1;
+            else if (m > c) hi = mid - 1;
+            else return edgeTargets[state][mid];
+        }
+        return -1;
+    }
+
+    private boolean onWordBoundary(CharSequence text, int start, int end, int keyword) {
+        if (keywordWordStart[keyword] && start > 0 && isWordChar(text.charAt(start - 1))) return false;
+        return !keywordWordEnd[keyword] || end >= text.length() || !isWordChar(text.charAt(end));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    public static final class Builder {
+        private final List<Map<Character, Integer>> children = new ArrayList<>();
+        private final List<List<Integer>> nodeOutputs = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<Boolean> wordStarts = new ArrayList<>();
+        private final List<Boolean> wordEnds = new ArrayList<>();
+        private final List<Integer> payloads = new ArrayList<>();
+
+        public Builder() {
+            newNode();
+        }
+
+        public Builder add(String keyword, int payload) {
+            if (keyword == null) return this;
+            keyword = keyword.trim();
+            if (keyword.isEmpty()) return this;
+
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = newNode();
+                    children.get(node).put(c, next);
+                }
+                node = next;
+            }
+            nodeOutputs.get(node).add(payloads.size());
+            lengths.add(keyword.length());
+            wordStarts.add(isWordChar(keyword.charAt(0)));
+            wordEnds.add(isWordChar(keyword.charAt(keyword.length() - 1)));
+            payloads.add(payload);
+            return this;
+        }
+
+        private int newNode() {
+            children.add(new TreeMap<>());
+            nodeOutputs.add(new ArrayList<>());
+            return children.size() - 1;
+        }
+
+        public KeywordMatcher build() {
+            int nodes = children.size();
+            char[][] edgeChars = new char[nodes][];
+            int[][] edgeTargets = new int[nodes][];
+            int[][] outputs = new int[nodes][];
+            for (int node = 0; node < nodes; node++) {
+                Map<Character, Integer> edges = children.get(node);
+                edgeChars[node] = new char[edges.size()];
+                edgeTargets[node] = new int[edges.size()];
+                int e = 0;
+                // TreeMap iterates in char order, which step() relies on for binary search
+                for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                    edgeChars[node][e] = edge.getKey();
+                    edgeTargets[node][e] = edge.getValue();
+                    e++;
+                }
+                List<Integer> out = nodeOutputs.get(node);
+                outputs[node] = new int[out.size()];
+                for (int o = 0; o < out.size(); o++) outputs[node][o] = out.get(o);
+            }
+
+            int[] fail = new int[nodes];
+            int[] outputLink = new int[nodes];
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            for (int child : edgeTargets[0]) queue.add(child);
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                for (int e = 0; e < edgeChars[node].length; e++) {
+                    char c = edgeChars[node][e];
+                    int child = edgeTargets[node][e];
+                    int f = fail[node];
+                    int target = find(edgeChars, edgeTargets, f, c);
+                    while (target < 0 && f != 0) {
+                        f = fail[f];
+                        target = find(edgeChars, edgeTargets, f, c);
+                    }
+                    fail[child] = target < 0 || target == child ? 0 : target;
+                    outputLink[child] = outputs[fail[child]].length > 0 ? fail[child] : outputLink[fail[child]];
+                    queue.add(child);
+                }
+            }
+
+            int count = payloads.size();
+            int[] keywordLength = new int[count];
+            boolean[] keywordWordStart = new boolean[count];
+            boolean[] keywordWordEnd = new boolean[count];
+            int[] keywordPayload = new int[count];
+            for (int k = 0; k < count; k++) {
+                keywordLength[k] = lengths.get(k);
+                keywordWordStart[k] = wordStarts.get(k);
+                keywordWordEnd[k] = wordEnds.get(k);
+                keywordPayload[k] = payloads.get(k);
+            }
+            return new KeywordMatcher(edgeChars, edgeTargets, fail, outputLink, outputs,
+                    keywordLength, keywordWordStart, keywordWordEnd, keywordPayload);
+        }
+
+        private static int find(char[][] edgeChars, int[][] edgeTargets, int node, char c) {
+            char[] chars = edgeChars[node];
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c) return edgeTargets[node][i];
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.testing.utils;
+
+import android.app.Application;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.entity.LorebookEntry;
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.repository.LorebookRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Compiled keyword matchers for each character's and scenario's lorebook. A book is loaded and
+// compiled on first use and kept until a write to lorebook_entry bumps the generation.
+public class LorebookIndex {
+
+    private static final int MAX_BOOKS = 32;
+
+    private static volatile LorebookIndex INSTANCE;
+
+    private final LorebookRepository lorebookRepository;
+    private final LruCache<String, Book> books = new LruCache<>(MAX_BOOKS);
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private LorebookIndex(Application application) {
+        this.lorebookRepository = LorebookRepository.getInstance(application);
+        AppDatabase.getInstance(application).getInvalidationTracker().addObserver(new InvalidationTracker.Observer("lorebook_entry") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                generation.incrementAndGet();
+                books.evictAll();
+            }
+        });
+    }
+
+    public static LorebookIndex getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (LorebookIndex.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new LorebookIndex(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Entries from the character's and the scenario's books whose keywords occur in the recent
+    // messages, in book order. Messages are only fetched when there is something to match.
+    public List<LorebookEntry> findTriggered(int characterId, Integer scenarioId, Supplier<List<Message>> recentMessages) {
+        Book characterBook = getBook(characterId, false);
+        Book scenarioBook = scenarioId != null ? getBook(scenarioId, true) : null;
+        boolean hasCharacterBook = !characterBook.isEmpty();
+        boolean hasScenarioBook = scenarioBook != null && !scenarioBook.isEmpty();
+        if (!hasCharacterBook && !hasScenarioBook) return Collections.emptyList();
+
+        List<Message> messages = recentMessages.get();
+        List<LorebookEntry> triggered = new ArrayList<>();
+        if (hasCharacterBook) characterBook.collect(messages, triggered);
+        if (hasScenarioBook) scenarioBook.collect(messages, triggered);
+        return triggered;
+    }
+
+    private Book getBook(int ownerId, boolean scenario) {
+        String key = (scenario ? "s" : "c") + ownerId;
+        Book book = books.get(key);
+        if (book != null) return book;
+
+        int builtAt = generation.get();
+        List<LorebookEntry> entries = scenario
+                ? lorebookRepository.getEnabledEntriesForScenarioSync(ownerId)
+                : lorebookRepository.getEnabledEntriesForCharacterSync(ownerId);
+        book = new Book(entries);
+        // A write that landed while we were loading already made this copy stale
+        if (builtAt == generation.get()) books.put(key, book);
+        return book;
+    }
+
+    private static final class Book {
+        private final List<LorebookEntry> entries;
+        private final KeywordMatcher matcher;
+
+        Book(List<LorebookEntry> entries) {
+            this.entries = entries;
+            KeywordMatcher.Builder builder = new KeywordMatcher.Builder();
+            for (int i = 0; i < entries.size(); i++) {
+                String keywords = entries.get(i).getKeywords();
+                if (keywords == null) continue;
+                for (String keyword : keywords.split(",")) {
+                    builder.add(keyword, i);
+                }
+            }
+            this.matcher = builder.build();
+        }
+
+        boolean isEmpty() {
+            return matcher.isEmpty();
+        }
+
+        void collect(List<Message> messages, List<LorebookEntry> out) {
+            boolean[] hits = new boolean[entries.size()];
+            for (Message msg : messages) {
+                matcher.scan(msg.getContent(), hits);
+            }
+            for (int i = 0; i < hits.length; i++) {
+                if (hits[i]) out.add(entries.get(i));
+            }
+        }
+    }
+}
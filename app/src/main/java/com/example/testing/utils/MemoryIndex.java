@@ -0,0 +1,289 @@
+package com.example.testing.utils;
+
+import android.app.Application;
+import android.database.sqlite.SQLiteConstraintException;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.dao.MessageEmbeddingDao;
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.MessageEmbedding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Similarity search over every message of a conversation, for recalling what has fallen out of
+// the context window. Vectors are written to message_embedding as messages are saved and kept in
+// memory per conversation as one packed byte array, so a search is a single linear pass of
+// byte dot products with no allocation per message.
+public class MemoryIndex {
+
+    private static final int MAX_CONVERSATIONS = 8;
+    private static final int BACKFILL_BATCH = 256;
+
+    private static volatile MemoryIndex INSTANCE;
+
+    private final MessageEmbeddingDao embeddingDao;
+    private final ExecutorService executorService;
+    // Loaded stores, least recently searched first
+    private final Map<Integer, Store> stores = new LinkedHashMap<Integer, Store>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Store> eldest) {
+            return size() > MAX_CONVERSATIONS;
+        }
+    };
+    // Changes that arrive while a store is being built from the table, replayed onto it before it's published
+    private final Map<Integer, Pending> loading = new HashMap<>();
+    // Guards stores and loading. Held only for in-memory work, never across a query or a load.
+    private final Object lock = new Object();
+    // Bumped by evictAll() so a load that started before it isn't published after it
+    private int generation;
+
+    private MemoryIndex(Application application) {
+        this(AppDatabase.getInstance(application).messageEmbeddingDao(), Executors.newSingleThreadExecutor());
+    }
+
+    MemoryIndex(MessageEmbeddingDao embeddingDao, ExecutorService executorService) {
+        this.embeddingDao = embeddingDao;
+        this.executorService = executorService;
+    }
+
+    public static MemoryIndex getInstance(Application application) {
+        if (INSTANCE == null) {
+            synchronized (MemoryIndex.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new MemoryIndex(application);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Embeds a saved message (or re-embeds an edited one) off the caller's thread.
+    public void index(Message message) {
+        if (message == null || message.getIndex() <= 0) return;
+        int messageId = message.getIndex();
+        int conversationId = message.getConversationId();
+        long timestamp = message.getTimestamp();
+        String content = message.getContent();
+
+        executorService.execute(() -> {
+            byte[] vector = TextEmbedder.embed(content);
+            try {
+                embeddingDao.insert(new MessageEmbedding(messageId, conversationId, timestamp, vector));
+            } catch (SQLiteConstraintException e) {
+                // The message was deleted before we got to it
+                return;
+            }
+            // After the insert, so a load either reads the row or is registered in loading by now
+            synchronized (lock) {
+                Store store = stores.get(conversationId);
+                if (store != null) store.put(messageId, timestamp, vector, 0);
+                Pending pending = loading.get(conversationId);
+                if (pending != null) pending.put(messageId, timestamp, vector);
+            }
+        });
+    }
+
+    // The row goes with its message through the foreign key; this only updates a loaded store.
+    public void remove(Message message) {
+        if (message == null) return;
+        synchronized (lock) {
+            Store store = stores.get(message.getConversationId());
+            if (store != null) store.remove(message.getIndex());
+            Pending pending = loading.get(message.getConversationId());
+            if (pending != null) pending.remove(message.getIndex());
+        }
+    }
+
+    // Drops the stores of conversations whose rows are gone, loaded or still loading.
+    public void evict(List<Integer> conversationIds) {
+        synchronized (lock) {
+            for (Integer conversationId : conversationIds) stores.remove(conversationId);
+            if (!loading.isEmpty()) generation++;
+        }
+    }
+
+    public void evictAll() {
+        synchronized (lock) {
+            stores.clear();
+            generation++;
+        }
+    }
+
+    // Ids of up to `limit` messages positioned before `before`, most similar to the query first.
+    public List<Integer> search(int conversationId, String query, Message before, int limit, float minSimilarity) {
+        byte[] queryVector = TextEmbedder.embed(query);
+        float queryNorm = TextEmbedder.norm(queryVector, 0);
+        if (queryNorm == 0f || limit <= 0) return new ArrayList<>();
+
+        Store store = getStore(conversationId);
+        synchronized (lock) {
+            return store.search(queryVector, queryNorm, before.getTimestamp(), before.getIndex(), limit, minSimilarity);
+        }
+    }
+
+    // Builds a missing store without holding the lock, so index() and remove() never wait on the
+    // table read or the backfill; whatever they do in the meantime is replayed before publishing.
+    private Store getStore(int conversationId) {
+        Pending pending;
+        int loadGeneration;
+        synchronized (lock) {
+            Store store = stores.get(conversationId);
+            if (store != null) return store;
+            pending = loading.get(conversationId);
+            if (pending == null) {
+                pending = new Pending();
+                loading.put(conversationId, pending);
+            }
+            pending.loaders++;
+            loadGeneration = generation;
+        }
+
+        Store loaded;
+        try {
+            loaded = load(conversationId);
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                release(conversationId, pending);
+            }
+            throw e;
+        }
+
+        synchronized (lock) {
+            release(conversationId, pending);
+            pending.applyTo(loaded);
+            if (loadGeneration != generation) return loaded;
+            Store existing = stores.putIfAbsent(conversationId, loaded);
+            return existing != null ? existing : loaded;
+        }
+    }
+
+    private void release(int conversationId, Pending pending) {
+        if (--pending.loaders == 0) loading.remove(conversationId);
+    }
+
+    private Store load(int conversationId) {
+        Store store = new Store();
+        for (MessageEmbedding embedding : embeddingDao.getEmbeddingsForConversationSync(conversationId)) {
+            store.put(embedding.getMessageId(), embedding.getMessageTimestamp(), embedding.getVector(), 0);
+        }
+
+        // Messages saved before the table existed, or written by paths that don't call index()
+        List<Message> missing;
+        while (!(missing = embeddingDao.getUnembeddedMessagesSync(conversationId, BACKFILL_BATCH)).isEmpty()) {
+            List<MessageEmbedding> batch = new ArrayList<>(missing.size());
+            for (Message msg : missing) {
+                byte[] vector = TextEmbedder.embed(msg.getContent());
+                batch.add(new MessageEmbedding(msg.getIndex(), conversationId, msg.getTimestamp(), vector));
+                store.put(msg.getIndex(), msg.getTimestamp(), vector, 0);
+            }
+            embeddingDao.insertAll(batch);
+        }
+        return store;
+    }
+
+    // What index() and remove() did to one conversation while its store was loading.
+    private static final class Pending {
+        int loaders;
+        private final Store written = new Store();
+        private final Set<Integer> removed = new HashSet<>();
+
+        void put(int messageId, long timestamp, byte[] vector) {
+            written.put(messageId, timestamp, vector, 0);
+            removed.remove(messageId);
+        }
+
+        void remove(int messageId) {
+            written.remove(messageId);
+            removed.add(messageId);
+        }
+
+        void applyTo(Store store) {
+            for (int slot = 0; slot < written.size; slot++) {
+                store.put(written.messageIds[slot], written.timestamps[slot], written.vectors, slot * TextEmbedder.DIMENSIONS);
+            }
+            for (Integer messageId : removed) store.remove(messageId);
+        }
+    }
+
+    private static final class Store {
+        private int size;
+        private int[] messageIds = new int[64];
+        private long[] timestamps = new long[64];
+        private float[] norms = new float[64];
+        private byte[] vectors = new byte[64 * TextEmbedder.DIMENSIONS];
+        private final Map<Integer, Integer> slots = new HashMap<>();
+
+        void put(int messageId, long timestamp, byte[] vector, int offset) {
+            Integer slot = slots.get(messageId);
+            if (slot == null) {
+                if (size == messageIds.length) grow();
+                slot = size++;
+                slots.put(messageId, slot);
+            }
+            messageIds[slot] = messageId;
+            timestamps[slot] = timestamp;
+            System.arraycopy(vector, offset, vectors, slot * TextEmbedder.DIMENSIONS, TextEmbedder.DIMENSIONS);
+            norms[slot] = TextEmbedder.norm(vectors, slot * TextEmbedder.DIMENSIONS);
+        }
+
+        void remove(int messageId) {
+            Integer slot = slots.remove(messageId);
+            if (slot == null) return;
+            int last = --size;
+            if (slot != last) {
+                messageIds[slot] = messageIds[last];
+                timestamps[slot] = timestamps[last];
+                norms[slot] = norms[last];
+                System.arraycopy(vectors, last * TextEmbedder.DIMENSIONS, vectors, slot * TextEmbedder.DIMENSIONS, TextEmbedder.DIMENSIONS);
+                slots.put(messageIds[slot], slot);
+            }
+        }
+
+        private void grow() {
+            int capacity = messageIds.length * 2;
+            messageIds = Arrays.copyOf(messageIds, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            norms = Arrays.copyOf(norms, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * TextEmbedder.DIMENSIONS);
+        }
+
+        List<Integer> search(byte[] query, float queryNorm, long beforeTimestamp, int beforeIndex, int limit, float minSimilarity) {
+            // Best `limit` so far, kept sorted by descending score; limit is a handful, so insertion is cheapest
+            int[] bestIds = new int[limit];
+            float[] bestScores = new float[limit];
+            int found = 0;
+
+            for (int slot = 0; slot < size; slot++) {
+                long ts = timestamps[slot];
+                if (ts > beforeTimestamp || (ts == beforeTimestamp && messageIds[slot] >= beforeIndex)) continue;
+                float norm = norms[slot];
+                if (norm == 0f) continue;
+
+                float score = TextEmbedder.dot(query, 0, vectors, slot * TextEmbedder.DIMENSIONS) / (queryNorm * norm);
+                if (score < minSimilarity || (found == limit && score <= bestScores[limit - 1])) continue;
+
+                int pos = found < limit ? found++ : limit - 1;
+                while (pos > 0 && bestScores[pos - 1] < score) {
+                    bestScores[pos] = bestScores[pos - 1];
+                    bestIds[pos] = bestIds[pos - 1];
+                    pos--;
+                }
+                bestScores[pos] = score;
+                bestIds[pos] = messageIds[slot];
+            }
+
+            List<Integer> result = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) result.add(bestIds[i]);
+            return result;
+        }
+    }
+}
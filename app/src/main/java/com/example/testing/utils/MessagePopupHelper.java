@@ -27,13 +27,12 @@ public class MessagePopupHelper {
     }
 
     public void showCharacterOptions(Message message, View anchorView, int position, User currentUser, Character currentCharacter) {
-        if (Boolean.TRUE.equals(viewModel.getIsGenerating().getValue())) {
-            Toast.makeText(context, "Please wait for generation to finish", Toast.LENGTH_SHORT).show();
-            return;
-        }
+        boolean generating = Boolean.TRUE.equals(viewModel.getIsGenerating().getValue());
 
         PopupMenu popup = new PopupMenu(context, anchorView);
         popup.getMenuInflater().inflate(R.menu.message_options_menu, popup.getMenu());
+        // Regenerate pre-empts a running reply; editing text that is still streaming in would be lost.
+        popup.getMenu().findItem(R.id.option_edit_message).setVisible(!generating);
 
         popup.setOnMenuItemClickListener(item -> {
             int itemId = item.getItemId();
@@ -56,11 +55,6 @@ public class MessagePopupHelper {
     }
 
     public void showUserOptions(Message message, View anchorView, int position) {
-        if (Boolean.TRUE.equals(viewModel.getIsGenerating().getValue())) {
-            Toast.makeText(context, "Please wait for generation to finish", Toast.LENGTH_SHORT).show();
-            return;
-        }
-
         PopupMenu popup = new PopupMenu(context, anchorView);
         popup.getMenuInflater().inflate(R.menu.message_options_menu, popup.getMenu());
         // User messages generally cannot be "regenerated" in the same way, so hide that option
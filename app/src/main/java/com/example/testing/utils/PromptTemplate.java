@@ -0,0 +1,320 @@
+package com.example.testing.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Placeholder templates for prompts, greetings and messages. A source string is compiled once
+// into literal ranges and variable slots and cached; render() is then a single pass.
+// Messages are frozen when stored: {{date}}, {{time}} and {{random:}} are filled in once, so past
+// turns don't change between sends. The stable placeholders are filled in per send (renderStable),
+// which also covers messages stored before freezing and edits.
+//
+// Supported:
+//   {{user}}, {{character}} / {{char}}, {{model}}
+//   {{date}}, {{time}}        - time of rendering
+//   {day}, {time}             - when the conversation started (legacy system prompt tokens)
+//   {{random:a,b,c}}          - a new pick on every render
+//   {{pick:a,b,c}}            - a pick that stays fixed for the conversation
+// Options may be separated with "::" instead of "," when they contain commas.
+// Anything else in braces is left as written.
+public final class PromptTemplate {
+
+    private static final int CACHE_SIZE = 512;
+    // Least recently used first; shared by the UI and the send thread
+    private static final Map<String, PromptTemplate> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, PromptTemplate>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PromptTemplate> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("EEE, MMM dd, yyyy", Locale.getDefault());
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("h:mm a", Locale.getDefault());
+
+    private static final int LITERAL = 0;
+    private static final int USER = 1;
+    private static final int CHARACTER = 2;
+    private static final int MODEL = 3;
+    private static final int DATE = 4;
+    private static final int TIME = 5;
+    private static final int START_DAY = 6;
+    private static final int START_TIME = 7;
+    private static final int RANDOM = 8;
+    private static final int PICK = 9;
+
+    // Kinds that give a different result on every render
+    private static final int VOLATILE = (1 << DATE) | (1 << TIME) | (1 << RANDOM);
+    private static final int ALL = ~0;
+
+    private final String source;
+    private final int[] kinds;
+    private final int[] starts;
+    private final int[] ends;
+    private final String[][] options;
+
+    private PromptTemplate(String source, int[] kinds, int[] starts, int[] ends, String[][] options) {
+        this.source = source;
+        this.kinds = kinds;
+        this.starts = starts;
+        this.ends = ends;
+        this.options = options;
+    }
+
+    public static PromptTemplate compile(String source) {
+        if (source == null) source = "";
+        // Most text has no placeholders at all; don't spend cache slots on it.
+        if (source.indexOf('{') < 0) return new PromptTemplate(source, null, null, null, null);
+
+        PromptTemplate cached = CACHE.get(source);
+        if (cached != null) return cached;
+
+        PromptTemplate compiled = parse(source);
+        CACHE.put(source, compiled);
+        return compiled;
+    }
+
+    public static String render(String source, Variables vars) {
+        return compile(source).render(vars);
+    }
+
+    public static String renderStable(String source, Variables vars) {
+        return compile(source).render(vars, ALL & ~VOLATILE);
+    }
+
+    // Fills in only the volatile placeholders, with the values of this moment, leaving the rest as
+    // written for renderStable(). Needs no names, so it can run wherever a message is saved.
+    public static String freeze(String source) {
+        if (source == null) return null;
+        PromptTemplate template = compile(source);
+        if (template.isLiteral()) return source;
+        return template.render(new Variables(null, null, null, 0, 0), VOLATILE);
+    }
+
+    public boolean isLiteral() {
+        return kinds == null;
+    }
+
+    public String render(Variables vars) {
+        return render(vars, ALL);
+    }
+
+    private String render(Variables vars, int fill) {
+        if (kinds == null) return source;
+        StringBuilder out = vars.buffer;
+        out.setLength(0);
+        renderTo(vars, out, fill);
+        return out.toString();
+    }
+
+    public void renderTo(Variables vars, StringBuilder out) {
+        renderTo(vars, out, ALL);
+    }
+
+    // Placeholders whose kind isn't in fill are copied as written
+    private void renderTo(Variables vars, StringBuilder out, int fill) {
+        if (kinds == null) {
+            out.append(source);
+            return;
+        }
+        for (int i = 0; i < kinds.length; i++) {
+            if (kinds[i] != LITERAL && (fill & (1 << kinds[i])) == 0) {
+                out.append(source, starts[i], ends[i]);
+                continue;
+            }
+            switch (kinds[i]) {
+                case LITERAL:
+                    out.append(source, starts[i], ends[i]);
+                    break;
+                case USER:
+                    out.append(vars.userName);
+                    break;
+                case CHARACTER:
+                    out.append(vars.characterName);
+                    break;
+                case MODEL:
+                    out.append(vars.model);
+                    break;
+                case DATE:
+                    out.append(vars.nowDay());
+                    break;
+                case TIME:
+                    out.append(vars.nowTime());
+                    break;
+                case START_DAY:
+                    out.append(vars.startDay());
+                    break;
+                case START_TIME:
+                    out.append(vars.startTime());
+                    break;
+                case RANDOM:
+                    out.append(options[i][ThreadLocalRandom.current().nextInt(options[i].length)]);
+                    break;
+                case PICK:
+                    out.append(options[i][stablePick(vars.seed, starts[i], options[i].length)]);
+                    break;
+            }
+        }
+    }
+
+    private static PromptTemplate parse(String source) {
+        List<int[]> segments = new ArrayList<>();
+        List<String[]> segmentOptions = new ArrayList<>();
+        int length = source.length();
+        int literalStart = 0;
+        int i = source.indexOf('{');
+
+        while (i >= 0 && i < length) {
+            int kind = -1;
+            int end = -1;
+            String[] choices = null;
+
+            if (source.startsWith("{{", i)) {
+                int close = source.indexOf("}}", i + 2);
+                if (close > 0) {
+                    String name = source.substring(i + 2, close).trim();
+                    end = close + 2;
+                    switch (name.toLowerCase(Locale.ROOT)) {
+                        case "user": kind = USER; break;
+                        case "character":
+                        case "char": kind = CHARACTER; break;
+                        case "model": kind = MODEL; break;
+                        case "date": kind = DATE; break;
+                        case "time": kind = TIME; break;
+                        default:
+                            if (startsWithIgnoreCase(name, "random:")) {
+                                choices = splitOptions(name.substring(7));
+                                kind = RANDOM;
+                            } else if (startsWithIgnoreCase(name, "pick:")) {
+                                choices = splitOptions(name.substring(5));
+                                kind = PICK;
+                            }
+                    }
+                }
+            } else if (source.startsWith("{day}", i)) {
+                kind = START_DAY;
+                end = i + 5;
+            } else if (source.startsWith("{time}", i)) {
+                kind = START_TIME;
+                end = i + 6;
+            }
+
+            if (kind == -1) {
+                i = source.indexOf('{', i + 1);
+                continue;
+            }
+            if (i > literalStart) {
+                segments.add(new int[]{LITERAL, literalStart, i});
+                segmentOptions.add(null);
+            }
+            segments.add(new int[]{kind, i, end});
+            segmentOptions.add(choices);
+            literalStart = end;
+            i = source.indexOf('{', end);
+        }
+        if (literalStart < length) {
+            segments.add(new int[]{LITERAL, literalStart, length});
+            segmentOptions.add(null);
+        }
+
+        int n = segments.size();
+        int[] kinds = new int[n];
+        int[] starts = new int[n];
+        int[] ends = new int[n];
+        String[][] options = new String[n][];
+        for (int s = 0; s < n; s++) {
+            int[] segment = segments.get(s);
+            kinds[s] = segment[0];
+            starts[s] = segment[1];
+            ends[s] = segment[2];
+            options[s] = segmentOptions.get(s);
+        }
+        return new PromptTemplate(source, kinds, starts, ends, options);
+    }
+
+    private static String[] splitOptions(String list) {
+        String[] parts = list.contains("::") ? list.split("::", -1) : list.split(",", -1);
+        for (int p = 0; p < parts.length; p++) parts[p] = parts[p].trim();
+        return parts;
+    }
+
+    private static boolean startsWithIgnoreCase(String text, String prefix) {
+        return text.regionMatches(true, 0, prefix, 0, prefix.length());
+    }
+
+    // Same pick for the same conversation and placeholder position on every render.
+    private static int stablePick(long seed, int position, int count) {
+        long h = seed * 0x9E3779B97F4A7C15L + position;
+        h ^= (h >>> 33);
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= (h >>> 33);
+        return (int) Math.floorMod(h, (long) count);
+    }
+
+    // Values for one render context. Not thread safe: the output buffer is reused between renders.
+    public static final class Variables {
+        private final String userName;
+        private final String characterName;
+        private final String model;
+        private final long startedAt;
+        private final long seed;
+        private final StringBuilder buffer = new StringBuilder(256);
+
+        private String startDay;
+        private String startTime;
+        private String nowDay;
+        private String nowTime;
+
+        public Variables(String userName, String characterName, String model, long startedAt, long seed) {
+            this.userName = userName != null ? userName : "User";
+            this.characterName = characterName != null ? characterName : "Character";
+            this.model = model != null ? model : "";
+            this.startedAt = startedAt > 0 ? startedAt : System.currentTimeMillis();
+            this.seed = seed;
+        }
+
+        public String getUserName() { return userName; }
+        public String getCharacterName() { return characterName; }
+
+        public String startDay() {
+            if (startDay == null) startDay = formatDay(startedAt);
+            return startDay;
+        }
+
+        public String startTime() {
+            if (startTime == null) startTime = formatTime(startedAt);
+            return startTime;
+        }
+
+        private String nowDay() {
+            if (nowDay == null) nowDay = formatDay(System.currentTimeMillis());
+            return nowDay;
+        }
+
+        private String nowTime() {
+            if (nowTime == null) nowTime = formatTime(System.currentTimeMillis());
+            return nowTime;
+        }
+    }
+
+    public static String formatDay(long millis) {
+        return DAY_FORMAT.format(toLocal(millis));
+    }
+
+    public static String formatTime(long millis) {
+        return TIME_FORMAT.format(toLocal(millis));
+    }
+
+    private static ZonedDateTime toLocal(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.testing.utils;
+
+import android.os.SystemClock;
+
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.repository.ConversationRepository;
+import com.example.testing.data.repository.MessageRepository;
+
+// Buffers streamed deltas in memory and writes them to the database on a
+// time/size budget instead of once per token.
+public class StreamingMessageWriter {
+
+    public static final long DEFAULT_FLUSH_INTERVAL_MS = 150;
+    public static final int DEFAULT_FLUSH_CHAR_BUDGET = 256;
+
+    // Used when the UI is fed live from memory and the database only needs checkpoints.
+    public static final long CHECKPOINT_FLUSH_INTERVAL_MS = 1000;
+    public static final int CHECKPOINT_FLUSH_CHAR_BUDGET = 4096;
+
+    private final Message message;
+    private final MessageRepository messageRepository;
+    private final ConversationRepository conversationRepository;
+    private final long flushIntervalMs;
+    private final int flushCharBudget;
+
+    private final StringBuilder content = new StringBuilder();
+    private int pendingChars = 0;
+    private long lastFlushAt;
+
+    public StreamingMessageWriter(Message message,
+                                  MessageRepository messageRepository,
+                                  ConversationRepository conversationRepository) {
+        this(message, messageRepository, conversationRepository, DEFAULT_FLUSH_INTERVAL_MS, DEFAULT_FLUSH_CHAR_BUDGET);
+    }
+
+    public StreamingMessageWriter(Message message,
+                                  MessageRepository messageRepository,
+                                  ConversationRepository conversationRepository,
+                                  long flushIntervalMs,
+                                  int flushCharBudget) {
+        this.message = message;
+        this.messageRepository = messageRepository;
+        this.conversationRepository = conversationRepository;
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushCharBudget = flushCharBudget;
+        this.lastFlushAt = SystemClock.uptimeMillis();
+    }
+
+    public void append(String delta) {
+        if (delta == null || delta.isEmpty()) return;
+
+        content.append(delta);
+        pendingChars += delta.length();
+
+        if (pendingChars >= flushCharBudget || SystemClock.uptimeMillis() - lastFlushAt >= flushIntervalMs) {
+            flush();
+        }
+    }
+
+    // Writes whatever is buffered. Cheap no-op when nothing changed since the last flush.
+    public void flush() {
+        lastFlushAt = SystemClock.uptimeMillis();
+        if (pendingChars == 0) return;
+        pendingChars = 0;
+
+        String snapshot = content.toString();
+        message.setContent(snapshot);
+        messageRepository.updateContentSync(message.getIndex(), snapshot);
+        conversationRepository.updateLastUpdatedSync(message.getConversationId(), System.currentTimeMillis());
+    }
+
+    public String getContent() {
+        return content.toString();
+    }
+
+    public boolean isEmpty() {
+        return content.length() == 0;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.testing.utils;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.room.InvalidationTracker;
+
+import com.example.testing.data.local.AppDatabase;
+import com.example.testing.data.local.entity.Character;
+import com.example.testing.data.local.entity.User;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Per-conversation cache of the compiled system prompt. Anything that feeds the prompt
+// (user config, character, persona, scenario) bumps the generation through Room's invalidation
+// tracker, which retires every entry at once. Placeholders are filled in per send.
+// The conversation table is left out on purpose: last_updated changes on every message.
+public class SystemPromptCache {
+
+    private static final int MAX_CONVERSATIONS = 16;
+    private static final String[] SOURCE_TABLES = {"user_config", "character", "persona", "scenario"};
+
+    private static volatile SystemPromptCache INSTANCE;
+
+    private final LruCache<Integer, Entry> entries = new LruCache<>(MAX_CONVERSATIONS);
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private SystemPromptCache(Context context) {
+        AppDatabase.getInstance(context).getInvalidationTracker().addObserver(new InvalidationTracker.Observer(SOURCE_TABLES) {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                generation.incrementAndGet();
+                entries.evictAll();
+            }
+        });
+    }
+
+    public static SystemPromptCache getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (SystemPromptCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SystemPromptCache(context.getApplicationContext());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // Read before building an entry, so a change that lands mid-build leaves the entry stale.
+    public int getGeneration() {
+        return generation.get();
+    }
+
+    public Entry get(int conversationId, User user, Character character, int personaId, Integer scenarioId) {
+        Entry entry = entries.get(conversationId);
+        if (entry == null || entry.generation != generation.get()) return null;
+        // New row objects come from LiveData after an edit; don't trust an entry built from the old ones.
+        if (entry.user != user || entry.character != character) return null;
+        if (entry.personaId != personaId || !Objects.equals(entry.scenarioId, scenarioId)) return null;
+        return entry;
+    }
+
+    public void put(int conversationId, Entry entry) {
+        if (entry.generation == generation.get()) {
+            entries.put(conversationId, entry);
+        }
+    }
+
+    public static final class Entry {
+        private final int generation;
+        private final User user;
+        private final Character character;
+        private final int personaId;
+        private final Integer scenarioId;
+
+        private final String userName;
+        private final String characterName;
+        private final PromptTemplate template;
+
+        private String lastRendered;
+        private int lastRenderedTokens;
+
+        public Entry(int generation, User user, Character character, int personaId, Integer scenarioId,
+                     String userName, String characterName, String source) {
+            this.generation = generation;
+            this.user = user;
+            this.character = character;
+            this.personaId = personaId;
+            this.scenarioId = scenarioId;
+            this.userName = userName;
+            this.characterName = characterName;
+            this.template = PromptTemplate.compile(source);
+        }
+
+        public String getUserName() { return userName; }
+        public String getCharacterName() { return characterName; }
+
+        public String render(PromptTemplate.Variables vars) {
+            return template.render(vars);
+        }
+
+        // The rendered prompt rarely changes between sends, so keep the count for the last one.
+        public synchronized int countTokens(String rendered, TokenCounter tokenCounter) {
+            if (!rendered.equals(lastRendered)) {
+                lastRenderedTokens = tokenCounter.count(rendered);
+                lastRendered = rendered;
+            }
+            return lastRenderedTokens;
+        }
+    }
+}
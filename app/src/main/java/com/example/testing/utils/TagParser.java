@@ -0,0 +1,35 @@
+package com.example.testing.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+// The character.tags column holds names joined with '|'; older imports used commas. Both are
+// split here, trimmed, and de-duplicated ignoring case, keeping the first spelling and the order.
+public final class TagParser {
+
+    public static final String SEPARATOR = "|";
+
+    private TagParser() {
+    }
+
+    public static List<String> parse(String tags) {
+        if (tags == null || tags.trim().isEmpty()) return Collections.emptyList();
+
+        List<String> names = new ArrayList<>();
+        Set<String> seen = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        for (String part : tags.split("[,|]")) {
+            String name = part.trim();
+            if (!name.isEmpty() && seen.add(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    public static String join(List<String> names) {
+        return String.join(SEPARATOR, names);
+    }
+}
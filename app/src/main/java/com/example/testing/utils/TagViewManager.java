@@ -23,8 +23,13 @@ public class TagViewManager {
 
     // New method for "Filter Mode" (Select/Deselect tags)
     public static Chip createFilterChip(Context context, String tag, boolean isSelected, CompoundButton.OnCheckedChangeListener onCheckedChangeListener) {
+        return createFilterChip(context, tag, tag, isSelected, onCheckedChangeListener);
+    }
+
+    // Same, with a label other than the bare tag (e.g. with its usage count); colour still follows the tag
+    public static Chip createFilterChip(Context context, String tag, CharSequence label, boolean isSelected, CompoundButton.OnCheckedChangeListener onCheckedChangeListener) {
         Chip chip = new Chip(context);
-        chip.setText(tag);
+        chip.setText(label);
         chip.setCheckable(true);
         chip.setClickable(true);
         chip.setChecked(isSelected);
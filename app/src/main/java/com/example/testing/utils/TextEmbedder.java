@@ -0,0 +1,125 @@
+package com.example.testing.utils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+// Offline text embedding by feature hashing: words, word pairs and character trigrams are hashed
+// into a fixed number of signed buckets, then the vector is scaled into signed bytes. Trigrams
+// let "sword" and "swords" land close together without a stemmer. No model, no network.
+public final class TextEmbedder {
+
+    public static final int DIMENSIONS = 256;
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float PAIR_WEIGHT = 0.25f;
+    private static final float TRIGRAM_WEIGHT = 0.25f;
+
+    private static final int WORD_SEED = 0x9747b28c;
+    private static final int TRIGRAM_SEED = 0x5bd1e995;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "the", "and", "but", "for", "nor", "not", "are", "was", "were", "been", "being", "have", "has", "had",
+            "you", "your", "yours", "she", "her", "hers", "him", "his", "they", "them", "their", "its", "our",
+            "this", "that", "these", "those", "with", "from", "into", "onto", "then", "than", "there", "here",
+            "what", "when", "where", "which", "who", "whom", "how", "why", "all", "any", "can", "could", "would",
+            "should", "will", "just", "also", "very", "too", "out", "off", "over", "about", "again", "some",
+            "such", "only", "own", "same", "did", "does", "doing", "let", "yes", "yeah", "okay", "now"));
+
+    private TextEmbedder() {
+    }
+
+    // Never null; text with nothing worth hashing gives the zero vector, which matches nothing.
+    public static byte[] embed(CharSequence text) {
+        byte[] out = new byte[DIMENSIONS];
+        if (text == null) return out;
+
+        float[] v = new float[DIMENSIONS];
+        char[] word = new char[32];
+        int wordLength = 0;
+        int previousWordHash = 0;
+        boolean hasPrevious = false;
+
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? Character.toLowerCase(text.charAt(i)) : ' ';
+            if (c == '\u2019') c = '\'';
+            if (Character.isLetterOrDigit(c) || (c == '\'' && wordLength > 0)) {
+                if (wordLength < word.length) word[wordLength++] = c;
+                continue;
+            }
+            if (wordLength == 0) continue;
+
+            // Drop possessive/contraction tails so "Mira's" and "Mira" share a word feature
+            int length = wordLength;
+            if (length >= 2 && word[length - 2] == '\'') length -= 2;
+            while (length > 0 && word[length - 1] == '\'') length--;
+            wordLength = 0;
+            if (length < 3 || isStopWord(word, length)) continue;
+
+            int wordHash = hash(word, 0, length, WORD_SEED);
+            add(v, wordHash, WORD_WEIGHT);
+            if (hasPrevious) add(v, mix(previousWordHash * 31 + wordHash), PAIR_WEIGHT);
+            previousWordHash = wordHash;
+            hasPrevious = true;
+
+            // Trigrams of the word padded with boundary markers: "^sw", "swo", ..., "rd$"
+            for (int start = -1; start + 3 <= length + 1; start++) {
+                int h = TRIGRAM_SEED;
+                for (int k = start; k < start + 3; k++) {
+                    char tc = k < 0 ? '^' : k >= length ? '$' : word[k];
+                    h = (h ^ tc) * 0x01000193;
+                }
+                add(v, mix(h), TRIGRAM_WEIGHT);
+            }
+        }
+
+        float maxAbs = 0f;
+        for (float x : v) maxAbs = Math.max(maxAbs, Math.abs(x));
+        if (maxAbs == 0f) return out;
+        float scale = 127f / maxAbs;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            out[i] = (byte) Math.round(v[i] * scale);
+        }
+        return out;
+    }
+
+    public static int dot(byte[] a, int aOffset, byte[] b, int bOffset) {
+        int sum = 0;
+        for (int i = 0; i < DIMENSIONS; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    public static float norm(byte[] v, int offset) {
+        return (float) Math.sqrt(dot(v, offset, v, offset));
+    }
+
+    private static void add(float[] v, int hash, float weight) {
+        // Low bits pick the bucket, the top bit the sign, so collisions tend to cancel out
+        v[hash & (DIMENSIONS - 1)] += hash < 0 ? -weight : weight;
+    }
+
+    private static boolean isStopWord(char[] word, int length) {
+        return length <= 7 && STOP_WORDS.contains(new String(word, 0, length));
+    }
+
+    private static int hash(char[] chars, int offset, int length, int seed) {
+        int h = seed;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ chars[i]) * 0x01000193;
+        }
+        return mix(h);
+    }
+
+    // Murmur3 finalizer; FNV alone leaves the low bits poorly mixed for short keys
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
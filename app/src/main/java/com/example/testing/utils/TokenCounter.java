@@ -0,0 +1,101 @@
+package com.example.testing.utils;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import com.example.testing.data.local.entity.Message;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// On-device token estimate for context budgeting. No tokenizer vocabulary ships with the app
+// (a tiktoken rank file is several MB, and the right one depends on the model), so counts are
+// estimated. Text is split the way cl100k pre-tokenizes it. Within a piece, Latin text is charged
+// one token per four UTF-8 bytes, which is about what BPE gets out of English and similar text.
+// Every other code point is charged on its own, since BPE rarely merges across them: one token
+// for two-byte scripts (Greek, Cyrillic, Arabic...), two for three-byte ones (CJK, kana, Indic)
+// and three for emoji and the rest of the supplementary planes, cl100k's usual upper end for each.
+// Each piece costs at least one token. This is an estimate, not a count: it runs high for common
+// CJK and low only for unusual text, so ChatPromptGenerator keeps a safety margin on top.
+public class TokenCounter {
+
+    // Chat framing cost per message (role and separators) and for priming the reply.
+    public static final int MESSAGE_OVERHEAD = 4;
+    public static final int REPLY_PRIMING = 3;
+
+    private static final int MESSAGE_CACHE_SIZE = 2048;
+    // End of Latin Extended-B; below this is charged by bytes like ASCII
+    private static final char LATIN_END = 0x250;
+
+    // cl100k pre-tokenizer split; BPE never merges across these boundaries
+    private static final Pattern PIECE_PATTERN = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+");
+
+    private static volatile TokenCounter INSTANCE;
+
+    // message index -> {content hash, content length, token count}
+    private final LruCache<Integer, int[]> messageCounts = new LruCache<>(MESSAGE_CACHE_SIZE);
+
+    private TokenCounter() {
+    }
+
+    public static TokenCounter getInstance(Context context) {
+        if (INSTANCE == null) {
+            synchronized (TokenCounter.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new TokenCounter();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    public int count(String text) {
+        if (text == null || text.isEmpty()) return 0;
+
+        int total = 0;
+        Matcher matcher = PIECE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            total += Math.max(1, pieceTokens(text, matcher.start(), matcher.end()));
+        }
+        return total;
+    }
+
+    private static int pieceTokens(String text, int start, int end) {
+        int latinBytes = 0;
+        int tokens = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                latinBytes++;
+            } else if (c < LATIN_END || (c >= 0x300 && c < 0x370)) {
+                // Accented Latin, and combining accents that ride along with their letter
+                latinBytes += 2;
+            } else if (c < 0x800) {
+                tokens += 1;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                tokens += 3;
+                i++;
+            } else {
+                tokens += 2;
+            }
+        }
+        return tokens + (latinBytes + 3) / 4;
+    }
+
+    // Token cost of a stored message including chat framing. Cached by message id and
+    // revalidated against the content, so a send only counts messages it hasn't seen.
+    public int countMessage(Message message) {
+        String content = message.getContent() != null ? message.getContent() : "";
+        int id = message.getIndex();
+        if (id == 0) return count(content) + MESSAGE_OVERHEAD;
+
+        int[] cached = messageCounts.get(id);
+        if (cached != null && cached[1] == content.length() && cached[0] == content.hashCode()) {
+            return cached[2];
+        }
+        int tokens = count(content) + MESSAGE_OVERHEAD;
+        messageCounts.put(id, new int[]{content.hashCode(), content.length(), tokens});
+        return tokens;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.testing.data.remote.stream;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SseEventReaderTest {
+
+    private static SseEventReader reader(String stream) {
+        return new SseEventReader(new Buffer().writeUtf8(stream));
+    }
+
+    @Test
+    public void joinsMultiLineDataAndSkipsComments() throws IOException {
+        SseEventReader events = reader(": keep-alive\n\ndata: first\ndata:second\r\n\n: ping\ndata: third\n\n");
+
+        assertTrue(events.next());
+        assertEquals("first\nsecond", events.getData().toString());
+        assertEquals("message", events.getEventType());
+
+        assertTrue(events.next());
+        assertEquals("third", events.getData().toString());
+
+        assertFalse(events.next());
+    }
+
+    @Test
+    public void acceptsBareCarriageReturnLineEnds() throws IOException {
+        SseEventReader events = reader("data: first\rdata: second\r\r: ping\rdata: third\r\n\r\ndata: fourth\r\r");
+
+        assertTrue(events.next());
+        assertEquals("first\nsecond", events.getData().toString());
+
+        assertTrue(events.next());
+        assertEquals("third", events.getData().toString());
+
+        assertTrue(events.next());
+        assertEquals("fourth", events.getData().toString());
+
+        assertFalse(events.next());
+    }
+
+    @Test
+    public void tracksEventIdAndRetryFields() throws IOException {
+        SseEventReader events = reader("event: usage\nid: 42\nretry: 1500\ndata: {}\n\ndata: x\n\n");
+
+        assertTrue(events.next());
+        assertEquals("usage", events.getEventType());
+        assertEquals("42", events.getLastEventId());
+        assertEquals(1500, events.getRetryMs());
+
+        assertTrue(events.next());
+        assertEquals("message", events.getEventType());
+        assertEquals("42", events.getLastEventId());
+    }
+
+    @Test
+    public void dropsUnterminatedEventAtEof() throws IOException {
+        SseEventReader events = reader("data: done\n\ndata: partial");
+
+        assertTrue(events.next());
+        assertEquals("done", events.getData().toString());
+        assertFalse(events.next());
+    }
+
+    @Test
+    public void decodesNonAsciiData() throws IOException {
+        SseEventReader events = reader("data: café — ok\n\n");
+
+        assertTrue(events.next());
+        assertEquals("café — ok", events.getData().toString());
+    }
+
+    @Test
+    public void parserRecoversAfterMalformedChunk() {
+        ChatChunkParser parser = new ChatChunkParser();
+        ChatStreamChunk chunk = new ChatStreamChunk();
+
+        assertFalse(parser.parse("{\"choices\":[{\"delta\":", chunk));
+        assertTrue(parser.parse("{\"choices\":[{\"delta\":{\"content\":\"hi\"},\"finish_reason\":\"stop\"}]}", chunk));
+        assertEquals("hi", chunk.getContent());
+        assertEquals("stop", chunk.getFinishReason());
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.testing.data.remote.stream;
+
+import com.example.testing.data.remote.response.ChatCompletionResponse;
+import com.google.gson.Gson;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the Okio SSE decoder against the old BufferedReader + per-chunk Gson
+ * loop on a recorded OpenRouter stream. The timing run is ignored in normal test
+ * passes; remove its @Ignore locally and run with:
+ * ./gradlew :app:testDebugUnitTest --tests "*SseStreamBenchmark"
+ */
+public class SseStreamBenchmark {
+
+    private static final String RECORDED_STREAM = "sse/openrouter_long_reply.sse";
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 50;
+
+    @Test
+    public void decoderMatchesLegacyPath() throws IOException {
+        byte[] stream = loadRecording();
+        Result legacy = runLegacy(stream);
+        Result decoder = runDecoder(stream);
+
+        assertEquals(legacy.content, decoder.content);
+        assertEquals(legacy.finishReason, decoder.finishReason);
+        assertEquals(legacy.totalTokens, decoder.totalTokens);
+    }
+
+    @Ignore("Timing run; enable by hand")
+    @Test
+    public void benchmark() throws IOException {
+        byte[] stream = loadRecording();
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            runLegacy(stream);
+            runDecoder(stream);
+        }
+
+        long legacyNanos = 0;
+        long decoderNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            long start = System.nanoTime();
+            runLegacy(stream);
+            legacyNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            runDecoder(stream);
+            decoderNanos += System.nanoTime() - start;
+        }
+
+        System.out.printf("SSE %d bytes x %d rounds: legacy %.2f ms/stream, okio decoder %.2f ms/stream (%.1fx)%n",
+                stream.length, MEASURED_ROUNDS,
+                legacyNanos / 1e6 / MEASURED_ROUNDS,
+                decoderNanos / 1e6 / MEASURED_ROUNDS,
+                (double) legacyNanos / Math.max(1, decoderNanos));
+    }
+
+    // Mirrors the pre-decoder ChatStreamHandler loop.
+    private static Result runLegacy(byte[] stream) throws IOException {
+        Result result = new Result();
+        StringBuilder contentBuilder = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(stream), StandardCharsets.UTF_8));
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("data: ")) {
+                String jsonPart = line.substring(6).trim();
+                if (jsonPart.equals("[DONE]")) break;
+
+                ChatCompletionResponse chunk = new Gson().fromJson(jsonPart, ChatCompletionResponse.class);
+                if (chunk.getUsage() != null) {
+                    result.totalTokens = chunk.getUsage().getTotalTokens();
+                }
+                if (chunk.getChoices() != null && !chunk.getChoices().isEmpty()) {
+                    ChatCompletionResponse.Choice choice = chunk.getChoices().get(0);
+                    if (choice.getDelta() != null && choice.getDelta().getContent() != null) {
+                        contentBuilder.append(choice.getDelta().getContent());
+                    }
+                    if (choice.getFinishReason() != null) {
+                        result.finishReason = choice.getFinishReason();
+                    }
+                }
+            }
+        }
+        result.content = contentBuilder.toString();
+        return result;
+    }
+
+    private static Result runDecoder(byte[] stream) throws IOException {
+        Result result = new Result();
+        StringBuilder contentBuilder = new StringBuilder();
+        SseEventReader events = new SseEventReader(new Buffer().write(stream));
+        ChatChunkParser parser = new ChatChunkParser();
+        ChatStreamChunk chunk = new ChatStreamChunk();
+
+        while (events.next()) {
+            if ("[DONE]".contentEquals(events.getData())) break;
+            if (!parser.parse(events.getData(), chunk)) continue;
+
+            if (chunk.hasUsage()) {
+                result.totalTokens = chunk.getTotalTokens();
+            }
+            if (chunk.getContent() != null) {
+                contentBuilder.append(chunk.getContent());
+            }
+            if (chunk.getFinishReason() != null) {
+                result.finishReason = chunk.getFinishReason();
+            }
+        }
+        result.content = contentBuilder.toString();
+        return result;
+    }
+
+    private static byte[] loadRecording() throws IOException {
+        InputStream in = SseStreamBenchmark.class.getClassLoader().getResourceAsStream(RECORDED_STREAM);
+        assertNotNull("Missing test resource " + RECORDED_STREAM, in);
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static class Result {
+        String content;
+        String finishReason;
+        int totalTokens;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.testing.data.repository;
+
+import com.example.testing.data.local.entity.relations.CharacterSearchText;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CharacterSearchIndexTest {
+
+    private final List<CharacterSearchText> texts = new ArrayList<>();
+    private final CharacterSearchIndex index = new CharacterSearchIndex(() -> new ArrayList<>(texts), null);
+
+    private static CharacterSearchText text(int id, String name, String tags, String personality) {
+        CharacterSearchText text = new CharacterSearchText();
+        text.characterId = id;
+        text.name = name;
+        text.tags = tags;
+        text.personalityExcerpt = personality;
+        return text;
+    }
+
+    private void assertFinds(String query, Integer... ids) {
+        assertEquals(query, new HashSet<>(Arrays.asList(ids)), index.search(query).keySet());
+    }
+
+    @Test
+    public void matchesWholeWordsAndPrefixes() {
+        texts.add(text(1, "Captain Morgan", "pirate|sea", "A loud sailor"));
+        texts.add(text(2, "Morgana", "witch", "Keeps to the forest"));
+
+        assertFinds("morgan", 1, 2);
+        assertFinds("pir", 1);
+        assertFinds("forest witch", 2);
+        assertFinds("");
+        assertFinds("?!");
+    }
+
+    @Test
+    public void exactMatchOutscoresPrefixAndNameOutscoresText() {
+        texts.add(text(1, "Morgan", null, null));
+        texts.add(text(2, "Morgana", null, null));
+        texts.add(text(3, "Elise", null, "Sister of morgan"));
+
+        Map<Integer, Float> scores = index.search("morgan");
+        assertTrue(scores.get(1) > scores.get(2));
+        assertTrue(scores.get(1) > scores.get(3));
+    }
+
+    @Test
+    public void everyQueryWordHasToMatch() {
+        texts.add(text(1, "Captain Morgan", "pirate", null));
+        texts.add(text(2, "Captain Hale", "soldier", null));
+
+        assertFinds("captain pirate", 1);
+        assertFinds("captain dragon");
+    }
+
+    @Test
+    public void fuzzyMatchingStartsAtFourLetters() {
+        texts.add(text(1, "Bob", null, null));
+        texts.add(text(2, "Luna", null, null));
+
+        // Three letters: exact or prefix only
+        assertFinds("bab");
+        // Four letters: one edit
+        assertFinds("lina", 2);
+    }
+
+    @Test
+    public void twoEditsOnlyFromSevenLetters() {
+        texts.add(text(1, "Drake", null, null));
+        texts.add(text(2, "Gandalf", null, null));
+
+        // Five letters, two edits away: too far
+        assertFinds("draco");
+        // One edit away is fine at five
+        assertFinds("drak3", 1);
+        // Eight letters, two edits away
+        assertFinds("gandalph", 2);
+    }
+
+    @Test
+    public void foldsCaseAndAccents() {
+        texts.add(text(1, "Zoë", null, null));
+        texts.add(text(2, "ÉLODIE", null, null));
+
+        assertFinds("zoe", 1);
+        assertFinds("Élodie", 2);
+        assertFinds("elodie", 2);
+    }
+
+    @Test
+    public void refreshPicksUpChangedAndRemovedCharacters() {
+        texts.add(text(1, "Morgan", null, null));
+        texts.add(text(2, "Luna", null, null));
+        assertFinds("morgan", 1);
+
+        texts.set(0, text(1, "Morgana", null, null));
+        texts.remove(1);
+
+        assertFinds("morgana", 1);
+        assertFinds("luna");
+        assertFinds("lina");
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.testing.utils;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FtsQueryTest {
+
+    // matchinfo('pcnalx') for one column: phrases, columns, rows, average length, length, then
+    // (hits in row, hits in all rows, rows with hits) per phrase
+    private static byte[] matchInfo(int rows, int avgLength, int length, int... hits) {
+        int phrases = hits.length / 3;
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (5 + hits.length)).order(ByteOrder.nativeOrder());
+        buffer.putInt(phrases).putInt(1).putInt(rows).putInt(avgLength).putInt(length);
+        for (int h : hits) buffer.putInt(h);
+        return buffer.array();
+    }
+
+    @Test
+    public void wordsBecomeLowerCasePrefixTerms() {
+        assertEquals("dragon* village*", FtsQuery.toMatchExpression("Dragon VILLAGE"));
+        assertEquals("zoë* 42*", FtsQuery.toMatchExpression("  Zoë, 42! "));
+    }
+
+    @Test
+    public void operatorsAndSyntaxAreNeutralised() {
+        assertEquals("a* or* b*", FtsQuery.toMatchExpression("a OR b"));
+        assertEquals("not* near* x*", FtsQuery.toMatchExpression("NOT \"NEAR\" (x*)"));
+        assertEquals("col* value*", FtsQuery.toMatchExpression("col:value -"));
+    }
+
+    @Test
+    public void nothingToSearchGivesNull() {
+        assertNull(FtsQuery.toMatchExpression(null));
+        assertNull(FtsQuery.toMatchExpression(""));
+        assertNull(FtsQuery.toMatchExpression(" *\"()-: "));
+    }
+
+    @Test
+    public void bm25IgnoresShortOrMissingInfo() {
+        assertEquals(0, FtsQuery.bm25(null), 0);
+        assertEquals(0, FtsQuery.bm25(new byte[16]), 0);
+        assertEquals(0, FtsQuery.bm25(matchInfo(100, 10, 10, 0, 5, 5)), 0);
+    }
+
+    @Test
+    public void bm25RanksMoreHitsRarerTermsAndShorterRowsHigher() {
+        double base = FtsQuery.bm25(matchInfo(100, 10, 10, 1, 5, 5));
+        assertTrue(base > 0);
+        assertTrue(FtsQuery.bm25(matchInfo(100, 10, 10, 3, 5, 5)) > base);
+        assertTrue(FtsQuery.bm25(matchInfo(100, 10, 10, 1, 50, 50)) < base);
+        assertTrue(FtsQuery.bm25(matchInfo(100, 10, 40, 1, 5, 5)) < base);
+    }
+
+    @Test
+    public void bm25SumsOverPhrases() {
+        double one = FtsQuery.bm25(matchInfo(100, 10, 10, 1, 5, 5));
+        double both = FtsQuery.bm25(matchInfo(100, 10, 10, 1, 5, 5, 1, 5, 5));
+        assertEquals(2 * one, both, 1e-9);
+    }
+}
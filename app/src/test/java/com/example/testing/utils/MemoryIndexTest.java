@@ -0,0 +1,166 @@
+package com.example.testing.utils;
+
+import com.example.testing.data.local.dao.MessageEmbeddingDao;
+import com.example.testing.data.local.entity.Message;
+import com.example.testing.data.local.entity.MessageEmbedding;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryIndexTest {
+
+    private static final int CONVERSATION = 7;
+
+    private final FakeEmbeddingDao dao = new FakeEmbeddingDao();
+    private ExecutorService executor;
+    private MemoryIndex index;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        index = new MemoryIndex(dao, executor);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Message message(int id, String content) {
+        return new Message(id, "user", content, id * 1000L, CONVERSATION, 0, 0, 0, null);
+    }
+
+    private List<Integer> search(String query, int beforeId) {
+        return index.search(CONVERSATION, query, message(beforeId, ""), 4, 0.15f);
+    }
+
+    private void drain() throws Exception {
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void backfillsStoredMessagesAndRanksBestFirst() {
+        dao.add(message(1, "The dragon burned the northern village"));
+        dao.add(message(2, "We bought apples and bread at the market"));
+        dao.add(message(3, "The dragon circled the village at night"));
+
+        List<Integer> ids = search("where did the dragon attack the village", 10);
+
+        assertEquals(Arrays.asList(3, 1), ids.subList(0, 2));
+        assertFalse(ids.contains(2));
+        assertEquals(3, dao.embeddings.size());
+    }
+
+    @Test
+    public void onlyReturnsMessagesBeforeTheCutoff() {
+        dao.add(message(1, "The dragon burned the village"));
+        dao.add(message(2, "The dragon burned the village again"));
+
+        assertEquals(Collections.singletonList(1), search("dragon village", 2));
+    }
+
+    @Test
+    public void indexAndRemoveUpdateALoadedStore() throws Exception {
+        dao.add(message(1, "The dragon burned the village"));
+        assertEquals(Collections.singletonList(1), search("dragon village", 10));
+
+        Message added = message(2, "A dragon flew over the village");
+        dao.add(added);
+        index.index(added);
+        drain();
+        assertTrue(search("dragon village", 10).contains(2));
+
+        index.remove(added);
+        assertEquals(Collections.singletonList(1), search("dragon village", 10));
+    }
+
+    @Test
+    public void removeDuringALoadIsNotBlockedAndIsReplayed() throws Exception {
+        Message first = message(1, "The dragon burned the village");
+        dao.add(first);
+        dao.add(message(2, "A dragon flew over the village"));
+
+        // While the store is loading, another thread removes message 1 before it is published
+        dao.onLoad = () -> {
+            Thread remover = new Thread(() -> index.remove(first));
+            remover.start();
+            try {
+                remover.join(5000);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            assertFalse("remove() waited on the load", remover.isAlive());
+        };
+
+        assertEquals(Collections.singletonList(2), search("dragon village", 10));
+        dao.onLoad = null;
+        assertEquals(Collections.singletonList(2), search("dragon village", 10));
+    }
+
+    @Test
+    public void evictAllReloadsFromTheTable() {
+        dao.add(message(1, "The dragon burned the village"));
+        assertEquals(1, search("dragon village", 10).size());
+
+        dao.messages.clear();
+        dao.embeddings.clear();
+        index.evictAll();
+
+        assertTrue(search("dragon village", 10).isEmpty());
+    }
+
+    private static final class FakeEmbeddingDao implements MessageEmbeddingDao {
+        final Map<Integer, Message> messages = new HashMap<>();
+        final Map<Integer, MessageEmbedding> embeddings = new HashMap<>();
+        volatile Runnable onLoad;
+
+        synchronized void add(Message message) {
+            messages.put(message.getIndex(), message);
+        }
+
+        @Override
+        public synchronized void insert(MessageEmbedding embedding) {
+            embeddings.put(embedding.getMessageId(), embedding);
+        }
+
+        @Override
+        public synchronized void insertAll(List<MessageEmbedding> batch) {
+            for (MessageEmbedding embedding : batch) insert(embedding);
+        }
+
+        @Override
+        public List<MessageEmbedding> getEmbeddingsForConversationSync(int conversationId) {
+            List<MessageEmbedding> result;
+            synchronized (this) {
+                result = new ArrayList<>(embeddings.values());
+            }
+            Runnable hook = onLoad;
+            if (hook != null) hook.run();
+            return result;
+        }
+
+        @Override
+        public synchronized List<Message> getUnembeddedMessagesSync(int conversationId, int limit) {
+            List<Message> result = new ArrayList<>();
+            for (Message message : messages.values()) {
+                if (!embeddings.containsKey(message.getIndex()) && result.size() < limit) result.add(message);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.testing.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PromptTemplateTest {
+
+    private static final long STARTED_AT = 1_700_000_000_000L;
+
+    private static PromptTemplate.Variables vars(long seed) {
+        return new PromptTemplate.Variables("Ann", "Mira", "some/model", STARTED_AT, seed);
+    }
+
+    @Test
+    public void fillsNamesAndModelIgnoringCaseAndSpaces() {
+        assertEquals("Ann meets Mira on some/model",
+                PromptTemplate.render("{{user}} meets {{ Char }} on {{MODEL}}", vars(1)));
+        assertEquals("Mira", PromptTemplate.render("{{character}}", vars(1)));
+    }
+
+    @Test
+    public void missingValuesFallBackToDefaults() {
+        PromptTemplate.Variables empty = new PromptTemplate.Variables(null, null, null, STARTED_AT, 1);
+        assertEquals("User/Character/", PromptTemplate.render("{{user}}/{{char}}/{{model}}", empty));
+    }
+
+    @Test
+    public void legacyTokensUseTheConversationStart() {
+        String expected = PromptTemplate.formatDay(STARTED_AT) + " " + PromptTemplate.formatTime(STARTED_AT);
+        assertEquals(expected, PromptTemplate.render("{day} {time}", vars(1)));
+    }
+
+    @Test
+    public void unknownBracesAreLeftAsWritten() {
+        String text = "{\"json\": 1} {{unknown}} {{user} {nope}";
+        assertEquals(text, PromptTemplate.render(text, vars(1)));
+        assertEquals("", PromptTemplate.render(null, vars(1)));
+    }
+
+    @Test
+    public void textWithoutPlaceholdersIsReturnedAsIs() {
+        String text = "No placeholders here.";
+        PromptTemplate template = PromptTemplate.compile(text);
+        assertTrue(template.isLiteral());
+        assertSame(text, template.render(vars(1)));
+        assertFalse(PromptTemplate.compile("{{user}}").isLiteral());
+    }
+
+    @Test
+    public void pickIsStablePerConversationAndPosition() {
+        String source = "{{pick:red,green,blue,gold,white}}";
+        String first = PromptTemplate.render(source, vars(42));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(first, PromptTemplate.render(source, vars(42)));
+        }
+
+        Set<String> acrossConversations = new HashSet<>();
+        for (long seed = 0; seed < 50; seed++) {
+            acrossConversations.add(PromptTemplate.render(source, vars(seed)));
+        }
+        assertTrue(acrossConversations.size() > 1);
+    }
+
+    @Test
+    public void randomPicksFromTheOptions() {
+        Set<String> options = new HashSet<>(Arrays.asList("a, b", "c"));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(options.contains(PromptTemplate.render("{{random: a, b :: c}}", vars(1))));
+        }
+        assertEquals("x", PromptTemplate.render("{{RANDOM:x}}", vars(1)));
+    }
+
+    @Test
+    public void legacyStoredMessagesGetNamesAtSendTime() {
+        // Saved before messages were frozen, or edited: names are still placeholders
+        assertEquals("Hi Mira, I'm Ann", PromptTemplate.renderStable("Hi {{char}}, I'm {{user}}", vars(1)));
+    }
+
+    @Test
+    public void sendTimeRenderLeavesVolatilePlaceholdersAsWritten() {
+        assertEquals("{{random:a,b}} at {{time}} on {{date}}, Ann",
+                PromptTemplate.renderStable("{{random:a,b}} at {{time}} on {{date}}, {{user}}", vars(1)));
+    }
+
+    @Test
+    public void freezeFillsOnlyVolatilePlaceholders() {
+        String frozen = PromptTemplate.freeze("{{user}} rolls {{random:six}} on {{date}} for {{pick:x}}");
+        assertTrue(frozen.startsWith("{{user}} rolls six on "));
+        assertTrue(frozen.endsWith(" for {{pick:x}}"));
+        assertFalse(frozen.contains("{{date}}"));
+
+        // Rendering the frozen text gives the same result on every send
+        assertEquals("Ann rolls six on ", PromptTemplate.renderStable(frozen, vars(1)).substring(0, 17));
+        assertEquals(PromptTemplate.renderStable(frozen, vars(1)), PromptTemplate.renderStable(frozen, vars(1)));
+
+        String literal = "Nothing to do";
+        assertSame(literal, PromptTemplate.freeze(literal));
+        assertEquals(null, PromptTemplate.freeze(null));
+    }
+
+    @Test
+    public void compiledTemplatesAreReused() {
+        assertSame(PromptTemplate.compile("Hi {{user}}"), PromptTemplate.compile("Hi {{user}}"));
+    }
+}
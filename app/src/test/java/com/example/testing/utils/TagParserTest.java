@@ -0,0 +1,38 @@
+package com.example.testing.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TagParserTest {
+
+    @Test
+    public void emptyInputGivesNoTags() {
+        assertTrue(TagParser.parse(null).isEmpty());
+        assertTrue(TagParser.parse("").isEmpty());
+        assertTrue(TagParser.parse("   ").isEmpty());
+        assertTrue(TagParser.parse(" | , |").isEmpty());
+    }
+
+    @Test
+    public void splitsOnBothSeparatorsAndTrims() {
+        assertEquals(Arrays.asList("fantasy", "sci-fi", "horror"), TagParser.parse(" fantasy |sci-fi, horror "));
+        assertEquals(Collections.singletonList("slice of life"), TagParser.parse("slice of life"));
+    }
+
+    @Test
+    public void dropsDuplicatesIgnoringCaseAndKeepsTheFirstSpelling() {
+        assertEquals(Arrays.asList("Fantasy", "horror"), TagParser.parse("Fantasy|horror|FANTASY, fantasy|HORROR"));
+    }
+
+    @Test
+    public void joinRoundTrips() {
+        String joined = TagParser.join(TagParser.parse("Fantasy, Horror|fantasy"));
+        assertEquals("Fantasy|Horror", joined);
+        assertEquals(Arrays.asList("Fantasy", "Horror"), TagParser.parse(joined));
+    }
+}
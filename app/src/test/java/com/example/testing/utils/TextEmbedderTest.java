@@ -0,0 +1,50 @@
+package com.example.testing.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TextEmbedderTest {
+
+    private static float cosine(String a, String b) {
+        byte[] va = TextEmbedder.embed(a);
+        byte[] vb = TextEmbedder.embed(b);
+        return TextEmbedder.dot(va, 0, vb, 0) / (TextEmbedder.norm(va, 0) * TextEmbedder.norm(vb, 0));
+    }
+
+    @Test
+    public void textWithNothingToHashGivesTheZeroVector() {
+        byte[] zero = new byte[TextEmbedder.DIMENSIONS];
+        assertArrayEquals(zero, TextEmbedder.embed(null));
+        assertArrayEquals(zero, TextEmbedder.embed(""));
+        assertArrayEquals(zero, TextEmbedder.embed("it is, and they were... ok?"));
+        assertEquals(0f, TextEmbedder.norm(TextEmbedder.embed("the"), 0), 0f);
+    }
+
+    @Test
+    public void isDeterministicAndScaledToSignedBytes() {
+        String text = "The old lighthouse keeper lit the lamp at dusk.";
+        byte[] first = TextEmbedder.embed(text);
+        assertArrayEquals(first, TextEmbedder.embed(text));
+
+        int max = 0;
+        for (byte b : first) max = Math.max(max, Math.abs(b));
+        assertEquals(127, max);
+    }
+
+    @Test
+    public void ignoresCasePossessivesAndCurlyApostrophes() {
+        assertArrayEquals(TextEmbedder.embed("mira"), TextEmbedder.embed("MIRA'S"));
+        assertArrayEquals(TextEmbedder.embed("Mira's"), TextEmbedder.embed("Mira’s"));
+    }
+
+    @Test
+    public void relatedTextScoresAboveUnrelatedText() {
+        float related = cosine("She sharpened her sword by the fire", "the swords by the fire were sharp");
+        float unrelated = cosine("She sharpened her sword by the fire", "Tomorrow's market sells fresh bread");
+        assertTrue(related > unrelated);
+        assertTrue(related > 0.3f);
+    }
+}